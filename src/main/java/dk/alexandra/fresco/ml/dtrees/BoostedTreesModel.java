@@ -0,0 +1,54 @@
+package dk.alexandra.fresco.ml.dtrees;
+
+import java.util.List;
+
+/**
+ * Representation of an ensemble of boosted decision trees with real-valued leaves.
+ *
+ * <p>The thresholds and leaf values of the trees are fixed point numbers encoded as integers with
+ * the given precision, ie. multiplied by 2<sup>precision</sup>, and the features must be encoded
+ * the same way. The output of the ensemble is the sum of the leaf values reached in each tree, so
+ * any constant offset of the model is included in the leaves of one of the trees.</p>
+ */
+public class BoostedTreesModel {
+
+  private final List<DecisionTreeModel> trees;
+  private final int precision;
+  private final int numFeatures;
+
+  public BoostedTreesModel(List<DecisionTreeModel> trees, int precision) {
+    if (trees.isEmpty()) {
+      throw new IllegalArgumentException("An ensemble must have at least one tree");
+    }
+    this.trees = trees;
+    this.precision = precision;
+    this.numFeatures = trees.stream().mapToInt(DecisionTreeModel::getNumOriginalFeatures).max()
+        .getAsInt();
+  }
+
+  public List<DecisionTreeModel> getTrees() {
+    return trees;
+  }
+
+  public int getPrecision() {
+    return precision;
+  }
+
+  /**
+   * Returns the number of features used by the ensemble, ie. one more than the largest feature
+   * index used in any tree.
+   */
+  public int getNumFeatures() {
+    return numFeatures;
+  }
+
+  @Override
+  public String toString() {
+    return "BoostedTreesModel{" +
+        "precision=" + precision +
+        ", numFeatures=" + numFeatures +
+        ", trees=" + trees +
+        '}';
+  }
+
+}
@@ -0,0 +1,103 @@
+package dk.alexandra.fresco.ml.dtrees;
+
+import dk.alexandra.fresco.framework.DRes;
+import dk.alexandra.fresco.framework.MaliciousException;
+import dk.alexandra.fresco.framework.builder.Computation;
+import dk.alexandra.fresco.framework.builder.numeric.ProtocolBuilderNumeric;
+import dk.alexandra.fresco.framework.value.SInt;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Computation for checking that the selection bits of each internal node of a decision tree model
+ * add up to one, ie. that each node selects exactly one feature.
+ *
+ * <p>If the feature selections are given as {@link FeatureSelection#INDEX_BITS}, it is instead
+ * checked that each index bit is zero or one. Any value of the bits then selects exactly one
+ * feature, or zero if the index is beyond the feature vector. Public feature indexes need no
+ * check.</p>
+ *
+ * <p>The sums are opened to the sample party only, which throws a {@link MaliciousException} if the
+ * check fails. The check only depends on the model, so it only needs to be done once per model no
+ * matter how many feature vectors the model is evaluated on. The selections can also be given as
+ * plain lists, eg. to check the selections of a {@link SparseDecisionTreeModelClosed}.</p>
+ */
+public class CheckSelectionBits implements Computation<Void, ProtocolBuilderNumeric> {
+
+  private final List<List<DRes<SInt>>> selections;
+  private final FeatureSelection featureSelection;
+  private final int sampleParty;
+
+  /**
+   * Create a new check of the given selections.
+   *
+   * @param selections the selection bits or index bits of each selection
+   * @param featureSelection how the selections are represented
+   * @param sampleParty the party the checks are opened to
+   */
+  public CheckSelectionBits(List<List<DRes<SInt>>> selections, FeatureSelection featureSelection,
+      int sampleParty) {
+    this.selections = selections;
+    this.featureSelection = featureSelection;
+    this.sampleParty = sampleParty;
+  }
+
+  public CheckSelectionBits(DecisionTreeModelClosed treeModel, int sampleParty) {
+    this(treeModel.getFeatureIndexes(), treeModel.getFeatureSelection(), sampleParty);
+  }
+
+  @Override
+  public DRes<Void> buildComputation(ProtocolBuilderNumeric builder) {
+    if (featureSelection == FeatureSelection.PUBLIC) {
+      return () -> null;
+    }
+    if (featureSelection == FeatureSelection.INDEX_BITS) {
+      return checkIndexBits(builder);
+    }
+    return builder.par(par -> {
+      List<DRes<BigInteger>> checkedBits = new ArrayList<>(selections.size());
+      for (List<DRes<SInt>> featureIndexBits : selections) {
+        checkedBits.add(par.seq(seq -> {
+          DRes<SInt> bit = seq.advancedNumeric().sum(featureIndexBits);
+          return seq.numeric().open(bit, sampleParty);
+        }));
+      }
+      return () -> checkedBits;
+    }).seq((seq, checkedBits) -> {
+      if (seq.getBasicNumericContext().getMyId() == sampleParty) {
+        for (DRes<BigInteger> checkBit : checkedBits) {
+          if (!checkBit.out().equals(BigInteger.ONE)) {
+            throw new MaliciousException("Selection bits do not add up to one: " + checkBit.out());
+          }
+        }
+      }
+      return () -> null;
+    });
+  }
+
+  private DRes<Void> checkIndexBits(ProtocolBuilderNumeric builder) {
+    return builder.par(par -> {
+      // b * (b - 1) is zero iff b is zero or one
+      List<DRes<BigInteger>> checks = new ArrayList<>();
+      for (List<DRes<SInt>> featureIndexBits : selections) {
+        for (DRes<SInt> bit : featureIndexBits) {
+          checks.add(par.seq(seq -> {
+            DRes<SInt> check = seq.numeric().mult(bit, seq.numeric().sub(bit, BigInteger.ONE));
+            return seq.numeric().open(check, sampleParty);
+          }));
+        }
+      }
+      return () -> checks;
+    }).seq((seq, checks) -> {
+      if (seq.getBasicNumericContext().getMyId() == sampleParty) {
+        for (DRes<BigInteger> check : checks) {
+          if (check.out().signum() != 0) {
+            throw new MaliciousException("Index bits are not bits");
+          }
+        }
+      }
+      return () -> null;
+    });
+  }
+}
@@ -2,6 +2,7 @@ package dk.alexandra.fresco.ml.dtrees;
 
 import dk.alexandra.fresco.framework.DRes;
 import dk.alexandra.fresco.framework.value.SInt;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -13,15 +14,70 @@ public class DecisionTreeModelClosed {
   private final List<List<DRes<SInt>>> featureIndexes;
   private final List<DRes<SInt>> weights;
   private final List<DRes<SInt>> categories;
+  private final FeatureSelection featureSelection;
+  private final List<Integer> publicFeatureIndexes;
 
+  /**
+   * Create a new model.
+   *
+   * @param depth the depth of the tree
+   * @param featureIndexes the feature selection of each internal node
+   * @param weights the weight of each internal node
+   * @param categories the category of each leaf
+   * @param featureSelection how the feature selections are represented
+   */
   public DecisionTreeModelClosed(int depth,
       List<List<DRes<SInt>>> featureIndexes,
       List<DRes<SInt>> weights,
-      List<DRes<SInt>> categories) {
+      List<DRes<SInt>> categories,
+      FeatureSelection featureSelection) {
+    this(depth, featureIndexes, weights, categories, featureSelection, null);
+    if (featureSelection == FeatureSelection.PUBLIC) {
+      throw new IllegalArgumentException("Public feature indexes must be given explicitly");
+    }
+  }
+
+  private DecisionTreeModelClosed(int depth,
+      List<List<DRes<SInt>>> featureIndexes,
+      List<DRes<SInt>> weights,
+      List<DRes<SInt>> categories,
+      FeatureSelection featureSelection,
+      List<Integer> publicFeatureIndexes) {
     this.depth = depth;
     this.featureIndexes = featureIndexes;
     this.weights = weights;
     this.categories = categories;
+    this.featureSelection = featureSelection;
+    this.publicFeatureIndexes = publicFeatureIndexes;
+  }
+
+  public DecisionTreeModelClosed(int depth,
+      List<List<DRes<SInt>>> featureIndexes,
+      List<DRes<SInt>> weights,
+      List<DRes<SInt>> categories) {
+    this(depth, featureIndexes, weights, categories, FeatureSelection.ONE_HOT);
+  }
+
+  /**
+   * Create a model where the feature index of each internal node is public, see {@link
+   * FeatureSelection#PUBLIC}.
+   *
+   * @param depth the depth of the tree
+   * @param featureIndexes the public feature index of each internal node
+   * @param weights the weight of each internal node
+   * @param categories the category of each leaf
+   * @return the model
+   */
+  public static DecisionTreeModelClosed withPublicFeatureIndexes(int depth,
+      List<Integer> featureIndexes,
+      List<DRes<SInt>> weights,
+      List<DRes<SInt>> categories) {
+    if (featureIndexes.size() != weights.size()) {
+      throw new IllegalArgumentException("Must have a feature index for each internal node");
+    }
+    return new DecisionTreeModelClosed(depth,
+        Collections.nCopies(featureIndexes.size(), Collections.emptyList()), weights, categories,
+        FeatureSelection.PUBLIC, featureIndexes);
   }
 
   public int getDepth() {
@@ -48,6 +104,18 @@ public class DecisionTreeModelClosed {
     return categories;
   }
 
+  public FeatureSelection getFeatureSelection() {
+    return featureSelection;
+  }
+
+  /**
+   * Returns the public feature index of each internal node if the feature selection is {@link
+   * FeatureSelection#PUBLIC} and <code>null</code> otherwise.
+   */
+  public List<Integer> getPublicFeatureIndexes() {
+    return publicFeatureIndexes;
+  }
+
   @Override
   public String toString() {
     return "DecisionTreeModelClosed{" +
@@ -55,6 +123,8 @@ public class DecisionTreeModelClosed {
         ", featureIndexes=" + featureIndexes +
         ", weights=" + weights +
         ", categories=" + categories +
+        ", featureSelection=" + featureSelection +
+        ", publicFeatureIndexes=" + publicFeatureIndexes +
         '}';
   }
 
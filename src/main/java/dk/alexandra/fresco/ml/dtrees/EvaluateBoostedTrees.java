@@ -0,0 +1,109 @@
+package dk.alexandra.fresco.ml.dtrees;
+
+import dk.alexandra.fresco.framework.DRes;
+import dk.alexandra.fresco.framework.builder.Computation;
+import dk.alexandra.fresco.framework.builder.numeric.ProtocolBuilderNumeric;
+import dk.alexandra.fresco.framework.value.SInt;
+import dk.alexandra.fresco.lib.collections.Matrix;
+import dk.alexandra.fresco.lib.real.SReal;
+import dk.alexandra.fresco.lib.real.fixed.SFixed;
+import dk.alexandra.fresco.ml.nn.DefaultActivationFunctions;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Computation for evaluating an ensemble of boosted decision trees, see {@link
+ * BoostedTreesModel}, on a feature vector.
+ *
+ * <p>All trees are evaluated in parallel, so the comparisons and the products along the paths of
+ * the trees are done in the same rounds for all trees. The leaf values are summed as secret shares,
+ * and only the sum is passed to the final comparison or sigmoid. The features must be encoded as
+ * fixed point integers with the precision of the model.</p>
+ */
+public class EvaluateBoostedTrees implements Computation<SReal, ProtocolBuilderNumeric> {
+
+  /**
+   * The possible outputs of the ensemble.
+   */
+  public enum Output {
+    /**
+     * The sum of the leaf values.
+     */
+    MARGIN,
+    /**
+     * 1 if the margin is positive and 0 otherwise, ie. the class predicted by a binary
+     * classifier.
+     */
+    CLASS,
+    /**
+     * The sigmoid of the margin, ie. the probability predicted by a binary classifier.
+     */
+    PROBABILITY
+  }
+
+  private final List<DecisionTreeModelClosed> trees;
+  private final List<DRes<SInt>> featureVector;
+  private final int precision;
+  private final Output output;
+  private final int sampleParty;
+
+  /**
+   * Create a new evaluation of an ensemble.
+   *
+   * @param trees the trees of the ensemble
+   * @param featureVector the feature vector encoded with the precision of the model
+   * @param precision the precision of the model
+   * @param output what to compute from the sum of the leaf values
+   * @param sampleParty the party to which the sums of the selection bits are opened
+   */
+  public EvaluateBoostedTrees(
+      List<DecisionTreeModelClosed> trees,
+      List<DRes<SInt>> featureVector,
+      int precision,
+      Output output,
+      int sampleParty) {
+    if (trees.isEmpty()) {
+      throw new IllegalArgumentException("An ensemble must have at least one tree");
+    }
+    this.trees = trees;
+    this.featureVector = featureVector;
+    this.precision = precision;
+    this.output = output;
+    this.sampleParty = sampleParty;
+  }
+
+  public EvaluateBoostedTrees(List<DecisionTreeModelClosed> trees,
+      List<DRes<SInt>> featureVector, int precision, Output output) {
+    this(trees, featureVector, precision, output, 1);
+  }
+
+  @Override
+  public DRes<SReal> buildComputation(ProtocolBuilderNumeric builder) {
+    return builder.par(par -> {
+      List<DRes<SInt>> leaves = new ArrayList<>(trees.size());
+      for (DecisionTreeModelClosed tree : trees) {
+        leaves.add(par.seq(new EvaluateDecisionTree(tree, featureVector, sampleParty)));
+      }
+      return () -> leaves;
+    }).seq((seq, leaves) -> seq.advancedNumeric().sum(leaves)).seq((seq, sum) -> {
+      SReal margin = new SFixed(() -> sum, precision);
+      switch (output) {
+        case MARGIN:
+          return () -> margin;
+        case CLASS:
+          DRes<SInt> bit = seq.numeric().sub(BigInteger.ONE,
+              seq.comparison().compareLEQ(() -> sum, seq.numeric().known(BigInteger.ZERO)));
+          return () -> new SFixed(bit, 0);
+        case PROBABILITY:
+          DRes<Matrix<DRes<SReal>>> probability = new DefaultActivationFunctions(seq)
+              .sigmoid(new Matrix<>(1, 1, i -> new ArrayList<>(Collections.singletonList(
+                  () -> margin))));
+          return () -> probability.out().getRow(0).get(0).out();
+        default:
+          throw new IllegalArgumentException("Unsupported output " + output);
+      }
+    });
+  }
+}
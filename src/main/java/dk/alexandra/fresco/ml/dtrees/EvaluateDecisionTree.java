@@ -1,7 +1,6 @@
 package dk.alexandra.fresco.ml.dtrees;
 
 import dk.alexandra.fresco.framework.DRes;
-import dk.alexandra.fresco.framework.MaliciousException;
 import dk.alexandra.fresco.framework.builder.Computation;
 import dk.alexandra.fresco.framework.builder.numeric.ProtocolBuilderNumeric;
 import dk.alexandra.fresco.framework.util.Pair;
@@ -14,20 +13,43 @@ import java.util.List;
 
 /**
  * Computation for evaluating a decision tree model on a feature vector.
+ *
+ * <p>The feature compared at each node is selected as determined by the {@link FeatureSelection}
+ * of the model. If the feature indexes are public, the features are looked up directly and no
+ * selection bits are checked.</p>
  */
 public class EvaluateDecisionTree implements Computation<SInt, ProtocolBuilderNumeric> {
 
   private final DecisionTreeModelClosed treeModel;
   private final List<DRes<SInt>> featureVector;
   private final int sampleParty;
+  private final boolean checkSelectionBits;
 
+  /**
+   * Create a new evaluation of a tree on a feature vector.
+   *
+   * @param treeModel the tree model
+   * @param featureVector the feature vector
+   * @param sampleParty the party to which the sums of the selection bits are opened
+   * @param checkSelectionBits whether to check the selection bits of the model, see {@link
+   * CheckSelectionBits}. This may be skipped if the model has already been checked.
+   */
   public EvaluateDecisionTree(
       DecisionTreeModelClosed treeModel,
       List<DRes<SInt>> featureVector,
-      int sampleParty) {
+      int sampleParty,
+      boolean checkSelectionBits) {
     this.treeModel = treeModel;
     this.featureVector = featureVector;
     this.sampleParty = sampleParty;
+    this.checkSelectionBits = checkSelectionBits;
+  }
+
+  public EvaluateDecisionTree(
+      DecisionTreeModelClosed treeModel,
+      List<DRes<SInt>> featureVector,
+      int sampleParty) {
+    this(treeModel, featureVector, sampleParty, true);
   }
 
   public EvaluateDecisionTree(DecisionTreeModelClosed treeModel,
@@ -37,26 +59,23 @@ public class EvaluateDecisionTree implements Computation<SInt, ProtocolBuilderNu
 
   @Override
   public DRes<SInt> buildComputation(ProtocolBuilderNumeric builder) {
-    return builder.par(par -> {
-      List<List<DRes<SInt>>> featureIndexes = treeModel.getFeatureIndexes();
-      List<DRes<BigInteger>> checkedBits = new ArrayList<>(treeModel.getNumberInternalNodes());
-      for (List<DRes<SInt>> featureIndexBits : featureIndexes) {
-        checkedBits.add(par.seq(seq -> {
-          DRes<SInt> bit = seq.advancedNumeric().sum(featureIndexBits);
-          return seq.numeric().open(bit, sampleParty);
-        }));
-      }
-      return () -> checkedBits;
-    }).par((par, checkedBits) -> {
-      if (par.getBasicNumericContext().getMyId() == sampleParty) {
-        for (DRes<BigInteger> checkBit : checkedBits) {
-          if (!checkBit.out().equals(BigInteger.ONE)) {
-            throw new MaliciousException("Selection bits do not add up to one: " + checkBit.out());
-          }
-        }
+    return builder.seq(seq -> {
+      if (checkSelectionBits) {
+        return seq.seq(new CheckSelectionBits(treeModel, sampleParty));
       }
+      return () -> null;
+    }).par((par, checked) -> {
       List<List<DRes<SInt>>> featureIndexes = treeModel.getFeatureIndexes();
       List<DRes<SInt>> selectedFeatures = new ArrayList<>(treeModel.getNumberInternalNodes());
+      if (treeModel.getFeatureSelection() == FeatureSelection.PUBLIC) {
+        for (int featureIndex : treeModel.getPublicFeatureIndexes()) {
+          selectedFeatures.add(featureVector.get(featureIndex));
+        }
+        return () -> selectedFeatures;
+      }
+      if (treeModel.getFeatureSelection() == FeatureSelection.INDEX_BITS) {
+        return par.seq(new SelectFeature(featureVector, featureIndexes));
+      }
       for (List<DRes<SInt>> featureIndex : featureIndexes) {
         selectedFeatures.add(par.advancedNumeric().innerProduct(featureVector, featureIndex));
       }
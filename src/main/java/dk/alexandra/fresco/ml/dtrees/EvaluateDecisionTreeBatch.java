@@ -0,0 +1,50 @@
+package dk.alexandra.fresco.ml.dtrees;
+
+import dk.alexandra.fresco.framework.DRes;
+import dk.alexandra.fresco.framework.builder.Computation;
+import dk.alexandra.fresco.framework.builder.numeric.ProtocolBuilderNumeric;
+import dk.alexandra.fresco.framework.value.SInt;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Computation for evaluating a decision tree model on a batch of feature vectors.
+ *
+ * <p>The selection bits of the model are checked once for the whole batch, after which the feature
+ * vectors are evaluated in parallel. All evaluations have the same structure, so the comparisons
+ * and the products along the paths of the tree are done level by level for the whole batch in the
+ * same rounds.</p>
+ */
+public class EvaluateDecisionTreeBatch implements
+    Computation<List<DRes<SInt>>, ProtocolBuilderNumeric> {
+
+  private final DecisionTreeModelClosed treeModel;
+  private final List<List<DRes<SInt>>> featureVectors;
+  private final int sampleParty;
+
+  public EvaluateDecisionTreeBatch(
+      DecisionTreeModelClosed treeModel,
+      List<List<DRes<SInt>>> featureVectors,
+      int sampleParty) {
+    this.treeModel = treeModel;
+    this.featureVectors = featureVectors;
+    this.sampleParty = sampleParty;
+  }
+
+  public EvaluateDecisionTreeBatch(DecisionTreeModelClosed treeModel,
+      List<List<DRes<SInt>>> featureVectors) {
+    this(treeModel, featureVectors, 1);
+  }
+
+  @Override
+  public DRes<List<DRes<SInt>>> buildComputation(ProtocolBuilderNumeric builder) {
+    return builder.seq(new CheckSelectionBits(treeModel, sampleParty)).par((par, checked) -> {
+      List<DRes<SInt>> categories = new ArrayList<>(featureVectors.size());
+      for (List<DRes<SInt>> featureVector : featureVectors) {
+        categories.add(
+            par.seq(new EvaluateDecisionTree(treeModel, featureVector, sampleParty, false)));
+      }
+      return () -> categories;
+    });
+  }
+}
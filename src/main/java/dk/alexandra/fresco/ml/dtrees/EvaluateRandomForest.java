@@ -0,0 +1,172 @@
+package dk.alexandra.fresco.ml.dtrees;
+
+import dk.alexandra.fresco.framework.DRes;
+import dk.alexandra.fresco.framework.builder.Computation;
+import dk.alexandra.fresco.framework.builder.numeric.ProtocolBuilderNumeric;
+import dk.alexandra.fresco.framework.util.Pair;
+import dk.alexandra.fresco.framework.value.SInt;
+import dk.alexandra.fresco.lib.compare.gt.LessThanOrEquals;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Computation for evaluating a random forest, ie. an ensemble of decision tree models, on a feature
+ * vector.
+ *
+ * <p>All trees are evaluated in parallel on the same feature vector, so the comparisons and the
+ * products along the paths of the trees are done in the same rounds for all trees. The outputs of
+ * the trees are then combined as determined by the {@link Aggregation}.</p>
+ */
+public class EvaluateRandomForest implements Computation<SInt, ProtocolBuilderNumeric> {
+
+  private static final int COMPARISON_SECURITY_PARAMETER = 60;
+
+  /**
+   * The ways the outputs of the trees of a forest can be combined.
+   */
+  public enum Aggregation {
+    /**
+     * The class predicted by most trees. Ties are broken in favour of the class which comes first
+     * in the list of classes.
+     */
+    MAJORITY_VOTE,
+    /**
+     * The sum of the outputs of the trees. The average score is the sum divided by the number of
+     * trees, which is public, so the division can be done after opening the result.
+     */
+    SUM
+  }
+
+  private final List<DecisionTreeModelClosed> trees;
+  private final List<DRes<SInt>> featureVector;
+  private final Aggregation aggregation;
+  private final List<BigInteger> classes;
+  private final int sampleParty;
+
+  /**
+   * Create a new evaluation of a forest.
+   *
+   * @param trees the trees of the forest
+   * @param featureVector the feature vector
+   * @param aggregation how to combine the outputs of the trees
+   * @param classes the possible outputs of the trees. These are only used for {@link
+   * Aggregation#MAJORITY_VOTE} and may be <code>null</code> otherwise.
+   * @param sampleParty the party to which the sums of the selection bits are opened
+   */
+  public EvaluateRandomForest(
+      List<DecisionTreeModelClosed> trees,
+      List<DRes<SInt>> featureVector,
+      Aggregation aggregation,
+      List<BigInteger> classes,
+      int sampleParty) {
+    if (trees.isEmpty()) {
+      throw new IllegalArgumentException("A forest must have at least one tree");
+    }
+    if (aggregation == Aggregation.MAJORITY_VOTE && (classes == null || classes.isEmpty())) {
+      throw new IllegalArgumentException("A majority vote requires at least one class");
+    }
+    this.trees = trees;
+    this.featureVector = featureVector;
+    this.aggregation = aggregation;
+    this.classes = classes;
+    this.sampleParty = sampleParty;
+  }
+
+  public EvaluateRandomForest(List<DecisionTreeModelClosed> trees,
+      List<DRes<SInt>> featureVector, Aggregation aggregation, List<BigInteger> classes) {
+    this(trees, featureVector, aggregation, classes, 1);
+  }
+
+  @Override
+  public DRes<SInt> buildComputation(ProtocolBuilderNumeric builder) {
+    return builder.par(par -> {
+      List<DRes<SInt>> categories = new ArrayList<>(trees.size());
+      for (DecisionTreeModelClosed tree : trees) {
+        categories.add(par.seq(new EvaluateDecisionTree(tree, featureVector, sampleParty)));
+      }
+      return () -> categories;
+    }).seq((seq, categories) -> {
+      if (aggregation == Aggregation.SUM) {
+        return seq.advancedNumeric().sum(categories);
+      }
+      return seq.seq(countVotes(categories)).seq((inner, votes) -> inner.seq(argmax(votes)));
+    });
+  }
+
+  /**
+   * Counts the number of trees predicting each class using an equality test per tree and class.
+   */
+  private Computation<List<DRes<SInt>>, ProtocolBuilderNumeric> countVotes(
+      List<DRes<SInt>> categories) {
+    // The outputs of the trees are assumed to be among the classes, so the differences are bounded
+    // by twice the largest class
+    int bitLength = classes.stream().mapToInt(c -> c.abs().bitLength()).max().getAsInt() + 2;
+    return builder -> builder.par(par -> {
+      List<DRes<SInt>> votes = new ArrayList<>(classes.size());
+      for (BigInteger c : classes) {
+        votes.add(par.seq(seq -> {
+          DRes<SInt> known = seq.numeric().known(c);
+          return seq.par(inner -> {
+            List<DRes<SInt>> equal = new ArrayList<>(categories.size());
+            for (DRes<SInt> category : categories) {
+              equal.add(inner.comparison().equals(bitLength, category, known));
+            }
+            return () -> equal;
+          }).seq((inner, equal) -> inner.advancedNumeric().sum(equal));
+        }));
+      }
+      return () -> votes;
+    });
+  }
+
+  /**
+   * Finds the class with the most votes using a tournament, keeping the first of two classes with
+   * the same number of votes.
+   */
+  private Computation<SInt, ProtocolBuilderNumeric> argmax(List<DRes<SInt>> votes) {
+    return builder -> builder.seq(seq -> {
+      List<Pair<DRes<SInt>, DRes<SInt>>> candidates = new ArrayList<>(votes.size());
+      for (int i = 0; i < votes.size(); i++) {
+        candidates.add(new Pair<>(votes.get(i), seq.numeric().known(classes.get(i))));
+      }
+      return () -> candidates;
+    }).whileLoop(list -> list.size() > 1, (seq, list) -> seq.par(par -> {
+      List<DRes<Pair<DRes<SInt>, DRes<SInt>>>> winners = new ArrayList<>((list.size() + 1) / 2);
+      for (int i = 0; i + 1 < list.size(); i += 2) {
+        winners.add(par.seq(match(list.get(i), list.get(i + 1))));
+      }
+      if (list.size() % 2 == 1) {
+        Pair<DRes<SInt>, DRes<SInt>> last = list.get(list.size() - 1);
+        winners.add(() -> last);
+      }
+      return () -> winners;
+    }).seq((inner, winners) -> {
+      List<Pair<DRes<SInt>, DRes<SInt>>> next = new ArrayList<>(winners.size());
+      for (DRes<Pair<DRes<SInt>, DRes<SInt>>> winner : winners) {
+        next.add(winner.out());
+      }
+      return () -> next;
+    })).seq((seq, list) -> list.get(0).getSecond());
+  }
+
+  /**
+   * Returns the candidate with the most votes, preferring the first on ties.
+   */
+  private Computation<Pair<DRes<SInt>, DRes<SInt>>, ProtocolBuilderNumeric> match(
+      Pair<DRes<SInt>, DRes<SInt>> first, Pair<DRes<SInt>, DRes<SInt>> second) {
+    // The votes are between 0 and the number of trees, so the comparison only needs enough bits
+    // for that and a sign bit
+    int bitLength = BigInteger.valueOf(trees.size()).bitLength() + 1;
+    return builder -> builder.seq(seq -> seq.numeric().sub(BigInteger.ONE,
+        seq.seq(new LessThanOrEquals(bitLength, COMPARISON_SECURITY_PARAMETER, second.getFirst(),
+            first.getFirst()))))
+        .par((par, secondWins) -> {
+          DRes<SInt> votes = par.seq(seq -> seq.numeric().add(first.getFirst(), seq.numeric()
+              .mult(() -> secondWins, seq.numeric().sub(second.getFirst(), first.getFirst()))));
+          DRes<SInt> category = par.seq(seq -> seq.numeric().add(first.getSecond(), seq.numeric()
+              .mult(() -> secondWins, seq.numeric().sub(second.getSecond(), first.getSecond()))));
+          return () -> new Pair<>(votes, category);
+        });
+  }
+}
@@ -0,0 +1,103 @@
+package dk.alexandra.fresco.ml.dtrees;
+
+import dk.alexandra.fresco.framework.DRes;
+import dk.alexandra.fresco.framework.builder.Computation;
+import dk.alexandra.fresco.framework.builder.numeric.ProtocolBuilderNumeric;
+import dk.alexandra.fresco.framework.value.SInt;
+import dk.alexandra.fresco.ml.libext.LessThan;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Computation for evaluating a sparse decision tree model on a feature vector.
+ *
+ * <p>The feature of each internal node is selected and compared with the weight of the node, so
+ * there is one comparison per internal node. Each step on the path to each leaf then selects the
+ * result of the comparison of its node from the index bits of the node using {@link
+ * SelectFeature}, and the result is 1 if the step goes in the direction of the path. A leaf is
+ * reached if the product of the results along its path is 1.</p>
+ *
+ * <p>The input of the steps is logarithmic in the number of internal nodes, but the selection
+ * still costs about one multiplication per internal node for each step, so the total cost is about
+ * leaves * pathLength * nodes multiplications in addition to the comparisons. All comparisons are
+ * done in parallel, and the selections take a round per index bit.</p>
+ *
+ * <p>It is checked that the selection bits of each internal node add up to one, and that the index
+ * bits and the direction of each step are bits, using {@link CheckSelectionBits}.</p>
+ */
+public class EvaluateSparseDecisionTree implements Computation<SInt, ProtocolBuilderNumeric> {
+
+  private final SparseDecisionTreeModelClosed treeModel;
+  private final List<DRes<SInt>> featureVector;
+  private final int sampleParty;
+
+  public EvaluateSparseDecisionTree(
+      SparseDecisionTreeModelClosed treeModel,
+      List<DRes<SInt>> featureVector,
+      int sampleParty) {
+    this.treeModel = treeModel;
+    this.featureVector = featureVector;
+    this.sampleParty = sampleParty;
+  }
+
+  public EvaluateSparseDecisionTree(SparseDecisionTreeModelClosed treeModel,
+      List<DRes<SInt>> featureVector) {
+    this(treeModel, featureVector, 1);
+  }
+
+  @Override
+  public DRes<SInt> buildComputation(ProtocolBuilderNumeric builder) {
+    return builder.par(par -> {
+      par.seq(new CheckSelectionBits(treeModel.getFeatureIndexes(), FeatureSelection.ONE_HOT,
+          sampleParty));
+      List<List<DRes<SInt>>> stepBits = new ArrayList<>(treeModel.getNodeSelections());
+      stepBits.add(treeModel.getDirections());
+      par.seq(new CheckSelectionBits(stepBits, FeatureSelection.INDEX_BITS, sampleParty));
+      List<DRes<SInt>> selectedFeatures = new ArrayList<>(treeModel.getNumberNodes());
+      for (List<DRes<SInt>> featureIndexBits : treeModel.getFeatureIndexes()) {
+        selectedFeatures.add(par.advancedNumeric().innerProduct(featureVector, featureIndexBits));
+      }
+      return () -> selectedFeatures;
+    }).par((par, selectedFeatures) -> {
+      List<DRes<SInt>> lessThan = new ArrayList<>(treeModel.getNumberNodes());
+      for (int i = 0; i < treeModel.getNumberNodes(); i++) {
+        lessThan.add(par.seq(new LessThan(selectedFeatures.get(i),
+            treeModel.getWeights().get(i))));
+      }
+      return () -> lessThan;
+    }).seq((seq, lessThan) -> {
+      // Without internal nodes all steps are dummy steps, which are taken iff they go left
+      if (lessThan.isEmpty()) {
+        return () -> treeModel.getDirections();
+      }
+      // A dummy step selects the index beyond the internal nodes, which gives zero
+      return seq.seq(new SelectFeature(lessThan, treeModel.getNodeSelections()))
+          .par((par, selected) -> {
+            // The path goes left iff feature >= weight, so with d = 1 for a step going left and
+            // d = 0 for a step going right, d + l - 2 * d * l is 1 - l and l respectively
+            List<DRes<SInt>> directions = treeModel.getDirections();
+            List<DRes<SInt>> taken = new ArrayList<>(directions.size());
+            for (int i = 0; i < directions.size(); i++) {
+              DRes<SInt> direction = directions.get(i);
+              DRes<SInt> lessThanBit = selected.get(i);
+              taken.add(par.seq(inner -> {
+                DRes<SInt> product = inner.numeric().mult(direction, lessThanBit);
+                return inner.numeric().sub(inner.numeric().add(direction, lessThanBit),
+                    inner.numeric().mult(BigInteger.valueOf(2), product));
+              }));
+            }
+            return () -> taken;
+          });
+    }).par((par, taken) -> {
+      int pathLength = treeModel.getPathLength();
+      List<DRes<SInt>> reached = new ArrayList<>(treeModel.getNumberLeaves());
+      for (int i = 0; i < treeModel.getNumberLeaves(); i++) {
+        List<DRes<SInt>> path = taken.subList(i * pathLength, (i + 1) * pathLength);
+        reached.add(par.advancedNumeric().product(path));
+      }
+      return () -> reached;
+    }).seq((seq, reached) -> seq.advancedNumeric().innerProduct(reached,
+        treeModel.getCategories()));
+  }
+}
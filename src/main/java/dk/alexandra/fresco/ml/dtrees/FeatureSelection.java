@@ -0,0 +1,49 @@
+package dk.alexandra.fresco.ml.dtrees;
+
+/**
+ * The ways the feature compared at each internal node of a decision tree can be represented in a
+ * secret-shared model.
+ */
+public enum FeatureSelection {
+
+  /**
+   * A secret bit for each feature which is 1 for the selected feature and 0 otherwise. The
+   * selected feature is computed as an inner product with the feature vector, so both input and
+   * evaluation cost a number of values per node proportional to the number of features.
+   */
+  ONE_HOT,
+
+  /**
+   * The secret bits of the index of the selected feature, least significant bit first. The
+   * selected feature is computed by {@link SelectFeature}, so only a number of values per node
+   * logarithmic in the number of features is input. An index beyond the feature vector selects
+   * zero. The selection still costs about one multiplication per feature for each node, and it
+   * adds a round per index bit, ie. &lceil;log<sub>2</sub> F&rceil; rounds for F features,
+   * where {@link #ONE_HOT} takes a single round. The rounds are shared by all nodes.
+   */
+  INDEX_BITS,
+
+  /**
+   * The feature index of each node is public, so the selected feature is simply looked up in the
+   * feature vector. Only the weights and categories of the model are secret, and no values are
+   * input or checked for the feature selection.
+   */
+  PUBLIC;
+
+  /**
+   * Returns the number of secret values representing the feature selection of a node.
+   *
+   * @param featureVectorSize the number of features
+   * @return the number of values per node
+   */
+  public int selectionLength(int featureVectorSize) {
+    if (this == ONE_HOT) {
+      return featureVectorSize;
+    }
+    if (this == PUBLIC) {
+      return 0;
+    }
+    return 32 - Integer.numberOfLeadingZeros(featureVectorSize - 1);
+  }
+
+}
@@ -20,12 +20,27 @@ public class InputDecisionTree implements
   private final DecisionTreeModel treeModel;
   private final int featureVectorSize;
   private final int inputPartyId;
+  private final FeatureSelection featureSelection;
 
+  /**
+   * Create a new input of a tree.
+   *
+   * @param treeModel the tree model
+   * @param featureVectorSize the number of features
+   * @param inputPartyId the party holding the tree model
+   * @param featureSelection how to represent the feature selected at each node
+   */
   public InputDecisionTree(DecisionTreeModel treeModel, int featureVectorSize,
-      int inputPartyId) {
+      int inputPartyId, FeatureSelection featureSelection) {
     this.treeModel = treeModel;
     this.featureVectorSize = featureVectorSize;
     this.inputPartyId = inputPartyId;
+    this.featureSelection = featureSelection;
+  }
+
+  public InputDecisionTree(DecisionTreeModel treeModel, int featureVectorSize,
+      int inputPartyId) {
+    this(treeModel, featureVectorSize, inputPartyId, FeatureSelection.ONE_HOT);
   }
 
   /**
@@ -40,6 +55,18 @@ public class InputDecisionTree implements
     return bits;
   }
 
+  /**
+   * Turns index into its binary representation, least significant bit first.
+   */
+  private List<BigInteger> convertIndexToIndexBits(BigInteger featureIndex) {
+    int length = featureSelection.selectionLength(featureVectorSize);
+    List<BigInteger> bits = new ArrayList<>(length);
+    for (int i = 0; i < length; i++) {
+      bits.add(featureIndex.testBit(i) ? BigInteger.ONE : BigInteger.ZERO);
+    }
+    return bits;
+  }
+
   /**
    * Flattens nested list.
    */
@@ -55,8 +82,10 @@ public class InputDecisionTree implements
       List<BigInteger> featureIndexes) {
     List<List<DRes<SInt>>> featureIndexesClosed = new ArrayList<>(featureIndexes.size());
     for (BigInteger featureIndex : featureIndexes) {
-      List<DRes<SInt>> featureIndexBits = new ArrayList<>(featureVectorSize);
-      for (BigInteger bit : convertIndexToBits(featureIndex)) {
+      List<BigInteger> bits = featureSelection == FeatureSelection.INDEX_BITS
+          ? convertIndexToIndexBits(featureIndex) : convertIndexToBits(featureIndex);
+      List<DRes<SInt>> featureIndexBits = new ArrayList<>(bits.size());
+      for (BigInteger bit : bits) {
         featureIndexBits.add(builder.numeric().input(bit, inputPartyId));
       }
       featureIndexesClosed.add(featureIndexBits);
@@ -81,15 +110,26 @@ public class InputDecisionTree implements
     List<BigInteger> weights = flat(treeModel.getWeights());
     List<BigInteger> categories = treeModel.getCategories();
 
-    List<List<DRes<SInt>>> featureIndexesClosed = inputFeatureIndexes(builder, featureIndexes);
     List<DRes<SInt>> weightsClosed = input(builder, weights);
     List<DRes<SInt>> categoriesClosed = input(builder, categories);
+    if (featureSelection == FeatureSelection.PUBLIC) {
+      List<Integer> publicFeatureIndexes = featureIndexes.stream().map(BigInteger::intValueExact)
+          .collect(Collectors.toList());
+      DecisionTreeModelClosed closedModel = DecisionTreeModelClosed.withPublicFeatureIndexes(
+          treeModel.getDepth(),
+          publicFeatureIndexes,
+          weightsClosed,
+          categoriesClosed);
+      return () -> closedModel;
+    }
+    List<List<DRes<SInt>>> featureIndexesClosed = inputFeatureIndexes(builder, featureIndexes);
 
     DecisionTreeModelClosed closedModel = new DecisionTreeModelClosed(
         treeModel.getDepth(),
         featureIndexesClosed,
         weightsClosed,
-        categoriesClosed);
+        categoriesClosed,
+        featureSelection);
     return () -> closedModel;
   }
 }
@@ -17,11 +17,52 @@ public class InputDecisionTreeAsReceiver implements
   private final int depth;
   private final int featureVectorSize;
   private final int inputPartyId;
+  private final FeatureSelection featureSelection;
+  private final List<Integer> publicFeatureIndexes;
 
-  public InputDecisionTreeAsReceiver(int depth, int featureVectorSize, int inputPartyId) {
+  /**
+   * Create a new input of a tree.
+   *
+   * @param depth the depth of the tree
+   * @param featureVectorSize the number of features
+   * @param inputPartyId the party holding the tree model
+   * @param featureSelection how the feature selected at each node is represented. This must be
+   *     the same as for the party holding the model.
+   */
+  public InputDecisionTreeAsReceiver(int depth, int featureVectorSize, int inputPartyId,
+      FeatureSelection featureSelection) {
+    if (featureSelection == FeatureSelection.PUBLIC) {
+      throw new IllegalArgumentException("Public feature indexes must be given explicitly");
+    }
     this.depth = depth;
     this.featureVectorSize = featureVectorSize;
     this.inputPartyId = inputPartyId;
+    this.featureSelection = featureSelection;
+    this.publicFeatureIndexes = null;
+  }
+
+  /**
+   * Create a new input of a tree where the feature index of each internal node is public, see
+   * {@link FeatureSelection#PUBLIC}.
+   *
+   * @param depth the depth of the tree
+   * @param publicFeatureIndexes the feature index of each internal node in level order
+   * @param inputPartyId the party holding the tree model
+   */
+  public InputDecisionTreeAsReceiver(int depth, List<Integer> publicFeatureIndexes,
+      int inputPartyId) {
+    if (publicFeatureIndexes.size() != (1 << (depth - 1)) - 1) {
+      throw new IllegalArgumentException("Must have a feature index for each internal node");
+    }
+    this.depth = depth;
+    this.featureVectorSize = 0;
+    this.inputPartyId = inputPartyId;
+    this.featureSelection = FeatureSelection.PUBLIC;
+    this.publicFeatureIndexes = publicFeatureIndexes;
+  }
+
+  public InputDecisionTreeAsReceiver(int depth, int featureVectorSize, int inputPartyId) {
+    this(depth, featureVectorSize, inputPartyId, FeatureSelection.ONE_HOT);
   }
 
   /**
@@ -29,10 +70,11 @@ public class InputDecisionTreeAsReceiver implements
    */
   private List<List<DRes<SInt>>> inputFeatureIndexes(ProtocolBuilderNumeric builder,
       int numberOfIndexes) {
+    int length = featureSelection.selectionLength(featureVectorSize);
     List<List<DRes<SInt>>> featureIndexesClosed = new ArrayList<>(numberOfIndexes);
     for (int i = 0; i < numberOfIndexes; i++) {
-      List<DRes<SInt>> featureIndexBits = new ArrayList<>(featureVectorSize);
-      for (int j = 0; j < featureVectorSize; j++) {
+      List<DRes<SInt>> featureIndexBits = new ArrayList<>(length);
+      for (int j = 0; j < length; j++) {
         featureIndexBits.add(builder.numeric().input(null, inputPartyId));
       }
       featureIndexesClosed.add(featureIndexBits);
@@ -56,15 +98,24 @@ public class InputDecisionTreeAsReceiver implements
     int numberLeafNodes = (1 << (depth - 1));
     int numberInternalNodes = numberLeafNodes - 1;
 
-    List<List<DRes<SInt>>> featureIndexesClosed = inputFeatureIndexes(builder, numberInternalNodes);
     List<DRes<SInt>> weightsClosed = input(builder, numberInternalNodes);
     List<DRes<SInt>> categoriesClosed = input(builder, numberLeafNodes);
+    if (featureSelection == FeatureSelection.PUBLIC) {
+      DecisionTreeModelClosed closedModel = DecisionTreeModelClosed.withPublicFeatureIndexes(
+          depth,
+          publicFeatureIndexes,
+          weightsClosed,
+          categoriesClosed);
+      return () -> closedModel;
+    }
+    List<List<DRes<SInt>>> featureIndexesClosed = inputFeatureIndexes(builder, numberInternalNodes);
 
     DecisionTreeModelClosed closedModel = new DecisionTreeModelClosed(
         depth,
         featureIndexesClosed,
         weightsClosed,
-        categoriesClosed);
+        categoriesClosed,
+        featureSelection);
     return () -> closedModel;
   }
 }
@@ -0,0 +1,78 @@
+package dk.alexandra.fresco.ml.dtrees;
+
+import dk.alexandra.fresco.framework.DRes;
+import dk.alexandra.fresco.framework.builder.ComputationParallel;
+import dk.alexandra.fresco.framework.builder.numeric.ProtocolBuilderNumeric;
+import dk.alexandra.fresco.framework.value.SInt;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Computation for secret-sharing all parameters of a sparse decision tree. <p>This should be run by
+ * party holding the tree model.</p>
+ */
+public class InputSparseDecisionTree implements
+    ComputationParallel<SparseDecisionTreeModelClosed, ProtocolBuilderNumeric> {
+
+  private final SparseDecisionTreeModel treeModel;
+  private final int featureVectorSize;
+  private final int inputPartyId;
+
+  public InputSparseDecisionTree(SparseDecisionTreeModel treeModel, int featureVectorSize,
+      int inputPartyId) {
+    this.treeModel = treeModel;
+    this.featureVectorSize = featureVectorSize;
+    this.inputPartyId = inputPartyId;
+  }
+
+  @Override
+  public DRes<SparseDecisionTreeModelClosed> buildComputation(ProtocolBuilderNumeric builder) {
+    int numberNodes = treeModel.getNumberNodes();
+    List<List<DRes<SInt>>> featureIndexesClosed = new ArrayList<>(numberNodes);
+    List<DRes<SInt>> weightsClosed = new ArrayList<>(numberNodes);
+    for (int i = 0; i < numberNodes; i++) {
+      int featureIndex = treeModel.getFeatureIndexes().get(i).intValueExact();
+      List<DRes<SInt>> featureIndexBits = new ArrayList<>(featureVectorSize);
+      for (int k = 0; k < featureVectorSize; k++) {
+        featureIndexBits.add(builder.numeric().input(
+            k == featureIndex ? BigInteger.ONE : BigInteger.ZERO, inputPartyId));
+      }
+      featureIndexesClosed.add(featureIndexBits);
+      weightsClosed.add(builder.numeric().input(treeModel.getWeights().get(i), inputPartyId));
+    }
+    int numberBits = FeatureSelection.INDEX_BITS.selectionLength(numberNodes + 1);
+    List<List<DRes<SInt>>> nodeSelectionsClosed = new ArrayList<>();
+    List<DRes<SInt>> directionsClosed = new ArrayList<>();
+    for (int i = 0; i < treeModel.getNumberLeaves(); i++) {
+      for (int j = 0; j < treeModel.getPathLength(); j++) {
+        // A dummy step has node index -1 and selects the index beyond the internal nodes
+        int node = treeModel.getPathNodes().get(i).get(j);
+        int index = node < 0 ? numberNodes : node;
+        boolean left = treeModel.getDirections().get(i).get(j);
+        List<DRes<SInt>> nodeSelection = new ArrayList<>(numberBits);
+        for (int b = 0; b < numberBits; b++) {
+          nodeSelection.add(builder.numeric().input(
+              BigInteger.valueOf((index >> b) & 1), inputPartyId));
+        }
+        nodeSelectionsClosed.add(nodeSelection);
+        directionsClosed.add(
+            builder.numeric().input(left ? BigInteger.ONE : BigInteger.ZERO, inputPartyId));
+      }
+    }
+    List<DRes<SInt>> categoriesClosed = new ArrayList<>(treeModel.getNumberLeaves());
+    for (BigInteger category : treeModel.getCategories()) {
+      categoriesClosed.add(builder.numeric().input(category, inputPartyId));
+    }
+    SparseDecisionTreeModelClosed closedModel = new SparseDecisionTreeModelClosed(
+        numberNodes,
+        treeModel.getNumberLeaves(),
+        treeModel.getPathLength(),
+        featureIndexesClosed,
+        weightsClosed,
+        nodeSelectionsClosed,
+        directionsClosed,
+        categoriesClosed);
+    return () -> closedModel;
+  }
+}
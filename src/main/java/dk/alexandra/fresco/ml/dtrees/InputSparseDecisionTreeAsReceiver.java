@@ -0,0 +1,72 @@
+package dk.alexandra.fresco.ml.dtrees;
+
+import dk.alexandra.fresco.framework.DRes;
+import dk.alexandra.fresco.framework.builder.ComputationParallel;
+import dk.alexandra.fresco.framework.builder.numeric.ProtocolBuilderNumeric;
+import dk.alexandra.fresco.framework.value.SInt;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Computation for secret-sharing all parameters of a sparse decision tree. <p>This should be run by
+ * party not holding the tree model, which only needs to know the number of internal nodes, the
+ * number of leaves and the path length.</p>
+ */
+public class InputSparseDecisionTreeAsReceiver implements
+    ComputationParallel<SparseDecisionTreeModelClosed, ProtocolBuilderNumeric> {
+
+  private final int numberNodes;
+  private final int numberLeaves;
+  private final int pathLength;
+  private final int featureVectorSize;
+  private final int inputPartyId;
+
+  public InputSparseDecisionTreeAsReceiver(int numberNodes, int numberLeaves, int pathLength,
+      int featureVectorSize, int inputPartyId) {
+    this.numberNodes = numberNodes;
+    this.numberLeaves = numberLeaves;
+    this.pathLength = pathLength;
+    this.featureVectorSize = featureVectorSize;
+    this.inputPartyId = inputPartyId;
+  }
+
+  /**
+   * Receives list of secrets and returns result as an undeferred list.
+   */
+  private List<DRes<SInt>> input(ProtocolBuilderNumeric builder, int numberOfValues) {
+    List<DRes<SInt>> secrets = new ArrayList<>(numberOfValues);
+    for (int i = 0; i < numberOfValues; i++) {
+      secrets.add(builder.numeric().input(null, inputPartyId));
+    }
+    return secrets;
+  }
+
+  @Override
+  public DRes<SparseDecisionTreeModelClosed> buildComputation(ProtocolBuilderNumeric builder) {
+    List<List<DRes<SInt>>> featureIndexesClosed = new ArrayList<>(numberNodes);
+    List<DRes<SInt>> weightsClosed = new ArrayList<>(numberNodes);
+    for (int i = 0; i < numberNodes; i++) {
+      featureIndexesClosed.add(input(builder, featureVectorSize));
+      weightsClosed.add(builder.numeric().input(null, inputPartyId));
+    }
+    int numberSteps = numberLeaves * pathLength;
+    int numberBits = FeatureSelection.INDEX_BITS.selectionLength(numberNodes + 1);
+    List<List<DRes<SInt>>> nodeSelectionsClosed = new ArrayList<>(numberSteps);
+    List<DRes<SInt>> directionsClosed = new ArrayList<>(numberSteps);
+    for (int i = 0; i < numberSteps; i++) {
+      nodeSelectionsClosed.add(input(builder, numberBits));
+      directionsClosed.add(builder.numeric().input(null, inputPartyId));
+    }
+    List<DRes<SInt>> categoriesClosed = input(builder, numberLeaves);
+    SparseDecisionTreeModelClosed closedModel = new SparseDecisionTreeModelClosed(
+        numberNodes,
+        numberLeaves,
+        pathLength,
+        featureIndexesClosed,
+        weightsClosed,
+        nodeSelectionsClosed,
+        directionsClosed,
+        categoriesClosed);
+    return () -> closedModel;
+  }
+}
@@ -0,0 +1,85 @@
+package dk.alexandra.fresco.ml.dtrees;
+
+import dk.alexandra.fresco.framework.DRes;
+import dk.alexandra.fresco.framework.builder.Computation;
+import dk.alexandra.fresco.framework.builder.numeric.ProtocolBuilderNumeric;
+import dk.alexandra.fresco.framework.value.SInt;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Computation selecting the entries of a feature vector given by the secret bits of a number of
+ * indexes, eg. one for each internal node of a decision tree.
+ *
+ * <p>The selection is done by a tree of multiplexers, one level per bit starting with the least
+ * significant bit. An entry without a partner on a level is paired with zero, so an index beyond
+ * the feature vector selects zero. This takes about one multiplication per feature for each index.
+ * Each level depends on the previous one, so the selection takes a round per bit, but the levels
+ * of all indexes are done in the same rounds.</p>
+ */
+public class SelectFeature implements Computation<List<DRes<SInt>>, ProtocolBuilderNumeric> {
+
+  private final List<DRes<SInt>> featureVector;
+  private final List<List<DRes<SInt>>> indexBits;
+  private final int numberBits;
+
+  /**
+   * Create a new selection.
+   *
+   * @param featureVector the feature vector
+   * @param indexBits the bits of each index, least significant bit first. All indexes must have
+   *     the same number of bits.
+   */
+  public SelectFeature(List<DRes<SInt>> featureVector, List<List<DRes<SInt>>> indexBits) {
+    this.numberBits = indexBits.isEmpty() ? 0 : indexBits.get(0).size();
+    for (List<DRes<SInt>> bits : indexBits) {
+      if (bits.size() != numberBits) {
+        throw new IllegalArgumentException("All indexes must have " + numberBits + " bits");
+      }
+    }
+    if (featureVector.size() > 1 << numberBits) {
+      throw new IllegalArgumentException("Cannot select among " + featureVector.size()
+          + " features using " + numberBits + " bits");
+    }
+    this.featureVector = featureVector;
+    this.indexBits = indexBits;
+  }
+
+  @Override
+  public DRes<List<DRes<SInt>>> buildComputation(ProtocolBuilderNumeric builder) {
+    return builder.seq(seq -> {
+      DRes<List<List<DRes<SInt>>>> current =
+          () -> Collections.nCopies(indexBits.size(), featureVector);
+      for (int b = 0; b < numberBits; b++) {
+        int level = b;
+        DRes<List<List<DRes<SInt>>>> previous = current;
+        current = seq.par(par -> {
+          List<List<DRes<SInt>>> selected = new ArrayList<>(indexBits.size());
+          for (int n = 0; n < indexBits.size(); n++) {
+            List<DRes<SInt>> values = previous.out().get(n);
+            DRes<SInt> bit = indexBits.get(n).get(level);
+            List<DRes<SInt>> next = new ArrayList<>((values.size() + 1) / 2);
+            for (int i = 0; i < values.size(); i += 2) {
+              DRes<SInt> even = values.get(i);
+              if (i + 1 < values.size()) {
+                DRes<SInt> odd = values.get(i + 1);
+                next.add(par.seq(inner -> inner.numeric().add(even,
+                    inner.numeric().mult(bit, inner.numeric().sub(odd, even)))));
+              } else {
+                next.add(par.seq(inner -> inner.numeric().sub(even,
+                    inner.numeric().mult(bit, even))));
+              }
+            }
+            selected.add(next);
+          }
+          return () -> selected;
+        });
+      }
+      DRes<List<List<DRes<SInt>>>> result = current;
+      return () -> result.out().stream().map(values -> values.get(0))
+          .collect(Collectors.toList());
+    });
+  }
+}
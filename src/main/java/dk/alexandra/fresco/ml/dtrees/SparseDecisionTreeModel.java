@@ -0,0 +1,245 @@
+package dk.alexandra.fresco.ml.dtrees;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Representation of a decision tree model which does not have to be complete.
+ *
+ * <p>The tree is given by its internal nodes, each comparing a feature with a weight, and by the
+ * paths from the root to each leaf. Each step of a path refers to an internal node and the
+ * direction taken, where the path goes left if the feature is at least the weight as in {@link
+ * DecisionTreeModel}. A secure evaluation does one comparison per internal node rather than one per
+ * node of the complete tree of the same depth. Each step of each path then selects the result of
+ * the comparison of its node, which costs about one multiplication per internal node, so the
+ * selections take about leaves * pathLength * nodes multiplications, see {@link
+ * EvaluateSparseDecisionTree}.</p>
+ *
+ * <p>To hide the shape of the tree, the model can be padded to a public number of internal nodes,
+ * leaves and path length using {@link #pad(int, int, int)}. A dummy node compares feature 0 with
+ * weight 0 and is not on any path. A dummy step has node index -1 and does not refer to any node.
+ * It is always taken if it goes left and never taken otherwise, so dummy steps going left are used
+ * to pad the real paths, and a dummy leaf has a dummy step going right, so it is never reached.</p>
+ */
+public class SparseDecisionTreeModel {
+
+  private static final int DUMMY_NODE = -1;
+
+  private final int pathLength;
+  private final int numOriginalFeatures;
+  private final List<BigInteger> featureIndexes;
+  private final List<BigInteger> weights;
+  private final List<List<Integer>> pathNodes;
+  private final List<List<Boolean>> directions;
+  private final List<BigInteger> categories;
+
+  /**
+   * Create a new model from the internal nodes and the paths to each leaf. All paths must have the
+   * same length.
+   *
+   * @param numOriginalFeatures the number of features
+   * @param featureIndexes the feature index of each internal node
+   * @param weights the weight of each internal node
+   * @param pathNodes the index of the internal node of each step on the path to each leaf, or -1
+   *     for a dummy step
+   * @param directions for each step on the path to each leaf, true if the path goes left
+   * @param categories the category of each leaf
+   */
+  public SparseDecisionTreeModel(int numOriginalFeatures,
+      List<BigInteger> featureIndexes,
+      List<BigInteger> weights,
+      List<List<Integer>> pathNodes,
+      List<List<Boolean>> directions,
+      List<BigInteger> categories) {
+    if (categories.isEmpty()) {
+      throw new IllegalArgumentException("A tree must have at least one leaf");
+    }
+    if (featureIndexes.size() != weights.size()) {
+      throw new IllegalArgumentException("Must have a weight for each internal node");
+    }
+    if (pathNodes.size() != categories.size() || directions.size() != categories.size()) {
+      throw new IllegalArgumentException("Must have a path for each leaf");
+    }
+    this.pathLength = pathNodes.get(0).size();
+    for (int i = 0; i < categories.size(); i++) {
+      if (pathNodes.get(i).size() != pathLength || directions.get(i).size() != pathLength) {
+        throw new IllegalArgumentException("All paths must have length " + pathLength);
+      }
+      for (int node : pathNodes.get(i)) {
+        if (node < DUMMY_NODE || node >= featureIndexes.size()) {
+          throw new IllegalArgumentException("No internal node with index " + node);
+        }
+      }
+    }
+    this.numOriginalFeatures = numOriginalFeatures;
+    this.featureIndexes = featureIndexes;
+    this.weights = weights;
+    this.pathNodes = pathNodes;
+    this.directions = directions;
+    this.categories = categories;
+  }
+
+  /**
+   * Converts a complete tree to a sparse tree, replacing each subtree where all leaves have the
+   * same category by a single leaf. This removes the padding added to make a tree complete.
+   *
+   * @param tree a complete tree
+   * @return an equivalent sparse tree
+   */
+  public static SparseDecisionTreeModel fromDecisionTreeModel(DecisionTreeModel tree) {
+    List<BigInteger> featureIndexes = new ArrayList<>();
+    List<BigInteger> weights = new ArrayList<>();
+    List<List<Integer>> pathNodes = new ArrayList<>();
+    List<List<Boolean>> directions = new ArrayList<>();
+    List<BigInteger> categories = new ArrayList<>();
+    collectPaths(tree, 0, 0, new ArrayList<>(), new ArrayList<>(), featureIndexes, weights,
+        pathNodes, directions, categories);
+    return fromPaths(tree.getNumOriginalFeatures(), featureIndexes, weights, pathNodes,
+        directions, categories);
+  }
+
+  /**
+   * Create a new model from paths of different lengths, padding them with dummy steps to the
+   * longest path, which must have at least one step.
+   *
+   * @param numOriginalFeatures the number of features
+   * @param featureIndexes the feature index of each internal node
+   * @param weights the weight of each internal node
+   * @param pathNodes the index of the internal node of each step on the path to each leaf
+   * @param directions for each step on the path to each leaf, true if the path goes left
+   * @param categories the category of each leaf
+   * @return the model
+   */
+  public static SparseDecisionTreeModel fromPaths(int numOriginalFeatures,
+      List<BigInteger> featureIndexes, List<BigInteger> weights, List<List<Integer>> pathNodes,
+      List<List<Boolean>> directions, List<BigInteger> categories) {
+    int pathLength = Math.max(pathNodes.stream().mapToInt(List::size).max().orElse(0), 1);
+    return new SparseDecisionTreeModel(numOriginalFeatures, featureIndexes, weights,
+        padPaths(pathNodes, pathLength, DUMMY_NODE), padPaths(directions, pathLength, true),
+        categories);
+  }
+
+  private static void collectPaths(DecisionTreeModel tree, int level, int index,
+      List<Integer> pathNodes, List<Boolean> pathDirections, List<BigInteger> featureIndexes,
+      List<BigInteger> weights, List<List<Integer>> paths, List<List<Boolean>> directions,
+      List<BigInteger> categories) {
+    int leavesBelow = 1 << (tree.getDepth() - 1 - level);
+    List<BigInteger> leaves =
+        tree.getCategories().subList(index * leavesBelow, (index + 1) * leavesBelow);
+    if (leaves.stream().distinct().count() == 1) {
+      paths.add(new ArrayList<>(pathNodes));
+      directions.add(new ArrayList<>(pathDirections));
+      categories.add(leaves.get(0));
+      return;
+    }
+    int node = featureIndexes.size();
+    featureIndexes.add(tree.getFeatureIndexes().get(level).get(index));
+    weights.add(tree.getWeights().get(level).get(index));
+    for (boolean left : new boolean[] {true, false}) {
+      pathNodes.add(node);
+      pathDirections.add(left);
+      collectPaths(tree, level + 1, 2 * index + (left ? 0 : 1), pathNodes, pathDirections,
+          featureIndexes, weights, paths, directions, categories);
+      pathNodes.remove(pathNodes.size() - 1);
+      pathDirections.remove(pathDirections.size() - 1);
+    }
+  }
+
+  private static <T> List<List<T>> padPaths(List<List<T>> paths, int pathLength, T value) {
+    List<List<T>> padded = new ArrayList<>(paths.size());
+    for (List<T> path : paths) {
+      List<T> paddedPath = new ArrayList<>(pathLength);
+      paddedPath.addAll(path);
+      paddedPath.addAll(Collections.nCopies(pathLength - path.size(), value));
+      padded.add(paddedPath);
+    }
+    return padded;
+  }
+
+  /**
+   * Pad the model to the given number of internal nodes, leaves and path length, so that only
+   * these bounds are leaked when evaluating the model.
+   *
+   * @param numberNodes the number of internal nodes of the padded model
+   * @param numberLeaves the number of leaves of the padded model
+   * @param pathLength the path length of the padded model
+   * @return the padded model
+   */
+  public SparseDecisionTreeModel pad(int numberNodes, int numberLeaves, int pathLength) {
+    // A dummy leaf needs a step to be unreachable
+    if (numberNodes < getNumberNodes() || numberLeaves < getNumberLeaves()
+        || pathLength < Math.max(this.pathLength, 1)) {
+      throw new IllegalArgumentException("Cannot pad a tree with " + getNumberNodes()
+          + " internal nodes, " + getNumberLeaves() + " leaves and path length "
+          + this.pathLength + " to " + numberNodes + " internal nodes, " + numberLeaves
+          + " leaves and path length " + pathLength);
+    }
+    List<BigInteger> paddedFeatures = new ArrayList<>(featureIndexes);
+    List<BigInteger> paddedWeights = new ArrayList<>(weights);
+    paddedFeatures.addAll(Collections.nCopies(numberNodes - getNumberNodes(), BigInteger.ZERO));
+    paddedWeights.addAll(Collections.nCopies(numberNodes - getNumberNodes(), BigInteger.ZERO));
+    List<List<Integer>> paddedNodes = padPaths(pathNodes, pathLength, DUMMY_NODE);
+    List<List<Boolean>> paddedDirections = padPaths(directions, pathLength, true);
+    List<BigInteger> paddedCategories = new ArrayList<>(categories);
+    for (int i = getNumberLeaves(); i < numberLeaves; i++) {
+      List<Boolean> unreachable = new ArrayList<>(Collections.nCopies(pathLength, true));
+      unreachable.set(0, false);
+      paddedNodes.add(new ArrayList<>(Collections.nCopies(pathLength, DUMMY_NODE)));
+      paddedDirections.add(unreachable);
+      paddedCategories.add(BigInteger.ZERO);
+    }
+    return new SparseDecisionTreeModel(numOriginalFeatures, paddedFeatures, paddedWeights,
+        paddedNodes, paddedDirections, paddedCategories);
+  }
+
+  public int getPathLength() {
+    return pathLength;
+  }
+
+  public int getNumberNodes() {
+    return featureIndexes.size();
+  }
+
+  public int getNumberLeaves() {
+    return categories.size();
+  }
+
+  public int getNumOriginalFeatures() {
+    return numOriginalFeatures;
+  }
+
+  public List<BigInteger> getFeatureIndexes() {
+    return featureIndexes;
+  }
+
+  public List<BigInteger> getWeights() {
+    return weights;
+  }
+
+  public List<List<Integer>> getPathNodes() {
+    return pathNodes;
+  }
+
+  public List<List<Boolean>> getDirections() {
+    return directions;
+  }
+
+  public List<BigInteger> getCategories() {
+    return categories;
+  }
+
+  @Override
+  public String toString() {
+    return "SparseDecisionTreeModel{" +
+        "pathLength=" + pathLength +
+        ", featureIndexes=" + featureIndexes +
+        ", weights=" + weights +
+        ", pathNodes=" + pathNodes +
+        ", directions=" + directions +
+        ", categories=" + categories +
+        '}';
+  }
+
+}
@@ -0,0 +1,99 @@
+package dk.alexandra.fresco.ml.dtrees;
+
+import dk.alexandra.fresco.framework.DRes;
+import dk.alexandra.fresco.framework.value.SInt;
+import java.util.List;
+
+/**
+ * Sparse decision tree model with secret-shared parameters, see {@link SparseDecisionTreeModel}.
+ *
+ * <p>Each step of a path selects the internal node it refers to by the bits of the index of the
+ * node as in {@link FeatureSelection#INDEX_BITS}, using enough bits for the indexes up to and
+ * including the number of internal nodes. A dummy step has the index of the number of internal
+ * nodes, so it does not refer to any node. The steps are stored leaf by leaf, so step <i>j</i> on
+ * the path to leaf <i>i</i> has index <i>i * pathLength + j</i>. Only the number of internal
+ * nodes, the number of leaves and the path length are public.</p>
+ */
+public class SparseDecisionTreeModelClosed {
+
+  private final int numberNodes;
+  private final int numberLeaves;
+  private final int pathLength;
+  private final List<List<DRes<SInt>>> featureIndexes;
+  private final List<DRes<SInt>> weights;
+  private final List<List<DRes<SInt>>> nodeSelections;
+  private final List<DRes<SInt>> directions;
+  private final List<DRes<SInt>> categories;
+
+  public SparseDecisionTreeModelClosed(int numberNodes, int numberLeaves, int pathLength,
+      List<List<DRes<SInt>>> featureIndexes,
+      List<DRes<SInt>> weights,
+      List<List<DRes<SInt>>> nodeSelections,
+      List<DRes<SInt>> directions,
+      List<DRes<SInt>> categories) {
+    this.numberNodes = numberNodes;
+    this.numberLeaves = numberLeaves;
+    this.pathLength = pathLength;
+    this.featureIndexes = featureIndexes;
+    this.weights = weights;
+    this.nodeSelections = nodeSelections;
+    this.directions = directions;
+    this.categories = categories;
+  }
+
+  public int getNumberNodes() {
+    return numberNodes;
+  }
+
+  public int getNumberLeaves() {
+    return numberLeaves;
+  }
+
+  public int getPathLength() {
+    return pathLength;
+  }
+
+  /**
+   * Returns the selection bits of each internal node.
+   */
+  public List<List<DRes<SInt>>> getFeatureIndexes() {
+    return featureIndexes;
+  }
+
+  public List<DRes<SInt>> getWeights() {
+    return weights;
+  }
+
+  /**
+   * Returns the index bits of the internal node of each step, least significant bit first.
+   */
+  public List<List<DRes<SInt>>> getNodeSelections() {
+    return nodeSelections;
+  }
+
+  /**
+   * Returns the direction of each step, which is 1 if the path goes left and 0 otherwise.
+   */
+  public List<DRes<SInt>> getDirections() {
+    return directions;
+  }
+
+  public List<DRes<SInt>> getCategories() {
+    return categories;
+  }
+
+  @Override
+  public String toString() {
+    return "SparseDecisionTreeModelClosed{" +
+        "numberNodes=" + numberNodes +
+        ", numberLeaves=" + numberLeaves +
+        ", pathLength=" + pathLength +
+        ", featureIndexes=" + featureIndexes +
+        ", weights=" + weights +
+        ", nodeSelections=" + nodeSelections +
+        ", directions=" + directions +
+        ", categories=" + categories +
+        '}';
+  }
+
+}
@@ -0,0 +1,274 @@
+package dk.alexandra.fresco.ml.dtrees.utils;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import dk.alexandra.fresco.ml.dtrees.BoostedTreesModel;
+import dk.alexandra.fresco.ml.dtrees.DecisionTreeModel;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Parses boosted tree ensembles from the JSON dumps of XGBoost and LightGBM.
+ *
+ * <p>The thresholds and leaf values are encoded as fixed point integers with the given precision.
+ * The secure evaluation goes left if a feature is at least the threshold of a node, so the
+ * thresholds are rounded such that this gives the same result as the original comparison on
+ * features encoded with the same precision. Since the secure evaluation requires complete trees,
+ * leaves above the bottom level are replaced by subtrees where all leaves have the same value.</p>
+ *
+ * <p>Missing values and categorical splits are not supported. Multiclass models have a sum of
+ * trees for each class, so XGBoost dumps of such models must be parsed using {@link
+ * #parseXgboost(Reader, int, double)}, and multiclass LightGBM dumps are rejected.</p>
+ */
+public class BoostedTreesParser {
+
+  /**
+   * Intermediate representation of a node. For internal nodes the left child is taken if the
+   * feature is at least the threshold.
+   */
+  private static class Node {
+
+    private final int feature;
+    private final BigInteger threshold;
+    private final Node left;
+    private final Node right;
+    private final BigDecimal value;
+
+    private Node(int feature, BigInteger threshold, Node left, Node right) {
+      this.feature = feature;
+      this.threshold = threshold;
+      this.left = left;
+      this.right = right;
+      this.value = null;
+    }
+
+    private Node(BigDecimal value) {
+      this.feature = 0;
+      this.threshold = BigInteger.ZERO;
+      this.left = null;
+      this.right = null;
+      this.value = value;
+    }
+
+    private boolean isLeaf() {
+      return value != null;
+    }
+
+    private int depth() {
+      return isLeaf() ? 0 : 1 + Math.max(left.depth(), right.depth());
+    }
+
+    private int maxFeature() {
+      return isLeaf() ? -1 : Math.max(feature, Math.max(left.maxFeature(), right.maxFeature()));
+    }
+  }
+
+  private final int precision;
+
+  /**
+   * Create a new parser encoding the thresholds and leaf values with the given precision.
+   *
+   * @param precision the number of fractional bits
+   */
+  public BoostedTreesParser(int precision) {
+    this.precision = precision;
+  }
+
+  /**
+   * Parse an XGBoost model with a single output dumped as JSON, ie. a list of trees as output by
+   * <code>Booster.get_dump(dump_format='json')</code>. Features must be named <code>f0, f1,
+   * ...</code> as in the default dump. XGBoost takes the <code>yes</code> branch if the feature is
+   * less than the split condition. The dump does not include the number of classes, so a
+   * multiclass model must be parsed using {@link #parseXgboost(Reader, int, double)} instead.
+   *
+   * @param reader a reader for the JSON dump
+   * @param baseMargin the margin added to the sum of the trees, ie. the base score transformed by
+   *     the link function of the objective
+   * @return the ensemble
+   */
+  public BoostedTreesModel parseXgboost(Reader reader, double baseMargin) {
+    return parseXgboost(reader, 1, baseMargin).get(0);
+  }
+
+  public BoostedTreesModel parseXgboost(File file, double baseMargin) throws IOException {
+    try (Reader reader = new FileReader(file)) {
+      return parseXgboost(reader, baseMargin);
+    }
+  }
+
+  /**
+   * Parse an XGBoost model with the given number of classes dumped as JSON. XGBoost adds one tree
+   * per class in each boosting round, so the <i>i</i>'th tree of the dump belongs to class <i>i mod
+   * numClasses</i>.
+   *
+   * @param reader a reader for the JSON dump
+   * @param numClasses the number of classes of the model, ie. <code>num_class</code>, or 1 for
+   *     models with a single output
+   * @param baseMargin the margin added to the sum of the trees of each class
+   * @return an ensemble for each class, which all have the same number of features
+   */
+  public List<BoostedTreesModel> parseXgboost(Reader reader, int numClasses, double baseMargin) {
+    JsonArray dump = new JsonParser().parse(reader).getAsJsonArray();
+    if (numClasses < 1 || dump.size() % numClasses != 0) {
+      throw new IllegalArgumentException(
+          "Cannot divide " + dump.size() + " trees between " + numClasses + " classes");
+    }
+    List<Node> trees = new ArrayList<>(dump.size());
+    for (JsonElement tree : dump) {
+      trees.add(xgboostNode(tree.getAsJsonObject()));
+    }
+    int numFeatures = numFeatures(trees);
+    List<BoostedTreesModel> models = new ArrayList<>(numClasses);
+    for (int c = 0; c < numClasses; c++) {
+      List<Node> classTrees = new ArrayList<>(trees.size() / numClasses);
+      for (int t = c; t < trees.size(); t += numClasses) {
+        classTrees.add(trees.get(t));
+      }
+      models.add(makeModel(classTrees, BigDecimal.valueOf(baseMargin), numFeatures));
+    }
+    return models;
+  }
+
+  public List<BoostedTreesModel> parseXgboost(File file, int numClasses, double baseMargin)
+      throws IOException {
+    try (Reader reader = new FileReader(file)) {
+      return parseXgboost(reader, numClasses, baseMargin);
+    }
+  }
+
+  /**
+   * Parse a LightGBM model dumped as JSON, ie. the output of <code>Booster.dump_model()</code>.
+   * LightGBM takes the left child if the feature is at most the threshold. The initial score is
+   * already included in the leaves of the first tree of the dump. Multiclass models are not
+   * supported.
+   *
+   * @param reader a reader for the JSON dump
+   * @return the ensemble
+   */
+  public BoostedTreesModel parseLightGbm(Reader reader) {
+    JsonObject dump = new JsonParser().parse(reader).getAsJsonObject();
+    if (dump.has("num_class") && dump.get("num_class").getAsInt() > 1) {
+      throw new IllegalArgumentException(
+          "Unsupported multiclass model with " + dump.get("num_class").getAsInt() + " classes");
+    }
+    JsonArray treeInfo = dump.getAsJsonArray("tree_info");
+    List<Node> trees = new ArrayList<>(treeInfo.size());
+    for (JsonElement tree : treeInfo) {
+      trees.add(lightGbmNode(tree.getAsJsonObject().getAsJsonObject("tree_structure")));
+    }
+    return makeModel(trees, BigDecimal.ZERO, numFeatures(trees));
+  }
+
+  public BoostedTreesModel parseLightGbm(File file) throws IOException {
+    try (Reader reader = new FileReader(file)) {
+      return parseLightGbm(reader);
+    }
+  }
+
+  private Node xgboostNode(JsonObject node) {
+    if (node.has("leaf")) {
+      return new Node(node.get("leaf").getAsBigDecimal());
+    }
+    if (node.has("missing") && !node.get("missing").equals(node.get("yes"))
+        && !node.get("missing").equals(node.get("no"))) {
+      throw new IllegalArgumentException("Unexpected missing branch " + node.get("missing"));
+    }
+    String split = node.get("split").getAsString();
+    if (!split.matches("f\\d+")) {
+      throw new IllegalArgumentException("Unsupported feature name " + split);
+    }
+    Map<Integer, JsonObject> children = new HashMap<>();
+    for (JsonElement child : node.getAsJsonArray("children")) {
+      children.put(child.getAsJsonObject().get("nodeid").getAsInt(), child.getAsJsonObject());
+    }
+    // x < t iff x < ceil(t) for integers x
+    BigInteger threshold = scale(node.get("split_condition").getAsBigDecimal())
+        .setScale(0, RoundingMode.CEILING).toBigIntegerExact();
+    return new Node(Integer.parseInt(split.substring(1)), threshold,
+        xgboostNode(children.get(node.get("no").getAsInt())),
+        xgboostNode(children.get(node.get("yes").getAsInt())));
+  }
+
+  private Node lightGbmNode(JsonObject node) {
+    if (node.has("leaf_value")) {
+      return new Node(node.get("leaf_value").getAsBigDecimal());
+    }
+    String decisionType = node.get("decision_type").getAsString();
+    if (!decisionType.equals("<=")) {
+      throw new IllegalArgumentException("Unsupported decision type " + decisionType);
+    }
+    // x <= t iff x < floor(t) + 1 for integers x
+    BigInteger threshold = scale(node.get("threshold").getAsBigDecimal())
+        .setScale(0, RoundingMode.FLOOR).toBigIntegerExact().add(BigInteger.ONE);
+    return new Node(node.get("split_feature").getAsInt(), threshold,
+        lightGbmNode(node.getAsJsonObject("right_child")),
+        lightGbmNode(node.getAsJsonObject("left_child")));
+  }
+
+  private BigDecimal scale(BigDecimal x) {
+    return x.multiply(new BigDecimal(BigInteger.ONE.shiftLeft(precision)));
+  }
+
+  private int numFeatures(List<Node> trees) {
+    return trees.stream().mapToInt(Node::maxFeature).max().orElse(-1) + 1;
+  }
+
+  private BoostedTreesModel makeModel(List<Node> trees, BigDecimal baseMargin,
+      int numFeatures) {
+    List<DecisionTreeModel> models = new ArrayList<>(trees.size());
+    for (int t = 0; t < trees.size(); t++) {
+      // The base margin is added to all leaves of the first tree
+      models.add(completeTree(trees.get(t), numFeatures, t == 0 ? baseMargin : BigDecimal.ZERO));
+    }
+    return new BoostedTreesModel(models, precision);
+  }
+
+  private DecisionTreeModel completeTree(Node root, int numFeatures, BigDecimal offset) {
+    // The secure evaluation needs at least one internal node
+    int depth = Math.max(root.depth(), 1) + 1;
+    List<List<BigInteger>> featureIndexes = new ArrayList<>(depth - 1);
+    List<List<BigInteger>> weights = new ArrayList<>(depth - 1);
+    for (int d = 0; d < depth - 1; d++) {
+      featureIndexes.add(new ArrayList<>(1 << d));
+      weights.add(new ArrayList<>(1 << d));
+    }
+    List<BigInteger> leaves = new ArrayList<>(1 << (depth - 1));
+    fill(root, 0, depth, featureIndexes, weights, leaves, offset);
+    return new DecisionTreeModel(depth, Math.max(numFeatures, 1), featureIndexes, weights,
+        leaves);
+  }
+
+  /**
+   * Adds the nodes of a subtree to the levels of a complete tree. Since each level is filled from
+   * left to right, the nodes end up at the right indices.
+   */
+  private void fill(Node node, int level, int depth, List<List<BigInteger>> featureIndexes,
+      List<List<BigInteger>> weights, List<BigInteger> leaves, BigDecimal offset) {
+    if (level == depth - 1) {
+      leaves.add(scale(node.value.add(offset)).setScale(0, RoundingMode.HALF_UP)
+          .toBigIntegerExact());
+      return;
+    }
+    featureIndexes.get(level).add(BigInteger.valueOf(node.feature));
+    weights.get(level).add(node.threshold);
+    if (node.isLeaf()) {
+      fill(node, level + 1, depth, featureIndexes, weights, leaves, offset);
+      fill(node, level + 1, depth, featureIndexes, weights, leaves, offset);
+    } else {
+      fill(node.left, level + 1, depth, featureIndexes, weights, leaves, offset);
+      fill(node.right, level + 1, depth, featureIndexes, weights, leaves, offset);
+    }
+  }
+
+}
@@ -7,13 +7,26 @@ import java.io.IOException;
 import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import dk.alexandra.fresco.framework.util.Pair;
 import dk.alexandra.fresco.ml.dtrees.DecisionTreeModel;
-
+import dk.alexandra.fresco.ml.dtrees.SparseDecisionTreeModel;
+
+/**
+ * Parses decision trees output by the R package rpart.
+ *
+ * <p>The lines of a file are indexed by node number once before the tree is built. The complete
+ * tree is then built layer by layer in a single pass, so {@link #parseFile(String)} takes time
+ * linear in the size of the complete tree, which is exponential in the depth. A file can instead
+ * be parsed directly to a {@link SparseDecisionTreeModel} using {@link #parseSparseFile(String)},
+ * which only visits the nodes of the tree in the file and so takes time linear in the size of the
+ * file.</p>
+ */
 public class DTreeParser {
 
   private class Node {
@@ -41,13 +54,17 @@ public class DTreeParser {
 
   private List<String> features;
   private List<String> categories;
+  private Map<String, Integer> featureNumbers;
+  private Map<String, Integer> categoryNumbers;
+
+  // The lines of the file indexed by node number
+  private Map<Integer, String> lineIndex;
 
   // the number of features in the training set; this is not the same as the number of distinct
   // feature indexes, since some of the features might not be used in the tree
   private int numOriginalFeatures;
   private List<List<Integer>> featureIdxs;
   private List<List<Double>> weightsIdxs;
-  private List<List<Boolean>> switchIdxs;
   private List<List<Integer>> categoriesIdxs;
 
   public DTreeParser(int precision) {
@@ -65,6 +82,7 @@ public class DTreeParser {
       setFeatures(collection.stream());
       setCategories(collection.stream());
       setDepth(collection);
+      indexLines(collection);
       constructTree(collection);
       // We need to mirror the tree because the R model assumes you go left if the comparison is
       // true and we assume you go right
@@ -80,6 +98,71 @@ public class DTreeParser {
     return null;
   }
 
+  /**
+   * Parses a file to a sparse tree, which only has the internal nodes and leaves of the tree in
+   * the file rather than those of the complete tree of the same depth.
+   *
+   * @param fileName the file
+   * @return the sparse tree
+   * @throws IOException if the file cannot be read
+   */
+  public SparseDecisionTreeModel parseSparseFile(String fileName) throws IOException {
+    try (BufferedReader reader = new BufferedReader(new FileReader(fileName))) {
+      List<String> collection = reader.lines().filter(line -> !line.trim().isEmpty()).collect(
+          Collectors.toList());
+      setFeatures(collection.stream());
+      setCategories(collection.stream());
+      indexLines(collection);
+      return makeSparseTreeModel(collection);
+    }
+  }
+
+  private SparseDecisionTreeModel makeSparseTreeModel(List<String> list) {
+    numOriginalFeatures = Integer.parseInt(list.get(0));
+    List<BigInteger> featureIndexes = new ArrayList<>();
+    List<BigInteger> weights = new ArrayList<>();
+    List<List<Integer>> pathNodes = new ArrayList<>();
+    List<List<Boolean>> directions = new ArrayList<>();
+    List<BigInteger> leafCategories = new ArrayList<>();
+    collectPaths(1, new ArrayList<>(), new ArrayList<>(), featureIndexes, weights, pathNodes,
+        directions, leafCategories);
+    return SparseDecisionTreeModel.fromPaths(numOriginalFeatures, featureIndexes, weights,
+        pathNodes, directions, leafCategories);
+  }
+
+  /**
+   * Adds the paths to all leaves below a node, and the internal nodes on these paths, in depth
+   * first order.
+   */
+  private void collectPaths(int nodeIdx, List<Integer> pathNodes, List<Boolean> pathDirections,
+      List<BigInteger> featureIndexes, List<BigInteger> weights, List<List<Integer>> paths,
+      List<List<Boolean>> directions, List<BigInteger> leafCategories) {
+    // The split of a node is found on the line of its even child
+    Node split = findNode(2 * nodeIdx);
+    if (split == null) {
+      paths.add(new ArrayList<>(pathNodes));
+      directions.add(new ArrayList<>(pathDirections));
+      leafCategories.add(BigInteger.valueOf(
+          categoryNumbers.getOrDefault(getCategory(findLine(nodeIdx)), -1)));
+      return;
+    }
+    int node = featureIndexes.size();
+    featureIndexes.add(BigInteger.valueOf(split.feature));
+    // Multiply with PRECISION to move to integers
+    weights.add(BigInteger.valueOf((int) (PRECISION * split.weight)));
+    // The even child has the < comparison unless it is switched, and we go left if the feature is
+    // at least the weight
+    int leftChild = split.switchAround ? 2 * nodeIdx : 2 * nodeIdx + 1;
+    for (boolean left : new boolean[] {true, false}) {
+      pathNodes.add(node);
+      pathDirections.add(left);
+      collectPaths(left ? leftChild : leftChild ^ 1, pathNodes, pathDirections, featureIndexes,
+          weights, paths, directions, leafCategories);
+      pathNodes.remove(pathNodes.size() - 1);
+      pathDirections.remove(pathDirections.size() - 1);
+    }
+  }
+
   private void mirrorTree() {
     for (int i = 0; i < featureIdxs.size(); i++) {
       Collections.reverse(featureIdxs.get(i));
@@ -89,132 +172,83 @@ public class DTreeParser {
   }
 
   private DecisionTreeModel makeTreeModel() {
-    List<List<BigInteger>> bigFeatures = new ArrayList<>();
-    List<List<BigInteger>> bigWeights = new ArrayList<>();
+    List<List<BigInteger>> bigFeatures = new ArrayList<>(featureIdxs.size() - 1);
+    List<List<BigInteger>> bigWeights = new ArrayList<>(featureIdxs.size() - 1);
     // Skip the last layer as it is simply a dummy layer as it only contains category information
     for (int i = 0; i < featureIdxs.size() - 1; i++) {
-      List<BigInteger> currentFeatures = new ArrayList<>();
-      List<BigInteger> currentWeights = new ArrayList<>();
+      List<BigInteger> currentFeatures = new ArrayList<>(featureIdxs.get(i).size());
+      List<BigInteger> currentWeights = new ArrayList<>(featureIdxs.get(i).size());
       for (int j = 0; j < featureIdxs.get(i).size(); j++) {
-        currentFeatures.add(new BigInteger(String.valueOf(featureIdxs.get(i).get(j))));
+        currentFeatures.add(BigInteger.valueOf(featureIdxs.get(i).get(j)));
         // Multiply with PRECISION to move to integers
-        currentWeights.add(new BigInteger(String.valueOf((int) (PRECISION * weightsIdxs.get(
-            i).get(j)))));
+        currentWeights.add(BigInteger.valueOf((int) (PRECISION * weightsIdxs.get(i).get(j))));
       }
       bigFeatures.add(currentFeatures);
       bigWeights.add(currentWeights);
     }
     List<BigInteger> bigCategories = new ArrayList<>();
     for (int i = 0; i < categoriesIdxs.get(categoriesIdxs.size() - 1).size(); i++) {
-      bigCategories.add(
-          new BigInteger(String.valueOf(categoriesIdxs.get(categoriesIdxs.size() - 1).get(i))));
+      bigCategories.add(BigInteger.valueOf(categoriesIdxs.get(categoriesIdxs.size() - 1).get(i)));
     }
     return new DecisionTreeModel(depth, numOriginalFeatures, bigFeatures,
         bigWeights, bigCategories);
   }
 
-  private void switchSubtree(int parentNodeIdx) {
-    int leftChildIdx = 2 * parentNodeIdx;
-    int childLayer = (int) Math.floor(Math.log(leftChildIdx) / Math.log(2));
-    for (int i = childLayer; i < depth; i++) {
-      switchLeftRight(leftChildIdx, 1 << (i - childLayer));
-      leftChildIdx = 2 * leftChildIdx;
-    }
-  }
-
-  private void switchLeftRight(int leftChildIdx, int length) {
-    int layer = (int) Math.floor(Math.log(leftChildIdx) / Math.log(2));
-    int leftChildOffset = leftChildIdx - (1 << layer);
-    int rightChildOffset = leftChildOffset + length;
-    // Switch nodes in current layer
-    for (int i = 0; i < length; i++) {
-      Integer leftFeature = featureIdxs.get(layer).get(leftChildOffset + i);
-      Integer rightFeature = featureIdxs.get(layer).get(rightChildOffset + i);
-      featureIdxs.get(layer).set(leftChildOffset + i, rightFeature);
-      featureIdxs.get(layer).set(rightChildOffset + i, leftFeature);
-      Double leftWeight = weightsIdxs.get(layer).get(leftChildOffset + i);
-      Double rightWeight = weightsIdxs.get(layer).get(rightChildOffset + i);
-      weightsIdxs.get(layer).set(leftChildOffset + i, rightWeight);
-      weightsIdxs.get(layer).set(rightChildOffset + i, leftWeight);
-      Integer leftCategory = categoriesIdxs.get(layer).get(leftChildOffset + i);
-      Integer rightCategory = categoriesIdxs.get(layer).get(rightChildOffset + i);
-      categoriesIdxs.get(layer).set(leftChildOffset + i, rightCategory);
-      categoriesIdxs.get(layer).set(rightChildOffset + i, leftCategory);
-    }
-  }
-
   private void constructTree(List<String> list) {
     numOriginalFeatures = Integer.parseInt(list.get(0));
-    featureIdxs = new ArrayList<>();
-    weightsIdxs = new ArrayList<>();
-    categoriesIdxs = new ArrayList<>();
-    switchIdxs = new ArrayList<>();
+    featureIdxs = new ArrayList<>(depth);
+    weightsIdxs = new ArrayList<>(depth);
+    categoriesIdxs = new ArrayList<>(depth);
+    // The position of each node of the previous layer in the output and its category, or the
+    // category of its closest ancestor if it is not in the tree
+    int[] previousPositions = new int[0];
+    int[] previousCategories = new int[0];
+    // Whether the children of each node of the previous layer must be switched
+    boolean[] previousSwitches = new boolean[0];
     // Iterate through the fully balanced binary tree, except the category layer
     for (int i = 0; i < depth; i++) {
-      List<Integer> featureLayer = new ArrayList<>();
-      List<Double> weightLayer = new ArrayList<>();
-      List<Boolean> switchLayer = new ArrayList<>();
-      List<Integer> categoryLayer = new ArrayList<>();
-      for (int j = 0; j < 1 << i; j++) {
-        int currentIdx = (1 << i) + j;
-        // Find category
-        Node currentNode = null;
-        if (currentIdx > 1) { // Skip root since it will never have category
-          currentNode = findNode(currentIdx, list);
-          while (currentNode == null) {
-            currentIdx = currentIdx / 2;
-            currentNode = findNode(currentIdx, list);
-          }
-        }
-        if (currentNode != null) {
-          categoryLayer.add(currentNode.category);
-        } else {
-          categoryLayer.add(-1);
+      int layerSize = 1 << i;
+      // can't use negative one indexes for dummy nodes since that leaks information during the
+      // index check, so use 0 instead
+      List<Integer> featureLayer = new ArrayList<>(Collections.nCopies(layerSize, 0));
+      List<Double> weightLayer = new ArrayList<>(Collections.nCopies(layerSize, 0.0));
+      List<Integer> categoryLayer = new ArrayList<>(Collections.nCopies(layerSize, -1));
+      int[] positions = new int[layerSize];
+      int[] layerCategories = new int[layerSize];
+      boolean[] switches = new boolean[layerSize];
+      for (int j = 0; j < layerSize; j++) {
+        int currentIdx = layerSize + j;
+        int category = -1;
+        if (i > 0) { // Skip root since it will never have category
+          // A switch of the parent moves the whole subtree of a child to the other side, so the
+          // position of a node is found from the position of its parent
+          positions[j] = 2 * previousPositions[j / 2] + ((j % 2 == 1) ^ previousSwitches[j / 2]
+              ? 1 : 0);
+          Node currentNode = findNode(currentIdx);
+          category = currentNode != null ? currentNode.category : previousCategories[j / 2];
         }
+        layerCategories[j] = category;
+        categoryLayer.set(positions[j], category);
         // Find node with 2x node index to find the current node's weight
-        Node childNode = findNode(2 * currentIdx, list);
+        Node childNode = findNode(2 * currentIdx);
         if (childNode != null) {
-          featureLayer.add(childNode.feature);
-          weightLayer.add(childNode.weight);
-          switchLayer.add(childNode.switchAround);
-        } else {
-          // The current node is terminal and we must insert a dummy node
-          featureLayer.add(-1);
-          weightLayer.add(0.0);
-          switchLayer.add(false);
+          featureLayer.set(positions[j], childNode.feature);
+          weightLayer.set(positions[j], childNode.weight);
+          switches[j] = childNode.switchAround;
         }
+        // Otherwise the current node is terminal and we keep the dummy node
       }
       featureIdxs.add(featureLayer);
       weightsIdxs.add(weightLayer);
-      switchIdxs.add(switchLayer);
       categoriesIdxs.add(categoryLayer);
-    }
-    // can't use negative one indexes for dummy nodes since that leaks information during the index
-    // check, so use 0 instead
-    replaceNegativeOnes();
-    // Do switches if needed
-    for (int i = 0; i < depth; i++) {
-      for (int j = 0; j < 1 << i; j++) {
-        if (switchIdxs.get(i).get(j)) {
-          int currentIdx = (1 << i) + j;
-          switchSubtree(currentIdx);
-        }
-      }
-    }
-  }
-
-  private void replaceNegativeOnes() {
-    for (List<Integer> featureLayer : featureIdxs) {
-      for (int i = 0; i < featureLayer.size(); i++) {
-        if (featureLayer.get(i).equals(-1)) {
-          featureLayer.set(i, 0);
-        }
-      }
+      previousPositions = positions;
+      previousCategories = layerCategories;
+      previousSwitches = switches;
     }
   }
 
   private void setDepth(List<String> list) {
-    int maxNode = -1;
+    int maxNode = 1;
     // Skip meta lines along with the root
     for (int i = META_LINES + 1; i < list.size(); i++) {
       int nodeIdx = getNodeIdx(list.get(i));
@@ -222,39 +256,38 @@ public class DTreeParser {
         maxNode = nodeIdx;
       }
     }
-    depth = (int) Math.ceil(Math.log(maxNode) / Math.log(2));
+    // Node n is in layer floor(log2(n)), so this is the number of layers
+    depth = 32 - Integer.numberOfLeadingZeros(maxNode);
   }
 
   private void setFeatures(Stream<String> stream) {
-    features = new ArrayList<>();
     // Skip the first meta lines and an extra since we want to skip the root as well
-    stream.skip(META_LINES + 1).forEach(line -> {
-      Pair<String, Boolean> featurePair = getFeature(line);
-      String feature = featurePair.getFirst();
-      // Go to next line if we have already added the feature
-      if (!features.contains(feature)) {
-        // The number we will associate with the feature
-        features.add(feature);
-      }
-    });
+    features = stream.skip(META_LINES + 1).map(line -> getFeature(line).getFirst()).distinct()
+        .collect(Collectors.toList());
     // Sort the list alphabetically to be sure that the order of attributes does not leak info on the tree
     features.sort(null);
+    featureNumbers = numbers(features);
   }
 
   private void setCategories(Stream<String> stream) {
-    categories = new ArrayList<>();
     // Skip the first meta lines and an extra since we want to skip the root as well
-    stream.skip(META_LINES + 1).forEach(line -> {
-      String category = getCategory(line);
-      // Go to next line if we have already added the category
-      if (!categories.contains(category)) {
-        // The number we will associate with the feature
-        categories.add(category);
-      }
-    });
+    categories = stream.skip(META_LINES + 1).map(this::getCategory).distinct()
+        .collect(Collectors.toList());
     // Sort the list alphabetically to be sure that the order of attributes does not leak info on
     // the tree
     categories.sort(null);
+    categoryNumbers = numbers(categories);
+  }
+
+  /**
+   * Maps each name to the number we will associate with it, ie. its index in the list.
+   */
+  private Map<String, Integer> numbers(List<String> names) {
+    Map<String, Integer> numbers = new HashMap<>(names.size());
+    for (int i = 0; i < names.size(); i++) {
+      numbers.put(names.get(i), i);
+    }
+    return numbers;
   }
 
   private int getNodeIdx(String line) {
@@ -320,30 +353,34 @@ public class DTreeParser {
     return Double.parseDouble(line.substring(weightStart + 1, weightEnd));
   }
 
-  private Node findNode(int index, List<String> list) {
+  private Node findNode(int index) {
     Integer featureNum;
     Double weightVal;
-    String line = findLine(index, list);
+    String line = findLine(index);
     if (line == null) {
       return null;
     }
     Pair<String, Boolean> feature = getFeature(line);
     boolean shouldSwitch = feature.getSecond();
-    featureNum = features.lastIndexOf(feature.getFirst());
+    featureNum = featureNumbers.getOrDefault(feature.getFirst(), -1);
     weightVal = getWeight(line, shouldSwitch);
-    int category = categories.lastIndexOf(getCategory(line));
+    int category = categoryNumbers.getOrDefault(getCategory(line), -1);
     return new Node(featureNum, category, weightVal, shouldSwitch);
   }
 
-  private String findLine(int index, List<String> list) {
+  /**
+   * Indexes the lines of a file by node number, which must be done before looking up nodes.
+   */
+  private void indexLines(List<String> list) {
     // Skip header and start at root node
+    lineIndex = new HashMap<>(2 * list.size());
     for (int i = META_LINES; i < list.size(); i++) {
-      String currentLine = list.get(i);
-      if (getNodeIdx(currentLine) == index) {
-        return currentLine;
-      }
+      lineIndex.put(getNodeIdx(list.get(i)), list.get(i));
     }
-    return null;
+  }
+
+  private String findLine(int index) {
+    return lineIndex.get(index);
   }
 
   public static void main(String args[]) {
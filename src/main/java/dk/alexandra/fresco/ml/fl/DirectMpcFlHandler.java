@@ -8,12 +8,25 @@ import dk.alexandra.fresco.framework.builder.numeric.ProtocolBuilderNumeric;
 import dk.alexandra.fresco.framework.network.Network;
 import dk.alexandra.fresco.framework.sce.SecureComputationEngine;
 import dk.alexandra.fresco.framework.util.ExceptionConverter;
+import dk.alexandra.fresco.framework.util.Pair;
 import dk.alexandra.fresco.framework.value.SInt;
+import dk.alexandra.fresco.lib.collections.Matrix;
+import dk.alexandra.fresco.lib.collections.MatrixUtils;
+import dk.alexandra.fresco.lib.real.SReal;
+import dk.alexandra.fresco.lib.real.fixed.SFixed;
+import dk.alexandra.fresco.lib.real.fixed.utils.Truncate;
+import dk.alexandra.fresco.ml.nn.NeuralNetwork;
+import dk.alexandra.fresco.ml.utils.Dl4jModelConverter;
+import dk.alexandra.fresco.ml.utils.FixedPointUtils;
+import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.math.MathContext;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.Future;
 import java.util.stream.Collectors;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
 import org.nd4j.linalg.factory.Nd4j;
 
 /**
@@ -81,20 +94,8 @@ public final class DirectMpcFlHandler<ResourcePoolT extends NumericResourcePool>
   private Application<FlatModel, ProtocolBuilderNumeric> processModel(final FlatModel model) {
     return builder -> {
       Averager<SInt, ProtocolBuilderNumeric> averager = new SIntAverager<>();
-      final long numParams = model.getParams().length();
-      DRes<FlatModel> m = builder.seq(s -> () -> 1)
-          .whileLoop(index -> index < rp.getNoOfParties() + 1, (whileBuilder, index) -> {
-            if (index == rp.getMyId()) {
-              List<BigInteger> params = prepareForInput(model);
-              BigInteger examples = BigInteger.valueOf(model.getExamples());
-              whileBuilder.seq(inputMyParams(params, examples))
-                  .seq((seq, closedParams) -> seq.seq(averager.addToAverage(closedParams)));
-            } else {
-              whileBuilder.seq(inputOtherParams(numParams, index))
-                  .seq((seq, closedParams) -> seq.seq(averager.addToAverage(closedParams)));
-            }
-            return () -> index + 1;
-          }).seq((seq, index) -> seq.seq(averager.getAveragedParams()))
+      DRes<FlatModel> m = builder.seq(addAllModels(model, averager))
+          .seq((seq, index) -> seq.seq(averager.getAveragedParams()))
           .seq((seq, closedAverage) -> seq.seq(openAverage(closedAverage)))
           .seq((seq, openAverage) -> () -> postProcessModel(
               openAverage.stream().map(DRes::out).collect(Collectors.toList())));
@@ -102,6 +103,101 @@ public final class DirectMpcFlHandler<ResourcePoolT extends NumericResourcePool>
     };
   }
 
+  /**
+   * Constructs an MPC Application which averages the locally trained models of all parties as in
+   * {@link #submitLocalModel(FlatModel)}, but keeps the averaged model secret and uses it to
+   * evaluate a network on a secret input.
+   *
+   * <p>
+   * The averaged parameters are converted directly to fixed point numbers, so the model is never
+   * opened and does not have to be input again for inference. To avoid a secure division per
+   * parameter, the sum of the weights of the models (ie. the total number of examples) is opened.
+   * The template network gives the layout of the flattened parameters and the activation
+   * functions, and must consist of dense and output layers only.
+   * </p>
+   *
+   * @param model
+   *          the locally trained model of this party
+   * @param template
+   *          a network with the same configuration as the trained models
+   * @param input
+   *          the input to the network with a sample in each column. Parties other than the input
+   *          party should give a matrix of the same size, but the entries are ignored and may be
+   *          <code>null</code>
+   * @param inputParty
+   *          the id of the party holding the input
+   * @return the output of the averaged model on the input
+   */
+  public Future<Matrix<BigDecimal>> evaluateAveragedModel(FlatModel model,
+      MultiLayerNetwork template, Matrix<BigDecimal> input, int inputParty) {
+    return this.sce.startApplication(evaluateModel(model, template, input, inputParty), this.rp,
+        this.network);
+  }
+
+  private Application<Matrix<BigDecimal>, ProtocolBuilderNumeric> evaluateModel(
+      final FlatModel model, final MultiLayerNetwork template, final Matrix<BigDecimal> input,
+      final int inputParty) {
+    return builder -> {
+      SIntAverager<ResourcePoolT> averager = new SIntAverager<>();
+      return builder.seq(addAllModels(model, averager))
+          .seq((seq, index) -> seq.seq(averager.getWeightedSum()))
+          .seq((seq, sum) -> {
+            DRes<BigInteger> weight = seq.numeric().open(sum.getWeight());
+            return () -> new Pair<>(sum.getWeightedParams(), weight.out());
+          }).seq((seq, sum) -> {
+            int precision = seq.getRealNumericContext().getPrecision();
+            // The weighted sums are scaled by weight * DEFAULT_SCALE_UP, so we multiply by an
+            // encoding of 2^precision / (weight * DEFAULT_SCALE_UP) with enough extra bits to keep
+            // it accurate, and truncate the extra bits afterwards
+            BigInteger scale = sum.getSecond().multiply(BigInteger.valueOf(DEFAULT_SCALE_UP));
+            int shifts = scale.bitLength();
+            BigInteger factor = new FixedPointUtils().encode(BigDecimal.ONE.divide(
+                new BigDecimal(scale), MathContext.DECIMAL128), precision + shifts);
+            return seq.par(par -> {
+              List<DRes<SReal>> params = new ArrayList<>(sum.getFirst().size());
+              for (DRes<SInt> param : sum.getFirst()) {
+                params.add(new SFixed(par.seq(
+                    new Truncate(par.numeric().mult(factor, param), shifts)), precision));
+              }
+              return () -> params;
+            });
+          }).seq((seq, params) -> {
+            DRes<Matrix<DRes<SReal>>> closedInput = seq.realLinAlg().input(input, inputParty);
+            DRes<Matrix<DRes<SReal>>> output = seq.seq(NeuralNetwork.withPrivateWeights(
+                new Dl4jModelConverter().unflatten(template, params), closedInput));
+            DRes<Matrix<DRes<BigDecimal>>> opened = seq.realLinAlg().openMatrix(output);
+            return () -> new MatrixUtils().unwrapMatrix(opened);
+          });
+    };
+  }
+
+  /**
+   * Inputs the locally trained models of all parties and adds them to an averager.
+   *
+   * @param model
+   *          the locally trained model of this party
+   * @param averager
+   *          the averager to add the models to
+   * @return a computation adding all parties models to the averager
+   */
+  private Computation<Integer, ProtocolBuilderNumeric> addAllModels(final FlatModel model,
+      final Averager<SInt, ProtocolBuilderNumeric> averager) {
+    final long numParams = model.getParams().length();
+    return builder -> builder.seq(s -> () -> 1)
+        .whileLoop(index -> index < rp.getNoOfParties() + 1, (whileBuilder, index) -> {
+          if (index == rp.getMyId()) {
+            List<BigInteger> params = prepareForInput(model);
+            BigInteger examples = BigInteger.valueOf(model.getExamples());
+            whileBuilder.seq(inputMyParams(params, examples))
+                .seq((seq, closedParams) -> seq.seq(averager.addToAverage(closedParams)));
+          } else {
+            whileBuilder.seq(inputOtherParams(numParams, index))
+                .seq((seq, closedParams) -> seq.seq(averager.addToAverage(closedParams)));
+          }
+          return () -> index + 1;
+        });
+  }
+
   private Computation<List<DRes<BigInteger>>, ProtocolBuilderNumeric> openAverage(
       List<DRes<SInt>> params) {
     return builder -> builder.collections().openList(() -> params);
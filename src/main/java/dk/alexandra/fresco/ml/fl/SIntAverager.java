@@ -46,4 +46,14 @@ public class SIntAverager<ResourcePoolT extends ResourcePool>
     return builder -> builder.seq(new Normalize(accumulator));
   }
 
+  /**
+   * Returns the weighted sum of the parameters added so far without normalizing it, ie. the sum of
+   * the weights and the sum of the weighted parameters.
+   *
+   * @return the accumulated weighted parameters
+   */
+  Computation<WeightedModelParams<SInt>, ProtocolBuilderNumeric> getWeightedSum() {
+    return builder -> () -> accumulator;
+  }
+
 }
@@ -0,0 +1,104 @@
+package dk.alexandra.fresco.ml.libext;
+
+import dk.alexandra.fresco.framework.DRes;
+import dk.alexandra.fresco.framework.builder.Computation;
+import dk.alexandra.fresco.framework.builder.numeric.AdvancedNumeric;
+import dk.alexandra.fresco.framework.builder.numeric.Numeric;
+import dk.alexandra.fresco.framework.builder.numeric.ProtocolBuilderNumeric;
+import dk.alexandra.fresco.framework.util.Pair;
+import dk.alexandra.fresco.framework.value.SInt;
+import dk.alexandra.fresco.lib.collections.Matrix;
+import dk.alexandra.fresco.lib.collections.MatrixUtils;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Multiplies two secret matrices <i>X</i> and <i>Y</i> using a {@link MatrixTriple} <i>(A, B,
+ * C)</i>.
+ *
+ * <p>
+ * The parties open <i>E = X - A</i> and <i>F = Y - B</i> and compute <i>XY = C + EB + AF + EF</i>
+ * locally. For an <i>m x n</i>-matrix <i>X</i> and an <i>n x k</i>-matrix <i>Y</i> this opens
+ * <i>mn + nk</i> values in a single round, where multiplying entry by entry requires <i>mnk</i>
+ * multiplications.
+ * </p>
+ */
+public class BeaverMatrixMult
+    implements Computation<Matrix<DRes<SInt>>, ProtocolBuilderNumeric> {
+
+  private final DRes<Matrix<DRes<SInt>>> x;
+  private final DRes<Matrix<DRes<SInt>>> y;
+  private final DRes<MatrixTriple> triple;
+
+  public BeaverMatrixMult(DRes<Matrix<DRes<SInt>>> x, DRes<Matrix<DRes<SInt>>> y,
+      DRes<MatrixTriple> triple) {
+    this.x = x;
+    this.y = y;
+    this.triple = triple;
+  }
+
+  @Override
+  public DRes<Matrix<DRes<SInt>>> buildComputation(ProtocolBuilderNumeric builder) {
+    return builder.par(par -> {
+      Matrix<DRes<SInt>> xOut = x.out();
+      Matrix<DRes<SInt>> yOut = y.out();
+      MatrixTriple t = triple.out();
+      if (xOut.getHeight() != t.getLeft().getHeight() || xOut.getWidth() != t.getLeft().getWidth()
+          || yOut.getHeight() != t.getRight().getHeight()
+          || yOut.getWidth() != t.getRight().getWidth()) {
+        throw new IllegalArgumentException("Dimensions of matrix triple does not match the input");
+      }
+      Matrix<DRes<BigInteger>> e = openDifference(par, xOut, t.getLeft());
+      Matrix<DRes<BigInteger>> f = openDifference(par, yOut, t.getRight());
+      return () -> new Pair<>(e, f);
+    }).par((par, opened) -> {
+      MatrixTriple t = triple.out();
+      Matrix<BigInteger> e = new MatrixUtils().unwrapMatrix(opened::getFirst);
+      Matrix<BigInteger> f = new MatrixUtils().unwrapMatrix(opened::getSecond);
+      BigInteger modulus = par.getBasicNumericContext().getModulus();
+      Matrix<DRes<SInt>> z = new Matrix<>(e.getHeight(), f.getWidth(), i -> {
+        ArrayList<DRes<SInt>> row = new ArrayList<>(f.getWidth());
+        for (int j = 0; j < f.getWidth(); j++) {
+          final int column = j;
+          // All terms are either public or linear in the shares, so this is done locally
+          row.add(par.seq(seq -> {
+            AdvancedNumeric advanced = seq.advancedNumeric();
+            DRes<SInt> eb = advanced.innerProductWithPublicPart(e.getRow(i),
+                t.getRight().getColumn(column));
+            DRes<SInt> af = advanced.innerProductWithPublicPart(f.getColumn(column),
+                t.getLeft().getRow(i));
+            BigInteger ef = innerProduct(e.getRow(i), f.getColumn(column)).mod(modulus);
+            Numeric numeric = seq.numeric();
+            DRes<SInt> sum = numeric.add(t.getProduct().getRow(i).get(column),
+                numeric.add(eb, af));
+            return numeric.add(ef, sum);
+          }));
+        }
+        return row;
+      });
+      return () -> z;
+    });
+  }
+
+  private static Matrix<DRes<BigInteger>> openDifference(ProtocolBuilderNumeric builder,
+      Matrix<DRes<SInt>> a, Matrix<DRes<SInt>> b) {
+    return new Matrix<>(a.getHeight(), a.getWidth(), i -> {
+      ArrayList<DRes<BigInteger>> row = new ArrayList<>(a.getWidth());
+      for (int j = 0; j < a.getWidth(); j++) {
+        row.add(builder.numeric()
+            .open(builder.numeric().sub(a.getRow(i).get(j), b.getRow(i).get(j))));
+      }
+      return row;
+    });
+  }
+
+  private static BigInteger innerProduct(List<BigInteger> a, List<BigInteger> b) {
+    BigInteger result = BigInteger.ZERO;
+    for (int i = 0; i < a.size(); i++) {
+      result = result.add(a.get(i).multiply(b.get(i)));
+    }
+    return result;
+  }
+
+}
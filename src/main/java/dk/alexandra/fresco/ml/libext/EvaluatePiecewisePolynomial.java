@@ -0,0 +1,98 @@
+package dk.alexandra.fresco.ml.libext;
+
+import dk.alexandra.fresco.framework.DRes;
+import dk.alexandra.fresco.framework.builder.Computation;
+import dk.alexandra.fresco.framework.builder.numeric.ProtocolBuilderNumeric;
+import dk.alexandra.fresco.framework.util.Pair;
+import dk.alexandra.fresco.framework.value.SInt;
+import dk.alexandra.fresco.lib.real.RealNumeric;
+import dk.alexandra.fresco.lib.real.SReal;
+import dk.alexandra.fresco.ml.utils.PiecewisePolynomial;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Evaluates a {@link PiecewisePolynomial} on a secret value.
+ *
+ * <p>
+ * Writing the function as <i>p<sub>0</sub>(x) + c<sub>1</sub>(p<sub>1</sub>(x) -
+ * p<sub>0</sub>(x)) + ... + c<sub>k</sub>(p<sub>k</sub>(x) - p<sub>k-1</sub>(x))</i> where
+ * <i>c<sub>j</sub></i> is the bit <i>t<sub>j</sub> &le; x</i>, the evaluation requires a
+ * comparison and a multiplication per breakpoint and <i>d - 1</i> multiplications to compute the
+ * powers of <i>x</i>. All other multiplications are with the public coefficients.
+ * </p>
+ */
+public class EvaluatePiecewisePolynomial implements Computation<SReal, ProtocolBuilderNumeric> {
+
+  private final PiecewisePolynomial function;
+  private final DRes<SReal> x;
+
+  public EvaluatePiecewisePolynomial(PiecewisePolynomial function, DRes<SReal> x) {
+    this.function = function;
+    this.x = x;
+  }
+
+  @Override
+  public DRes<SReal> buildComputation(ProtocolBuilderNumeric builder) {
+    List<BigDecimal> breakpoints = function.getBreakpoints();
+    List<List<BigDecimal>> coefficients = function.getCoefficients();
+    int degree = function.getDegree();
+    return builder.par(par -> {
+      // The comparisons and the powers of x are independent, so they are all done in parallel
+      List<DRes<SInt>> comparisons = new ArrayList<>(breakpoints.size());
+      for (BigDecimal t : breakpoints) {
+        comparisons.add(par.realNumeric().leq(par.realNumeric().known(t), x));
+      }
+      DRes<List<DRes<SReal>>> powers = par.seq(seq -> {
+        List<DRes<SReal>> p = new ArrayList<>(degree);
+        p.add(x);
+        for (int i = 1; i < degree; i++) {
+          p.add(seq.realNumeric().mult(p.get(i - 1), x));
+        }
+        return () -> p;
+      });
+      return () -> new Pair<>(comparisons, powers.out());
+    }).par((par, pair) -> {
+      List<DRes<SInt>> comparisons = pair.getFirst();
+      List<DRes<SReal>> powers = pair.getSecond();
+      List<DRes<SReal>> terms = new ArrayList<>(coefficients.size());
+      terms.add(par.seq(seq -> polynomial(seq.realNumeric(), coefficients.get(0), powers)));
+      for (int j = 1; j < coefficients.size(); j++) {
+        List<BigDecimal> difference = subtract(coefficients.get(j), coefficients.get(j - 1));
+        DRes<SInt> c = comparisons.get(j - 1);
+        terms.add(par.seq(seq -> {
+          DRes<SReal> delta = polynomial(seq.realNumeric(), difference, powers);
+          return seq.realNumeric().mult(seq.realNumeric().fromSInt(c), delta);
+        }));
+      }
+      return () -> terms;
+    }).seq((seq, terms) -> seq.realAdvanced().sum(terms));
+  }
+
+  /**
+   * Evaluate a polynomial with public coefficients given the powers <i>x, x<sup>2</sup>, ...,
+   * x<sup>d</sup></i>. This requires no multiplications of secret values.
+   */
+  private static DRes<SReal> polynomial(RealNumeric numeric, List<BigDecimal> coefficients,
+      List<DRes<SReal>> powers) {
+    DRes<SReal> result = numeric.known(coefficients.get(0));
+    for (int i = 1; i < coefficients.size(); i++) {
+      if (coefficients.get(i).signum() != 0) {
+        result = numeric.add(result, numeric.mult(coefficients.get(i), powers.get(i - 1)));
+      }
+    }
+    return result;
+  }
+
+  private static List<BigDecimal> subtract(List<BigDecimal> a, List<BigDecimal> b) {
+    List<BigDecimal> result = new ArrayList<>();
+    for (int i = 0; i < Math.max(a.size(), b.size()); i++) {
+      BigDecimal ai = i < a.size() ? a.get(i) : BigDecimal.ZERO;
+      BigDecimal bi = i < b.size() ? b.get(i) : BigDecimal.ZERO;
+      result.add(ai.subtract(bi));
+    }
+    return result;
+  }
+
+}
@@ -0,0 +1,99 @@
+package dk.alexandra.fresco.ml.libext;
+
+import dk.alexandra.fresco.framework.DRes;
+import dk.alexandra.fresco.framework.builder.Computation;
+import dk.alexandra.fresco.framework.builder.numeric.ProtocolBuilderNumeric;
+import dk.alexandra.fresco.framework.util.Pair;
+import dk.alexandra.fresco.framework.value.SInt;
+import dk.alexandra.fresco.lib.collections.Matrix;
+import dk.alexandra.fresco.lib.real.SReal;
+import dk.alexandra.fresco.ml.utils.FixedPointUtils;
+import java.util.ArrayList;
+
+/**
+ * Multiplies two secret fixed point matrices on their integer representations. Each entry of the
+ * product is truncated once to the default precision, where multiplying the matrices using fixed
+ * point arithmetic would truncate each term.
+ *
+ * <p>If a {@link MatrixTriple} generated in a preprocessing phase is given, the product is computed
+ * using {@link BeaverMatrixMult}, which only opens <i>mn + nk</i> masked values. Otherwise each
+ * entry is computed directly as an inner product, which takes <i>mnk</i> multiplications in a
+ * single round.</p>
+ */
+public class FixedPointMatrixMult
+    implements Computation<Matrix<DRes<SReal>>, ProtocolBuilderNumeric> {
+
+  private final DRes<Matrix<DRes<SReal>>> x;
+  private final DRes<Matrix<DRes<SReal>>> y;
+  private final DRes<MatrixTriple> triple;
+
+  public FixedPointMatrixMult(DRes<Matrix<DRes<SReal>>> x, DRes<Matrix<DRes<SReal>>> y) {
+    this(x, y, null);
+  }
+
+  /**
+   * Create a new multiplication using a matrix triple generated in advance. The triple must have
+   * dimensions matching the matrices, and it must not be used anywhere else. If the triple is
+   * <code>null</code>, the product is computed directly.
+   *
+   * @param x
+   * @param y
+   * @param triple
+   */
+  public FixedPointMatrixMult(DRes<Matrix<DRes<SReal>>> x, DRes<Matrix<DRes<SReal>>> y,
+      DRes<MatrixTriple> triple) {
+    this.x = x;
+    this.y = y;
+    this.triple = triple;
+  }
+
+  @Override
+  public DRes<Matrix<DRes<SReal>>> buildComputation(ProtocolBuilderNumeric builder) {
+    FixedPointUtils fixedPointUtils = new FixedPointUtils();
+    return builder.par(par -> {
+      Matrix<DRes<SReal>> left = x.out();
+      Matrix<DRes<SReal>> right = y.out();
+      if (left.getWidth() != right.getHeight()) {
+        throw new IllegalArgumentException("Cannot multiply a " + left.getHeight() + " x "
+            + left.getWidth() + " matrix by a " + right.getHeight() + " x " + right.getWidth()
+            + " matrix");
+      }
+      // Scale all entries to a common precision so we can work on the integer representations
+      int leftPrecision = fixedPointUtils.maxPrecision(left);
+      int rightPrecision = fixedPointUtils.maxPrecision(right);
+      Matrix<DRes<SInt>> a = fixedPointUtils.toSInt(par, left, leftPrecision);
+      Matrix<DRes<SInt>> b = fixedPointUtils.toSInt(par, right, rightPrecision);
+      Computation<Matrix<DRes<SInt>>, ProtocolBuilderNumeric> mult = triple != null
+          ? new BeaverMatrixMult(() -> a, () -> b, triple)
+          : directProduct(a, b);
+      return () -> new Pair<>(leftPrecision + rightPrecision, mult);
+    }).seq((seq, mult) -> {
+      int productPrecision = mult.getFirst();
+      DRes<Matrix<DRes<SInt>>> product = seq.seq(mult.getSecond());
+      int precision = Math.min(productPrecision, seq.getRealNumericContext().getPrecision());
+      return seq.par(par -> {
+        Matrix<DRes<SInt>> truncated =
+            fixedPointUtils.truncate(par, product.out(), productPrecision - precision);
+        return () -> fixedPointUtils.fromSInt(truncated, precision);
+      });
+    });
+  }
+
+  /**
+   * Computes the product of two secret integer matrices with an inner product for each entry.
+   */
+  private static Computation<Matrix<DRes<SInt>>, ProtocolBuilderNumeric> directProduct(
+      Matrix<DRes<SInt>> a, Matrix<DRes<SInt>> b) {
+    return builder -> builder.par(par -> {
+      Matrix<DRes<SInt>> product = new Matrix<>(a.getHeight(), b.getWidth(), i -> {
+        ArrayList<DRes<SInt>> row = new ArrayList<>(b.getWidth());
+        for (int j = 0; j < b.getWidth(); j++) {
+          row.add(par.advancedNumeric().innerProduct(a.getRow(i), b.getColumn(j)));
+        }
+        return row;
+      });
+      return () -> product;
+    });
+  }
+
+}
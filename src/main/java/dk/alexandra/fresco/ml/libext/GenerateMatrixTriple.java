@@ -0,0 +1,68 @@
+package dk.alexandra.fresco.ml.libext;
+
+import dk.alexandra.fresco.framework.DRes;
+import dk.alexandra.fresco.framework.builder.Computation;
+import dk.alexandra.fresco.framework.builder.numeric.ProtocolBuilderNumeric;
+import dk.alexandra.fresco.framework.util.Pair;
+import dk.alexandra.fresco.framework.value.SInt;
+import dk.alexandra.fresco.lib.collections.Matrix;
+import java.util.ArrayList;
+
+/**
+ * Generates a {@link MatrixTriple} for multiplying an <i>m x n</i>-matrix with an <i>n x
+ * k</i>-matrix.
+ *
+ * <p>
+ * The protocol suites do not yet offer matrix triples as preprocessed material, so the triple is
+ * generated from random elements and <i>mnk</i> ordinary multiplications. This costs as much as
+ * multiplying the matrices directly, so it only pays off when run in a preprocessing phase before
+ * the inputs are known, and the triple is then passed to eg. {@link FixedPointMatrixMult}.
+ * </p>
+ */
+public class GenerateMatrixTriple implements Computation<MatrixTriple, ProtocolBuilderNumeric> {
+
+  private final int m;
+  private final int n;
+  private final int k;
+
+  public GenerateMatrixTriple(int m, int n, int k) {
+    if (m < 1 || n < 1 || k < 1) {
+      throw new IllegalArgumentException("Dimensions must be positive");
+    }
+    this.m = m;
+    this.n = n;
+    this.k = k;
+  }
+
+  @Override
+  public DRes<MatrixTriple> buildComputation(ProtocolBuilderNumeric builder) {
+    return builder.par(par -> {
+      Matrix<DRes<SInt>> a = random(par, m, n);
+      Matrix<DRes<SInt>> b = random(par, n, k);
+      return () -> new Pair<>(a, b);
+    }).par((par, ab) -> {
+      Matrix<DRes<SInt>> a = ab.getFirst();
+      Matrix<DRes<SInt>> b = ab.getSecond();
+      Matrix<DRes<SInt>> c = new Matrix<>(m, k, i -> {
+        ArrayList<DRes<SInt>> row = new ArrayList<>(k);
+        for (int j = 0; j < k; j++) {
+          row.add(par.advancedNumeric().innerProduct(a.getRow(i), b.getColumn(j)));
+        }
+        return row;
+      });
+      return () -> new MatrixTriple(a, b, c);
+    });
+  }
+
+  private static Matrix<DRes<SInt>> random(ProtocolBuilderNumeric builder, int height,
+      int width) {
+    return new Matrix<>(height, width, i -> {
+      ArrayList<DRes<SInt>> row = new ArrayList<>(width);
+      for (int j = 0; j < width; j++) {
+        row.add(builder.numeric().randomElement());
+      }
+      return row;
+    });
+  }
+
+}
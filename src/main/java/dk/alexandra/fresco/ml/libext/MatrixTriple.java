@@ -0,0 +1,50 @@
+package dk.alexandra.fresco.ml.libext;
+
+import dk.alexandra.fresco.framework.DRes;
+import dk.alexandra.fresco.framework.value.SInt;
+import dk.alexandra.fresco.lib.collections.Matrix;
+
+/**
+ * A matrix multiplication triple <i>(A, B, C)</i> where <i>A</i> is an <i>m x n</i>-matrix,
+ * <i>B</i> is an <i>n x k</i>-matrix and <i>C = AB</i>. All entries are secret shared and
+ * <i>A</i> and <i>B</i> must be uniformly random and unknown to all parties.
+ *
+ * <p>
+ * A triple may only be used for a single multiplication.
+ * </p>
+ */
+public class MatrixTriple {
+
+  private final Matrix<DRes<SInt>> left;
+  private final Matrix<DRes<SInt>> right;
+  private final Matrix<DRes<SInt>> product;
+
+  public MatrixTriple(Matrix<DRes<SInt>> left, Matrix<DRes<SInt>> right,
+      Matrix<DRes<SInt>> product) {
+    if (left.getWidth() != right.getHeight()) {
+      throw new IllegalArgumentException("Width of left matrix (" + left.getWidth()
+          + ") must be equal to height of right matrix (" + right.getHeight() + ")");
+    }
+    if (product.getHeight() != left.getHeight() || product.getWidth() != right.getWidth()) {
+      throw new IllegalArgumentException("Product must be a " + left.getHeight() + " x "
+          + right.getWidth() + "-matrix but was " + product.getHeight() + " x "
+          + product.getWidth());
+    }
+    this.left = left;
+    this.right = right;
+    this.product = product;
+  }
+
+  public Matrix<DRes<SInt>> getLeft() {
+    return left;
+  }
+
+  public Matrix<DRes<SInt>> getRight() {
+    return right;
+  }
+
+  public Matrix<DRes<SInt>> getProduct() {
+    return product;
+  }
+
+}
@@ -8,17 +8,35 @@ import dk.alexandra.fresco.framework.DRes;
 import dk.alexandra.fresco.framework.builder.Computation;
 import dk.alexandra.fresco.framework.builder.numeric.ProtocolBuilderNumeric;
 import dk.alexandra.fresco.lib.real.SReal;
+import dk.alexandra.fresco.ml.libext.EvaluatePiecewisePolynomial;
+import dk.alexandra.fresco.ml.utils.PiecewisePolynomial;
 
 public class LogisticRegressionPrediction implements Computation<SReal, ProtocolBuilderNumeric> {
 
     private List<DRes<SReal>> row;
     private List<DRes<SReal>> b;
+    private PiecewisePolynomial sigmoidApproximation;
 
     public LogisticRegressionPrediction(List<DRes<SReal>> row, List<DRes<SReal>> b) {
+        this(row, b, null);
+    }
+
+    /**
+     * Create a new prediction which evaluates the sigmoid function using the given approximation
+     * instead of an exponentiation and a division. If the approximation is <code>null</code>, the
+     * exact sigmoid function is used.
+     *
+     * @param row
+     * @param b
+     * @param sigmoidApproximation
+     */
+    public LogisticRegressionPrediction(List<DRes<SReal>> row, List<DRes<SReal>> b,
+            PiecewisePolynomial sigmoidApproximation) {
         assert (row.size() == b.size() - 1);
 
         this.row = row;
         this.b = b;
+        this.sigmoidApproximation = sigmoidApproximation;
     }
 
     @Override
@@ -32,6 +50,9 @@ public class LogisticRegressionPrediction implements Computation<SReal, Protocol
             return () -> terms;
         }).seq((seq, terms) -> {
             DRes<SReal> sum = seq.realAdvanced().sum(terms);
+            if (sigmoidApproximation != null) {
+                return seq.seq(new EvaluatePiecewisePolynomial(sigmoidApproximation, sum));
+            }
             // TODO: use reciprocal when it's included
             DRes<SReal> yHat = seq.realNumeric().div(seq.realNumeric().known(BigDecimal.ONE),
                     seq.realNumeric().add(BigDecimal.ONE, seq.realAdvanced().exp(seq.realNumeric().sub(BigDecimal.ZERO, sum))));
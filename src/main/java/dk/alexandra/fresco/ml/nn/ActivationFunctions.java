@@ -3,12 +3,15 @@ package dk.alexandra.fresco.ml.nn;
 import dk.alexandra.fresco.lib.real.SReal;
 import dk.alexandra.fresco.framework.DRes;
 import dk.alexandra.fresco.framework.builder.ComputationDirectory;
+import dk.alexandra.fresco.framework.util.Pair;
+import dk.alexandra.fresco.framework.value.SInt;
 import dk.alexandra.fresco.lib.collections.Matrix;
+import dk.alexandra.fresco.ml.utils.PiecewisePolynomial;
 
 public interface ActivationFunctions extends ComputationDirectory {
 
   public enum Type {
-    RELU, SIGMOID, SOFTMAX, IDENTITY
+    RELU, SIGMOID, SIGMOID_APPROXIMATION, SOFTMAX, ARGMAX, IDENTITY
   };
 
   /**
@@ -29,9 +32,33 @@ public interface ActivationFunctions extends ComputationDirectory {
    */
   DRes<Matrix<DRes<SReal>>> relu(Matrix<DRes<SReal>> v);
 
+  /**
+   * Apply the ReLU to the given vector where the integer representations of all entries are known
+   * to be less than 2<sup>bitLength</sup> in absolute value. A smaller bit length makes the
+   * comparisons cheaper.
+   *
+   * @param v
+   * @param bitLength
+   * @return
+   */
+  DRes<Matrix<DRes<SReal>>> relu(Matrix<DRes<SReal>> v, int bitLength);
+
+  /**
+   * Apply the ReLU as {@link #relu(Matrix, int)} and also return the comparison bits, which are 1
+   * where the entry of <i>v</i> is non-negative and 0 otherwise. The bits are the derivative of the
+   * ReLU, so they can eg. be reused when training.
+   *
+   * @param v
+   * @param bitLength
+   * @return
+   */
+  DRes<Pair<Matrix<DRes<SReal>>, Matrix<DRes<SInt>>>> reluWithBits(Matrix<DRes<SReal>> v,
+      int bitLength);
+
   /**
    * Applies the softmax function which maps maps the i'th coordinate v <sub>i</sub> to
-   * exp(v<sub>i</sub>) / (exp(v<sub>1</sub>) + ... + exp(v <sub>n</sub>)).
+   * exp(v<sub>i</sub>) / (exp(v<sub>1</sub>) + ... + exp(v <sub>n</sub>)). If <i>v</i> has more
+   * than one column, the function is applied to each column separately.
    *
    * @param v
    * @return
@@ -53,4 +80,35 @@ public interface ActivationFunctions extends ComputationDirectory {
    * @return
    */
   DRes<Matrix<DRes<SReal>>> sigmoid(Matrix<DRes<SReal>> v);
+
+  /**
+   * Apply an approximation of the sigmoid function to all entries. This avoids the exponentiation
+   * and division used by {@link #sigmoid(Matrix)} and only requires a few comparisons and
+   * multiplications per entry.
+   *
+   * @param v
+   * @param approximation A piecewise polynomial approximating the sigmoid function, eg. as given by
+   *        {@link PiecewisePolynomial#sigmoid(int, double)}.
+   * @return
+   */
+  DRes<Matrix<DRes<SReal>>> sigmoid(Matrix<DRes<SReal>> v, PiecewisePolynomial approximation);
+
+  /**
+   * Replaces each column of <i>v</i> by a one-hot vector with a one at the index of the largest
+   * entry. For classification this gives the same result as taking the largest entry of
+   * {@link #softmax(Matrix)}, but requires only comparisons.
+   *
+   * @param v
+   * @return
+   */
+  DRes<Matrix<DRes<SReal>>> argmax(Matrix<DRes<SReal>> v);
+
+  /**
+   * Compute the index of the largest entry in each column of <i>v</i>. The result is a <i>1 x
+   * k</i>-matrix where <i>k</i> is the number of columns in <i>v</i>.
+   *
+   * @param v
+   * @return
+   */
+  DRes<Matrix<DRes<SReal>>> argmaxIndex(Matrix<DRes<SReal>> v);
 }
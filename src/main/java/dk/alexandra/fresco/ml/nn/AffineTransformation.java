@@ -0,0 +1,167 @@
+package dk.alexandra.fresco.ml.nn;
+
+import dk.alexandra.fresco.framework.DRes;
+import dk.alexandra.fresco.framework.builder.Computation;
+import dk.alexandra.fresco.framework.builder.numeric.ProtocolBuilderNumeric;
+import dk.alexandra.fresco.framework.value.SInt;
+import dk.alexandra.fresco.lib.collections.Matrix;
+import dk.alexandra.fresco.lib.real.SReal;
+import dk.alexandra.fresco.lib.real.fixed.SFixed;
+import dk.alexandra.fresco.lib.real.fixed.utils.Truncate;
+import dk.alexandra.fresco.ml.utils.CsrMatrix;
+import dk.alexandra.fresco.ml.utils.FixedPointUtils;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntFunction;
+
+/**
+ * Computes <i>Wx + b</i> for public <i>W</i> and <i>b</i> and a secret <i>x</i>, where <i>x</i>
+ * may have several columns.
+ *
+ * <p>
+ * The weights are given as integers with a fixed precision. Each entry of the result is computed
+ * as an inner product of the integer representations at double scale with the bias added at the
+ * same scale, and is then truncated once. Computing the product using fixed point multiplications
+ * would instead require a truncation for each term.
+ * </p>
+ *
+ * <p>
+ * If the weights are sparse, each inner product only includes the terms with non-zero weights.
+ * </p>
+ */
+public class AffineTransformation
+    implements Computation<Matrix<DRes<SReal>>, ProtocolBuilderNumeric> {
+
+  private final Matrix<BigInteger> weights;
+  private final CsrMatrix<BigInteger> sparseWeights;
+  private final int weightPrecision;
+  private final Integer outputPrecision;
+  private final IntFunction<List<BigInteger>> bias;
+  private final DRes<Matrix<DRes<SReal>>> input;
+
+  /**
+   * Create a new affine transformation.
+   *
+   * @param weights The weights encoded as integers, eg. using
+   *        {@link FixedPointUtils#encode(Matrix, int)}.
+   * @param weightPrecision The precision used to encode the weights.
+   * @param bias The bias as a column vector.
+   * @param input The input.
+   */
+  public AffineTransformation(Matrix<BigInteger> weights, int weightPrecision,
+      Matrix<BigDecimal> bias, DRes<Matrix<DRes<SReal>>> input) {
+    if (weights.getHeight() != bias.getHeight() || bias.getWidth() != 1) {
+      throw new IllegalArgumentException("Bias must be a column vector of height "
+          + weights.getHeight());
+    }
+    this.weights = weights;
+    this.sparseWeights = null;
+    this.weightPrecision = weightPrecision;
+    this.outputPrecision = null;
+    this.bias = precision -> new FixedPointUtils().encode(bias, precision).getColumn(0);
+    this.input = input;
+  }
+
+  /**
+   * Create a new affine transformation with sparse weights.
+   *
+   * @param weights The non-zero weights encoded as integers.
+   * @param weightPrecision The precision used to encode the weights.
+   * @param bias The bias as a column vector.
+   * @param input The input.
+   */
+  public AffineTransformation(CsrMatrix<BigInteger> weights, int weightPrecision,
+      Matrix<BigDecimal> bias, DRes<Matrix<DRes<SReal>>> input) {
+    if (weights.getHeight() != bias.getHeight() || bias.getWidth() != 1) {
+      throw new IllegalArgumentException("Bias must be a column vector of height "
+          + weights.getHeight());
+    }
+    this.weights = null;
+    this.sparseWeights = weights;
+    this.weightPrecision = weightPrecision;
+    this.outputPrecision = null;
+    this.bias = precision -> new FixedPointUtils().encode(bias, precision).getColumn(0);
+    this.input = input;
+  }
+
+  /**
+   * Create a new affine transformation using the weights and bias of an encoded layer. The result
+   * has the output precision of the layer if it has one. The activation function of the layer is
+   * not applied.
+   *
+   * @param parameters The encoded layer.
+   * @param input The input.
+   */
+  public AffineTransformation(EncodedLayerParameters parameters,
+      DRes<Matrix<DRes<SReal>>> input) {
+    this.weights = parameters.isSparse() ? null : parameters.getWeights();
+    this.sparseWeights = parameters.isSparse() ? parameters.getSparseWeights() : null;
+    this.weightPrecision = parameters.getPrecision();
+    this.outputPrecision = parameters.getOutputPrecision();
+    this.bias = parameters::getEncodedBias;
+    this.input = input;
+  }
+
+  @Override
+  public DRes<Matrix<DRes<SReal>>> buildComputation(ProtocolBuilderNumeric builder) {
+    return builder.par(par -> {
+      FixedPointUtils fixedPointUtils = new FixedPointUtils();
+      Matrix<DRes<SReal>> x = input.out();
+      int width = sparseWeights != null ? sparseWeights.getWidth() : weights.getWidth();
+      int height = sparseWeights != null ? sparseWeights.getHeight() : weights.getHeight();
+      if (x.getHeight() != width) {
+        throw new IllegalArgumentException("Input has height " + x.getHeight()
+            + " but the weights expect " + width);
+      }
+      int inputPrecision = fixedPointUtils.maxPrecision(x);
+      Matrix<DRes<SInt>> integers = fixedPointUtils.toSInt(par, x, inputPrecision);
+
+      // The products are at double scale, so the bias is encoded at that scale as well
+      int productPrecision = weightPrecision + inputPrecision;
+      int precision = Math.min(productPrecision, outputPrecision != null ? outputPrecision
+          : par.getRealNumericContext().getPrecision());
+      int shifts = productPrecision - precision;
+      List<BigInteger> encodedBias = bias.apply(productPrecision);
+      // A row without weights is just the bias, which is encoded at the output precision instead
+      List<BigInteger> outputBias = bias.apply(precision);
+
+      List<List<DRes<SInt>>> columns = new ArrayList<>(x.getWidth());
+      for (int j = 0; j < x.getWidth(); j++) {
+        columns.add(integers.getColumn(j));
+      }
+      Matrix<DRes<SReal>> result = new Matrix<>(height, x.getWidth(), i -> {
+        List<BigInteger> rowWeights =
+            sparseWeights != null ? sparseWeights.getValues(i) : weights.getRow(i);
+        ArrayList<DRes<SReal>> row = new ArrayList<>(x.getWidth());
+        for (int j = 0; j < x.getWidth(); j++) {
+          List<DRes<SInt>> column = sparseWeights != null
+              ? select(columns.get(j), sparseWeights.getColumnIndices(i))
+              : columns.get(j);
+          DRes<SInt> entry = par.seq(seq -> {
+            if (rowWeights.isEmpty()) {
+              return seq.numeric().known(outputBias.get(i));
+            }
+            DRes<SInt> innerProduct =
+                seq.advancedNumeric().innerProductWithPublicPart(rowWeights, column);
+            DRes<SInt> withBias = seq.numeric().add(encodedBias.get(i), innerProduct);
+            return shifts > 0 ? seq.seq(new Truncate(withBias, shifts)) : withBias;
+          });
+          row.add(new SFixed(entry, precision));
+        }
+        return row;
+      });
+      return () -> result;
+    });
+  }
+
+  private static List<DRes<SInt>> select(List<DRes<SInt>> values, int[] indices) {
+    List<DRes<SInt>> selected = new ArrayList<>(indices.length);
+    for (int index : indices) {
+      selected.add(values.get(index));
+    }
+    return selected;
+  }
+
+}
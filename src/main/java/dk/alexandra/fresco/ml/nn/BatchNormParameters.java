@@ -0,0 +1,62 @@
+package dk.alexandra.fresco.ml.nn;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Parameters of a batch normalisation applied to the outputs of a fully connected layer before
+ * the activation function, eg. <i>y<sub>i</sub> = &gamma;<sub>i</sub> (x<sub>i</sub> -
+ * &mu;<sub>i</sub>) / &radic;(&sigma;<sub>i</sub><sup>2</sup> + &epsilon;) +
+ * &beta;<sub>i</sub></i>. At inference time this is an affine map, so it can be folded into the
+ * layer using {@link dk.alexandra.fresco.ml.utils.ModelOptimizer}.
+ */
+public class BatchNormParameters {
+
+  private final List<BigDecimal> gamma;
+  private final List<BigDecimal> beta;
+  private final List<BigDecimal> mean;
+  private final List<BigDecimal> variance;
+  private final double epsilon;
+
+  public BatchNormParameters(List<BigDecimal> gamma, List<BigDecimal> beta,
+      List<BigDecimal> mean, List<BigDecimal> variance, double epsilon) {
+    int size = gamma.size();
+    if (beta.size() != size || mean.size() != size || variance.size() != size) {
+      throw new IllegalArgumentException("All parameters must have the same size as gamma ("
+          + size + ")");
+    }
+    if (epsilon < 0.0) {
+      throw new IllegalArgumentException("Epsilon must be non-negative but was " + epsilon);
+    }
+    this.gamma = Collections.unmodifiableList(gamma);
+    this.beta = Collections.unmodifiableList(beta);
+    this.mean = Collections.unmodifiableList(mean);
+    this.variance = Collections.unmodifiableList(variance);
+    this.epsilon = epsilon;
+  }
+
+  public List<BigDecimal> getGamma() {
+    return gamma;
+  }
+
+  public List<BigDecimal> getBeta() {
+    return beta;
+  }
+
+  public List<BigDecimal> getMean() {
+    return mean;
+  }
+
+  public List<BigDecimal> getVariance() {
+    return variance;
+  }
+
+  public double getEpsilon() {
+    return epsilon;
+  }
+
+  public int getSize() {
+    return gamma.size();
+  }
+}
@@ -0,0 +1,127 @@
+package dk.alexandra.fresco.ml.nn;
+
+import dk.alexandra.fresco.lib.collections.Matrix;
+import dk.alexandra.fresco.ml.nn.ActivationFunctions.Type;
+
+/**
+ * Parameters for a 2D convolution layer.
+ *
+ * <p>
+ * Images with <i>c</i> channels of height <i>h</i> and width <i>w</i> are represented as column
+ * vectors of length <i>chw</i> in channel-major order, so the pixel <i>(y, x)</i> in channel
+ * <i>k</i> has index <i>khw + yw + x</i>. The output of the layer uses the same representation.
+ * </p>
+ *
+ * <p>
+ * The kernels are given as a matrix with a row for each output channel. Each row is a kernel of
+ * size <i>c x kernelHeight x kernelWidth</i>, flattened in the same order as the input.
+ * </p>
+ */
+public class ConvolutionLayerParameters<T> {
+
+  private final Matrix<T> kernels;
+  private final Matrix<T> bias;
+  private final int inputChannels;
+  private final int inputHeight;
+  private final int inputWidth;
+  private final int kernelHeight;
+  private final int kernelWidth;
+  private final int stride;
+  private final int padding;
+  private final Type activation;
+
+  public ConvolutionLayerParameters(Matrix<T> kernels, Matrix<T> bias, int inputChannels,
+      int inputHeight, int inputWidth, int kernelHeight, int kernelWidth, int stride, int padding,
+      Type activationFunction) {
+    if (bias.getWidth() != 1) {
+      throw new IllegalArgumentException(
+          "Bias must be a column vector. Has width " + bias.getWidth() + " != 1.");
+    }
+    if (kernels.getHeight() != bias.getHeight()) {
+      throw new IllegalArgumentException("Number of kernels (" + kernels.getHeight()
+          + ") must be equal to height of bias vector (" + bias.getHeight() + ")");
+    }
+    if (kernels.getWidth() != inputChannels * kernelHeight * kernelWidth) {
+      throw new IllegalArgumentException("Kernels must have width " + inputChannels + " x "
+          + kernelHeight + " x " + kernelWidth + " but has width " + kernels.getWidth());
+    }
+    if (stride < 1 || padding < 0) {
+      throw new IllegalArgumentException(
+          "Stride must be positive and padding non-negative, but was " + stride + " and "
+              + padding);
+    }
+    if (kernelHeight > inputHeight + 2 * padding || kernelWidth > inputWidth + 2 * padding) {
+      throw new IllegalArgumentException("Kernel is larger than the padded input");
+    }
+    this.kernels = kernels;
+    this.bias = bias;
+    this.inputChannels = inputChannels;
+    this.inputHeight = inputHeight;
+    this.inputWidth = inputWidth;
+    this.kernelHeight = kernelHeight;
+    this.kernelWidth = kernelWidth;
+    this.stride = stride;
+    this.padding = padding;
+    this.activation = activationFunction;
+  }
+
+  public Matrix<T> getKernels() {
+    return kernels;
+  }
+
+  public Matrix<T> getBias() {
+    return bias;
+  }
+
+  public Type getActivation() {
+    return activation;
+  }
+
+  public int getInputChannels() {
+    return inputChannels;
+  }
+
+  public int getInputHeight() {
+    return inputHeight;
+  }
+
+  public int getInputWidth() {
+    return inputWidth;
+  }
+
+  public int getKernelHeight() {
+    return kernelHeight;
+  }
+
+  public int getKernelWidth() {
+    return kernelWidth;
+  }
+
+  public int getStride() {
+    return stride;
+  }
+
+  public int getPadding() {
+    return padding;
+  }
+
+  public int getOutputChannels() {
+    return kernels.getHeight();
+  }
+
+  public int getOutputHeight() {
+    return (inputHeight + 2 * padding - kernelHeight) / stride + 1;
+  }
+
+  public int getOutputWidth() {
+    return (inputWidth + 2 * padding - kernelWidth) / stride + 1;
+  }
+
+  public int getInputs() {
+    return inputChannels * inputHeight * inputWidth;
+  }
+
+  public int getOutputs() {
+    return getOutputChannels() * getOutputHeight() * getOutputWidth();
+  }
+}
@@ -7,19 +7,42 @@ import dk.alexandra.fresco.framework.builder.numeric.ProtocolBuilderNumeric;
 import dk.alexandra.fresco.framework.util.Pair;
 import dk.alexandra.fresco.framework.value.SInt;
 import dk.alexandra.fresco.lib.collections.Matrix;
-import dk.alexandra.fresco.ml.utils.LinearAlgebraUtils;
+import dk.alexandra.fresco.lib.compare.gt.LessThanOrEquals;
+import dk.alexandra.fresco.lib.real.fixed.SFixed;
+import dk.alexandra.fresco.ml.libext.ArgMin;
+import dk.alexandra.fresco.ml.libext.EvaluatePiecewisePolynomial;
+import dk.alexandra.fresco.ml.utils.FixedPointUtils;
+import dk.alexandra.fresco.ml.utils.PiecewisePolynomial;
 import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.function.BiFunction;
 import java.util.stream.Collectors;
 
 public class DefaultActivationFunctions implements ActivationFunctions {
 
+  /**
+   * The approximation used for {@link Type#SIGMOID_APPROXIMATION} unless another is given. It
+   * consists of cubic pieces and has an absolute error of at most 0.01.
+   */
+  public static final PiecewisePolynomial DEFAULT_SIGMOID_APPROXIMATION =
+      PiecewisePolynomial.sigmoid(3, 0.01);
+
+  private static final int COMPARISON_SECURITY_PARAMETER = 60;
+
   private ProtocolBuilderNumeric builder;
+  private PiecewisePolynomial sigmoidApproximation;
 
   public DefaultActivationFunctions(ProtocolBuilderNumeric builder) {
+    this(builder, DEFAULT_SIGMOID_APPROXIMATION);
+  }
+
+  public DefaultActivationFunctions(ProtocolBuilderNumeric builder,
+      PiecewisePolynomial sigmoidApproximation) {
     this.builder = builder;
+    this.sigmoidApproximation = sigmoidApproximation;
   }
 
   @Override
@@ -29,43 +52,147 @@ public class DefaultActivationFunctions implements ActivationFunctions {
         return relu(v);
       case SIGMOID:
         return sigmoid(v);
+      case SIGMOID_APPROXIMATION:
+        return sigmoid(v, sigmoidApproximation);
       case IDENTITY:
         return identity(v);
       case SOFTMAX:
         return softmax(v);
+      case ARGMAX:
+        return argmax(v);
       default:
         throw new IllegalArgumentException("Unsupported activation function type, " + type);
     }
   }
 
-  private BiFunction<ProtocolBuilderNumeric, DRes<SReal>, DRes<SReal>> ebeRelu() {
-    return (builder, x) -> {
-      return builder.seq(r1 -> {
-        DRes<SInt> compare = r1.realNumeric().leq(r1.realNumeric().known(BigDecimal.ZERO), x);
-        return r1.realNumeric().mult(x, r1.realNumeric().fromSInt(compare));
-      });
-    };
+  @Override
+  public DRes<Matrix<DRes<SReal>>> relu(Matrix<DRes<SReal>> v) {
+    return relu(v, builder.getBasicNumericContext().getMaxBitLength());
   }
 
   @Override
-  public DRes<Matrix<DRes<SReal>>> relu(Matrix<DRes<SReal>> v) {
-    return ebe(v, ebeRelu());
+  public DRes<Matrix<DRes<SReal>>> relu(Matrix<DRes<SReal>> v, int bitLength) {
+    return builder.seq(seq -> reluWithBits(seq, v, bitLength)).seq((seq, p) -> p::getFirst);
+  }
+
+  @Override
+  public DRes<Pair<Matrix<DRes<SReal>>, Matrix<DRes<SInt>>>> reluWithBits(Matrix<DRes<SReal>> v,
+      int bitLength) {
+    return reluWithBits(builder, v, bitLength);
+  }
+
+  private static DRes<Pair<Matrix<DRes<SReal>>, Matrix<DRes<SInt>>>> reluWithBits(
+      ProtocolBuilderNumeric builder, Matrix<DRes<SReal>> v, int bitLength) {
+    return builder.par(par -> {
+      // The comparison bit is the negated sign bit of the integer representation
+      Matrix<DRes<SInt>> bits = new Matrix<>(v.getHeight(), v.getWidth(), i -> {
+        return v.getRow(i).stream()
+            .map(x -> par.seq(new LessThanOrEquals(bitLength, COMPARISON_SECURITY_PARAMETER,
+                par.numeric().known(BigInteger.ZERO), ((SFixed) x.out()).getSInt())))
+            .collect(Collectors.toCollection(ArrayList::new));
+      });
+      return () -> bits;
+    }).par((par, bits) -> {
+      // Multiplying by a bit does not change the scaling, so no truncation is needed
+      Matrix<DRes<SReal>> result = new Matrix<>(v.getHeight(), v.getWidth(), i -> {
+        ArrayList<DRes<SReal>> row = new ArrayList<>(v.getWidth());
+        for (int j = 0; j < v.getWidth(); j++) {
+          SFixed x = (SFixed) v.getRow(i).get(j).out();
+          row.add(new SFixed(par.numeric().mult(bits.getRow(i).get(j), x.getSInt()),
+              x.getPrecision()));
+        }
+        return row;
+      });
+      return () -> new Pair<>(result, bits);
+    });
   }
 
   @Override
   public DRes<Matrix<DRes<SReal>>> softmax(Matrix<DRes<SReal>> v) {
     return builder.par(r1 -> {
       AdvancedRealNumeric advanced = r1.realAdvanced();
-      List<DRes<SReal>> exps =
-          v.getColumn(0).stream().map(e -> advanced.exp(e)).collect(Collectors.toList());
+      Matrix<DRes<SReal>> exps = new Matrix<>(v.getHeight(), v.getWidth(),
+          i -> v.getRow(i).stream().map(e -> advanced.exp(e))
+              .collect(Collectors.toCollection(ArrayList::new)));
       return () -> exps;
-    }).seq((r2, l) -> {
-      DRes<SReal> sum = r2.realAdvanced().sum(l);
-      return () -> new Pair<>(l, sum);
+    }).par((r2, exps) -> {
+      // Each column is normalized separately, so a batch of samples can be handled at once
+      List<DRes<SReal>> sums = new ArrayList<>(exps.getWidth());
+      for (int j = 0; j < exps.getWidth(); j++) {
+        sums.add(r2.realAdvanced().sum(exps.getColumn(j)));
+      }
+      return () -> new Pair<>(exps, sums);
     }).par((r3, p) -> {
-      Matrix<DRes<SReal>> vector = new LinearAlgebraUtils().createColumnVector(p.getFirst().stream()
-          .map(e -> r3.realNumeric().div(e, p.getSecond())).collect(Collectors.toList()));
-      return () -> vector;
+      Matrix<DRes<SReal>> exps = p.getFirst();
+      List<DRes<SReal>> sums = p.getSecond();
+      Matrix<DRes<SReal>> result = new Matrix<>(exps.getHeight(), exps.getWidth(), i -> {
+        ArrayList<DRes<SReal>> row = new ArrayList<>(exps.getWidth());
+        for (int j = 0; j < exps.getWidth(); j++) {
+          row.add(r3.realNumeric().div(exps.getRow(i).get(j), sums.get(j)));
+        }
+        return row;
+      });
+      return () -> result;
+    });
+  }
+
+  @Override
+  public DRes<Matrix<DRes<SReal>>> argmax(Matrix<DRes<SReal>> v) {
+    return builder.seq(seq -> oneHotArgmax(seq, v)).par((par, bits) -> {
+      Matrix<DRes<SReal>> result = new Matrix<>(v.getHeight(), v.getWidth(), i -> {
+        ArrayList<DRes<SReal>> row = new ArrayList<>(v.getWidth());
+        for (int j = 0; j < v.getWidth(); j++) {
+          row.add(par.realNumeric().fromSInt(bits.get(j).get(i)));
+        }
+        return row;
+      });
+      return () -> result;
+    });
+  }
+
+  @Override
+  public DRes<Matrix<DRes<SReal>>> argmaxIndex(Matrix<DRes<SReal>> v) {
+    List<BigInteger> indices = new ArrayList<>(v.getHeight());
+    for (int i = 0; i < v.getHeight(); i++) {
+      indices.add(BigInteger.valueOf(i));
+    }
+    return builder.seq(seq -> oneHotArgmax(seq, v)).par((par, bits) -> {
+      ArrayList<DRes<SReal>> row = new ArrayList<>(v.getWidth());
+      for (List<DRes<SInt>> column : bits) {
+        row.add(par.seq(seq -> seq.realNumeric()
+            .fromSInt(seq.advancedNumeric().innerProductWithPublicPart(indices, column))));
+      }
+      Matrix<DRes<SReal>> result = new Matrix<>(1, v.getWidth(), i -> row);
+      return () -> result;
+    });
+  }
+
+  /**
+   * Compute one-hot vectors indicating the largest entry of each column. The maximum is found as
+   * the minimum of the negated entries.
+   */
+  private DRes<List<List<DRes<SInt>>>> oneHotArgmax(ProtocolBuilderNumeric builder,
+      Matrix<DRes<SReal>> v) {
+    return builder.par(par -> {
+      FixedPointUtils fixedPointUtils = new FixedPointUtils();
+      Matrix<DRes<SInt>> integers =
+          fixedPointUtils.toSInt(par, v, fixedPointUtils.maxPrecision(v));
+      List<DRes<List<DRes<SInt>>>> columns = new ArrayList<>(v.getWidth());
+      for (int j = 0; j < v.getWidth(); j++) {
+        List<DRes<SInt>> column = integers.getColumn(j);
+        if (column.size() == 1) {
+          DRes<SInt> one = par.numeric().known(BigInteger.ONE);
+          columns.add(() -> Collections.singletonList(one));
+        } else {
+          columns.add(par.seq(seq -> {
+            List<DRes<SInt>> negated = column.stream()
+                .map(x -> seq.numeric().sub(BigInteger.ZERO, x)).collect(Collectors.toList());
+            DRes<Pair<List<DRes<SInt>>, SInt>> argMin = seq.seq(new ArgMin(negated));
+            return () -> argMin.out().getFirst();
+          }));
+        }
+      }
+      return () -> columns.stream().map(DRes::out).collect(Collectors.toList());
     });
   }
 
@@ -74,6 +201,12 @@ public class DefaultActivationFunctions implements ActivationFunctions {
     return ebe(v, ebeSigmoid());
   }
 
+  @Override
+  public DRes<Matrix<DRes<SReal>>> sigmoid(Matrix<DRes<SReal>> v,
+      PiecewisePolynomial approximation) {
+    return ebe(v, (builder, x) -> builder.seq(new EvaluatePiecewisePolynomial(approximation, x)));
+  }
+
   @Override
   public DRes<Matrix<DRes<SReal>>> identity(Matrix<DRes<SReal>> v) {
     return builder.seq(seq -> () -> v);
@@ -0,0 +1,153 @@
+package dk.alexandra.fresco.ml.nn;
+
+import dk.alexandra.fresco.lib.collections.Matrix;
+import dk.alexandra.fresco.ml.nn.ActivationFunctions.Type;
+import dk.alexandra.fresco.ml.utils.CsrMatrix;
+import dk.alexandra.fresco.ml.utils.FixedPointUtils;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Parameters for a fully connected layer with public weights, where the weights have been encoded
+ * as fixed point integers in advance. The bias is kept both as given and encoded at twice the
+ * precision of the weights, which is the scale of the products when the input has the same
+ * precision as the weights.
+ *
+ * <p>
+ * If the layer has sparse weights, only the non-zero weights are encoded and the weights are kept
+ * sparse.
+ * </p>
+ *
+ * <p>
+ * Instances are immutable, so they can be shared between any number of evaluations.
+ * </p>
+ */
+public class EncodedLayerParameters {
+
+  private final Matrix<BigInteger> weights;
+  private final CsrMatrix<BigInteger> sparseWeights;
+  private final int precision;
+  private final Matrix<BigDecimal> bias;
+  private final List<BigInteger> encodedBias;
+  private final Type activation;
+  private final Integer outputPrecision;
+  private final Integer bitLength;
+
+  public EncodedLayerParameters(FullyConnectedLayerParameters<BigDecimal> parameters,
+      int precision) {
+    this(parameters, precision, null, null);
+  }
+
+  /**
+   * Encode a layer with a precision and comparison bit length chosen for this layer, eg. by
+   * {@link dk.alexandra.fresco.ml.utils.PrecisionCalibrator}.
+   *
+   * @param parameters The layer.
+   * @param precision The precision used to encode the weights.
+   * @param outputPrecision The precision of the outputs of the layer, or <code>null</code> to use
+   *        the default precision.
+   * @param bitLength A bound on the bit length of the integer representations of the outputs
+   *        before the activation function, which is used for the comparisons in a ReLU, or
+   *        <code>null</code> to use the maximum bit length.
+   */
+  public EncodedLayerParameters(FullyConnectedLayerParameters<BigDecimal> parameters,
+      int precision, Integer outputPrecision, Integer bitLength) {
+    FixedPointUtils fixedPointUtils = new FixedPointUtils();
+    if (parameters.isSparse()) {
+      this.sparseWeights = parameters.getSparseWeights()
+          .map(w -> fixedPointUtils.encode(w, precision), BigInteger.ZERO);
+      this.weights = null;
+    } else {
+      this.weights = fixedPointUtils.encode(parameters.getWeights(), precision);
+      this.sparseWeights = null;
+    }
+    this.precision = precision;
+    this.bias = parameters.getBias();
+    this.encodedBias = Collections
+        .unmodifiableList(fixedPointUtils.encode(bias, 2 * precision).getColumn(0));
+    this.activation = parameters.getActivation();
+    this.outputPrecision = outputPrecision;
+    this.bitLength = bitLength;
+  }
+
+  /**
+   * Returns the encoded weights as a dense matrix. For sparse layers the dense matrix is created on
+   * every call, so {@link #getSparseWeights()} should be used instead.
+   *
+   * @return
+   */
+  public Matrix<BigInteger> getWeights() {
+    return isSparse() ? sparseWeights.toDense() : weights;
+  }
+
+  public boolean isSparse() {
+    return sparseWeights != null;
+  }
+
+  /**
+   * Returns the encoded weights of a sparse layer.
+   *
+   * @return
+   */
+  public CsrMatrix<BigInteger> getSparseWeights() {
+    if (sparseWeights == null) {
+      throw new IllegalStateException("Layer does not have sparse weights");
+    }
+    return sparseWeights;
+  }
+
+  public int getPrecision() {
+    return precision;
+  }
+
+  public Matrix<BigDecimal> getBias() {
+    return bias;
+  }
+
+  /**
+   * Returns the bias encoded with the given precision.
+   *
+   * @param biasPrecision
+   * @return
+   */
+  public List<BigInteger> getEncodedBias(int biasPrecision) {
+    if (biasPrecision == 2 * precision) {
+      return encodedBias;
+    }
+    return new FixedPointUtils().encode(bias, biasPrecision).getColumn(0);
+  }
+
+  public Type getActivation() {
+    return activation;
+  }
+
+  /**
+   * Returns the precision of the outputs of the layer, or <code>null</code> if the default
+   * precision is used.
+   *
+   * @return
+   */
+  public Integer getOutputPrecision() {
+    return outputPrecision;
+  }
+
+  /**
+   * Returns the bit length used for comparisons in the activation function, or <code>null</code>
+   * if the maximum bit length is used.
+   *
+   * @return
+   */
+  public Integer getBitLength() {
+    return bitLength;
+  }
+
+  public int getInputs() {
+    return isSparse() ? sparseWeights.getWidth() : weights.getWidth();
+  }
+
+  public int getOutputs() {
+    return bias.getHeight();
+  }
+}
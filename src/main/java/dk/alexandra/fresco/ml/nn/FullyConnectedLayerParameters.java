@@ -2,34 +2,79 @@ package dk.alexandra.fresco.ml.nn;
 
 import dk.alexandra.fresco.lib.collections.Matrix;
 import dk.alexandra.fresco.ml.nn.ActivationFunctions.Type;
+import dk.alexandra.fresco.ml.utils.CsrMatrix;
 
 public class FullyConnectedLayerParameters<T> {
 
   private Matrix<T> weights;
+  private CsrMatrix<T> sparseWeights;
   private Type activation;
   private Matrix<T> bias;
 
   public FullyConnectedLayerParameters(Matrix<T> weights, Matrix<T> bias, Type activationFunction) {
+    this(weights.getHeight(), bias, activationFunction);
+    this.weights = weights;
+  }
+
+  /**
+   * Create parameters for a layer with sparse weights. Layers with public weights only do work for
+   * the non-zero weights.
+   *
+   * @param weights
+   * @param bias
+   * @param activationFunction
+   */
+  public FullyConnectedLayerParameters(CsrMatrix<T> weights, Matrix<T> bias,
+      Type activationFunction) {
+    this(weights.getHeight(), bias, activationFunction);
+    this.sparseWeights = weights;
+  }
+
+  private FullyConnectedLayerParameters(int height, Matrix<T> bias, Type activationFunction) {
 
     if (bias.getWidth() != 1) {
       throw new IllegalArgumentException(
           "Bias must be a column vector. Has width " + bias.getWidth() + " != 1.");
     }
 
-    if (weights.getHeight() != bias.getHeight()) {
-      throw new IllegalArgumentException("Height of weight matrix (" + weights.getHeight()
+    if (height != bias.getHeight()) {
+      throw new IllegalArgumentException("Height of weight matrix (" + height
           + ") must be equal to height of bias vector (" + bias.getHeight() + ")");
     }
 
-    this.weights = weights;
     this.bias = bias;
     this.activation = activationFunction;
   }
 
+  /**
+   * Returns the weights as a dense matrix. If the layer was created with sparse weights, the dense
+   * matrix is created on the first call.
+   *
+   * @return
+   */
   public Matrix<T> getWeights() {
+    if (weights == null) {
+      weights = sparseWeights.toDense();
+    }
     return weights;
   }
 
+  public boolean isSparse() {
+    return sparseWeights != null;
+  }
+
+  /**
+   * Returns the weights of a layer created with sparse weights.
+   *
+   * @return
+   */
+  public CsrMatrix<T> getSparseWeights() {
+    if (sparseWeights == null) {
+      throw new IllegalStateException("Layer does not have sparse weights");
+    }
+    return sparseWeights;
+  }
+
   public Type getActivation() {
     return activation;
   }
@@ -39,7 +84,7 @@ public class FullyConnectedLayerParameters<T> {
   }
 
   public int getInputs() {
-    return weights.getWidth();
+    return isSparse() ? sparseWeights.getWidth() : weights.getWidth();
   }
 
   public int getOutputs() {
@@ -0,0 +1,145 @@
+package dk.alexandra.fresco.ml.nn;
+
+import dk.alexandra.fresco.framework.DRes;
+import dk.alexandra.fresco.framework.builder.Computation;
+import dk.alexandra.fresco.framework.builder.numeric.ProtocolBuilderNumeric;
+import dk.alexandra.fresco.lib.collections.Matrix;
+import dk.alexandra.fresco.lib.real.SReal;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A neural network with public weights compiled for repeated evaluation.
+ *
+ * <p>
+ * Compiling checks that the shapes of the layers match and encodes all weights and biases as fixed
+ * point integers once, so evaluating the plan only builds the protocols. A plan is immutable and
+ * may be shared between any number of evaluations, also concurrently.
+ * </p>
+ */
+public class InferencePlan {
+
+  private final List<EncodedLayerParameters> layers;
+
+  private InferencePlan(List<EncodedLayerParameters> layers) {
+    this.layers = Collections.unmodifiableList(layers);
+  }
+
+  /**
+   * Compile a list of fully connected layers with public weights. The weights are encoded with the
+   * given precision, which should be the precision used by the fixed point numbers in the
+   * computations where the plan is evaluated.
+   *
+   * @param layers
+   * @param precision
+   * @return
+   */
+  public static InferencePlan compile(List<FullyConnectedLayerParameters<BigDecimal>> layers,
+      int precision) {
+    validate(layers);
+    List<EncodedLayerParameters> encoded = new ArrayList<>(layers.size());
+    for (FullyConnectedLayerParameters<BigDecimal> layer : layers) {
+      encoded.add(new EncodedLayerParameters(layer, precision));
+    }
+    return new InferencePlan(encoded);
+  }
+
+  /**
+   * Compile a list of fully connected layers with a precision and a comparison bit length for
+   * each layer. The weights of each layer are encoded with its precision, and the outputs of the
+   * layer are truncated to that precision. The bit lengths are used for the comparisons in ReLU
+   * activations and must bound the integer representations of the outputs of the layers.
+   *
+   * @param layers The layers.
+   * @param precisions The precision of each layer.
+   * @param bitLengths The comparison bit length of each layer.
+   * @return
+   */
+  public static InferencePlan compile(List<FullyConnectedLayerParameters<BigDecimal>> layers,
+      List<Integer> precisions, List<Integer> bitLengths) {
+    validate(layers);
+    if (precisions.size() != layers.size() || bitLengths.size() != layers.size()) {
+      throw new IllegalArgumentException(
+          "There must be a precision and a bit length for each of the " + layers.size()
+              + " layers");
+    }
+    List<EncodedLayerParameters> encoded = new ArrayList<>(layers.size());
+    for (int i = 0; i < layers.size(); i++) {
+      encoded.add(new EncodedLayerParameters(layers.get(i), precisions.get(i), precisions.get(i),
+          bitLengths.get(i)));
+    }
+    return new InferencePlan(encoded);
+  }
+
+  private static void validate(List<FullyConnectedLayerParameters<BigDecimal>> layers) {
+    if (layers.isEmpty()) {
+      throw new IllegalArgumentException("A plan must have at least one layer");
+    }
+    for (int i = 1; i < layers.size(); i++) {
+      if (layers.get(i - 1).getOutputs() != layers.get(i).getInputs()) {
+        throw new IllegalArgumentException("Layer " + i + " has " + layers.get(i).getInputs()
+            + " inputs but the previous layer has " + layers.get(i - 1).getOutputs()
+            + " outputs");
+      }
+    }
+  }
+
+  public List<EncodedLayerParameters> getLayers() {
+    return layers;
+  }
+
+  public int getInputs() {
+    return layers.get(0).getInputs();
+  }
+
+  public int getOutputs() {
+    return layers.get(layers.size() - 1).getOutputs();
+  }
+
+  /**
+   * Returns a computation evaluating the plan on the given input, which may be a single sample or a
+   * batch of samples given as the columns of a matrix.
+   *
+   * @param input
+   * @return
+   */
+  public Computation<Matrix<DRes<SReal>>, ProtocolBuilderNumeric> evaluate(
+      DRes<Matrix<DRes<SReal>>> input) {
+    return builder -> builder.seq(seq -> {
+      if (input.out().getHeight() != getInputs()) {
+        throw new IllegalArgumentException("Input has height " + input.out().getHeight()
+            + " but the plan expects " + getInputs());
+      }
+      DRes<Matrix<DRes<SReal>>> x = input;
+      for (EncodedLayerParameters layer : layers) {
+        x = seq.seq(new PublicFullyConnectedLayer(layer, x));
+      }
+      return x;
+    });
+  }
+
+  /**
+   * Returns a computation evaluating the plan on an input known by a single party, which computes
+   * the linear part of the first layer locally using {@link LocalInputLayer}. Only the outputs of
+   * the first layer are input, and the largest matrix product is not computed in MPC. Parties
+   * other than the input party may give a matrix of the same size with <code>null</code> entries.
+   *
+   * @param input
+   * @param inputParty
+   * @return
+   */
+  public Computation<Matrix<DRes<SReal>>, ProtocolBuilderNumeric> evaluate(
+      Matrix<BigDecimal> input, int inputParty) {
+    return builder -> builder.seq(seq -> {
+      DRes<Matrix<DRes<SReal>>> x =
+          seq.seq(new LocalInputLayer(layers.get(0), input, inputParty));
+      for (EncodedLayerParameters layer : layers.subList(1, layers.size())) {
+        x = seq.seq(new PublicFullyConnectedLayer(layer, x));
+      }
+      return x;
+    });
+  }
+
+}
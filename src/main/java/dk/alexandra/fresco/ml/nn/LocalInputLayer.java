@@ -0,0 +1,124 @@
+package dk.alexandra.fresco.ml.nn;
+
+import dk.alexandra.fresco.framework.DRes;
+import dk.alexandra.fresco.framework.builder.numeric.ProtocolBuilderNumeric;
+import dk.alexandra.fresco.lib.collections.Matrix;
+import dk.alexandra.fresco.lib.real.SReal;
+import dk.alexandra.fresco.lib.real.fixed.SFixed;
+import dk.alexandra.fresco.ml.utils.FixedPointUtils;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The first layer of a network with public weights, where the linear part is computed locally by
+ * the party holding the input.
+ *
+ * <p>
+ * Since both the weights and the input are known to the input party, it computes the affine
+ * transformation in plaintext and only inputs the result, so the matrix product is not computed
+ * in MPC at all and the number of values input is the number of outputs of the layer instead of
+ * the number of inputs. The activation function is applied in MPC as usual. The result is computed
+ * on the same integer representations and rounded to the same precision as in
+ * {@link AffineTransformation}.
+ * </p>
+ *
+ * <p>
+ * The input may be a single sample given as a column vector or a batch of samples given as the
+ * columns of a matrix. Only the input party needs to know the input, so the other parties may give
+ * a matrix of the same size with <code>null</code> entries.
+ * </p>
+ */
+public class LocalInputLayer implements Layer {
+
+  private final Matrix<BigDecimal> input;
+  private final int inputParty;
+  private FullyConnectedLayerParameters<BigDecimal> parameters;
+  private EncodedLayerParameters encoded;
+
+  public LocalInputLayer(FullyConnectedLayerParameters<BigDecimal> parameters,
+      Matrix<BigDecimal> input, int inputParty) {
+    this.parameters = parameters;
+    this.input = input;
+    this.inputParty = inputParty;
+  }
+
+  /**
+   * Create a new layer from parameters which have already been encoded, eg. as part of an
+   * {@link InferencePlan}.
+   *
+   * @param encoded
+   * @param input
+   * @param inputParty
+   */
+  public LocalInputLayer(EncodedLayerParameters encoded, Matrix<BigDecimal> input,
+      int inputParty) {
+    this.encoded = encoded;
+    this.input = input;
+    this.inputParty = inputParty;
+  }
+
+  @Override
+  public DRes<Matrix<DRes<SReal>>> buildComputation(ProtocolBuilderNumeric builder) {
+    return builder.par(par -> {
+      int inputPrecision = par.getRealNumericContext().getPrecision();
+      if (encoded == null) {
+        encoded = new EncodedLayerParameters(parameters, inputPrecision);
+      }
+      if (input.getHeight() != encoded.getInputs()) {
+        throw new IllegalArgumentException("Input has height " + input.getHeight()
+            + " but the weights expect " + encoded.getInputs());
+      }
+      int productPrecision = encoded.getPrecision() + inputPrecision;
+      int precision = Math.min(productPrecision,
+          encoded.getOutputPrecision() != null ? encoded.getOutputPrecision() : inputPrecision);
+      int shifts = productPrecision - precision;
+
+      Matrix<BigInteger> result = null;
+      if (par.getBasicNumericContext().getMyId() == inputParty) {
+        result = affine(new FixedPointUtils().encode(input, inputPrecision),
+            encoded.getEncodedBias(productPrecision), shifts);
+      }
+      final Matrix<BigInteger> values = result;
+      Matrix<DRes<SReal>> closed = new Matrix<>(encoded.getOutputs(), input.getWidth(), i -> {
+        ArrayList<DRes<SReal>> row = new ArrayList<>(input.getWidth());
+        for (int j = 0; j < input.getWidth(); j++) {
+          BigInteger value = values != null ? values.getRow(i).get(j) : null;
+          row.add(new SFixed(par.numeric().input(value, inputParty), precision));
+        }
+        return row;
+      });
+      return () -> closed;
+    }).seq((seq, w) -> PublicFullyConnectedLayer.activate(seq, encoded, w));
+  }
+
+  /**
+   * Computes the affine transformation on the integer representation of the input and rounds the
+   * result to the nearest integer after dividing by 2<sup>shifts</sup>.
+   */
+  private Matrix<BigInteger> affine(Matrix<BigInteger> x, List<BigInteger> bias, int shifts) {
+    BigInteger half = shifts > 0 ? BigInteger.ONE.shiftLeft(shifts - 1) : BigInteger.ZERO;
+    return new Matrix<>(encoded.getOutputs(), x.getWidth(), i -> {
+      ArrayList<BigInteger> row = new ArrayList<>(x.getWidth());
+      for (int j = 0; j < x.getWidth(); j++) {
+        BigInteger sum = bias.get(i);
+        if (encoded.isSparse()) {
+          int[] indices = encoded.getSparseWeights().getColumnIndices(i);
+          List<BigInteger> weights = encoded.getSparseWeights().getValues(i);
+          for (int k = 0; k < indices.length; k++) {
+            sum = sum.add(weights.get(k).multiply(x.getRow(indices[k]).get(j)));
+          }
+        } else {
+          List<BigInteger> weights = encoded.getWeights().getRow(i);
+          for (int k = 0; k < weights.size(); k++) {
+            sum = sum.add(weights.get(k).multiply(x.getRow(k).get(j)));
+          }
+        }
+        row.add(sum.add(half).shiftRight(shifts));
+      }
+      return row;
+    });
+  }
+
+}
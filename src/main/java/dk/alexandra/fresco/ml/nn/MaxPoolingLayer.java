@@ -0,0 +1,124 @@
+package dk.alexandra.fresco.ml.nn;
+
+import dk.alexandra.fresco.framework.DRes;
+import dk.alexandra.fresco.framework.builder.numeric.ProtocolBuilderNumeric;
+import dk.alexandra.fresco.framework.value.SInt;
+import dk.alexandra.fresco.lib.collections.Matrix;
+import dk.alexandra.fresco.lib.conditional.ConditionalSelect;
+import dk.alexandra.fresco.lib.real.SReal;
+import dk.alexandra.fresco.ml.libext.LessThan;
+import dk.alexandra.fresco.ml.utils.FixedPointUtils;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class represents a 2D max-pooling layer in a feed-forward neural network.
+ *
+ * <p>
+ * The maximum of each window is computed in a tournament where the candidates are compared in
+ * pairs and the larger is kept. All windows of all images in the batch are handled in the same
+ * rounds, so the layer requires <i>log<sub>2</sub>(s<sup>2</sup>)</i> levels of comparisons for
+ * windows of size <i>s x s</i>.
+ * </p>
+ */
+public class MaxPoolingLayer implements Layer {
+
+  private DRes<Matrix<DRes<SReal>>> v;
+  private PoolingLayerParameters parameters;
+
+  public MaxPoolingLayer(PoolingLayerParameters parameters, DRes<Matrix<DRes<SReal>>> v) {
+    this.parameters = parameters;
+    this.v = v;
+  }
+
+  @Override
+  public DRes<Matrix<DRes<SReal>>> buildComputation(ProtocolBuilderNumeric builder) {
+    FixedPointUtils fixedPointUtils = new FixedPointUtils();
+    int outputs = parameters.getOutputs();
+    return builder.par(par -> {
+      Matrix<DRes<SReal>> x = v.out();
+      if (x.getHeight() != parameters.getInputs()) {
+        throw new IllegalArgumentException("Input has height " + x.getHeight()
+            + " but the layer expects " + parameters.getInputs());
+      }
+      // Compare the integer representations at a common precision
+      int precision = fixedPointUtils.maxPrecision(x);
+      Matrix<DRes<SInt>> integers = fixedPointUtils.toSInt(par, x, precision);
+      List<List<DRes<SInt>>> windows = windows(integers);
+      return () -> new Tournament(windows, precision);
+    }).whileLoop(tournament -> tournament.candidates.get(0).size() > 1,
+        (seq, tournament) -> seq.par(par -> {
+          List<List<DRes<SInt>>> next = new ArrayList<>(tournament.candidates.size());
+          for (List<DRes<SInt>> candidates : tournament.candidates) {
+            List<DRes<SInt>> winners = new ArrayList<>((candidates.size() + 1) / 2);
+            for (int i = 0; i + 1 < candidates.size(); i += 2) {
+              DRes<SInt> a = candidates.get(i);
+              DRes<SInt> b = candidates.get(i + 1);
+              winners.add(par.seq(r -> {
+                DRes<SInt> aIsSmaller = r.seq(new LessThan(a, b));
+                return r.seq(new ConditionalSelect(aIsSmaller, b, a));
+              }));
+            }
+            if (candidates.size() % 2 == 1) {
+              winners.add(candidates.get(candidates.size() - 1));
+            }
+            next.add(winners);
+          }
+          return () -> new Tournament(next, tournament.precision);
+        })).seq((seq, tournament) -> {
+          int batchSize = tournament.candidates.size() / outputs;
+          Matrix<DRes<SInt>> result = new Matrix<>(outputs, batchSize, i -> {
+            ArrayList<DRes<SInt>> row = new ArrayList<>(batchSize);
+            for (int b = 0; b < batchSize; b++) {
+              row.add(tournament.candidates.get(b * outputs + i).get(0));
+            }
+            return row;
+          });
+          Matrix<DRes<SReal>> fixed = fixedPointUtils.fromSInt(result, tournament.precision);
+          return () -> fixed;
+        });
+  }
+
+  /**
+   * Collect the entries of each window. The windows of the <i>b</i>'th image are at indices
+   * <i>bn, ..., (b + 1)n - 1</i> where <i>n</i> is the number of outputs of the layer.
+   */
+  private List<List<DRes<SInt>>> windows(Matrix<DRes<SInt>> x) {
+    int height = parameters.getInputHeight();
+    int width = parameters.getInputWidth();
+    int outputHeight = parameters.getOutputHeight();
+    int outputWidth = parameters.getOutputWidth();
+    int size = parameters.getWindowSize();
+    int stride = parameters.getStride();
+    List<List<DRes<SInt>>> windows = new ArrayList<>(parameters.getOutputs() * x.getWidth());
+    for (int b = 0; b < x.getWidth(); b++) {
+      for (int channel = 0; channel < parameters.getChannels(); channel++) {
+        for (int y = 0; y < outputHeight; y++) {
+          for (int z = 0; z < outputWidth; z++) {
+            List<DRes<SInt>> window = new ArrayList<>(size * size);
+            for (int dy = 0; dy < size; dy++) {
+              for (int dz = 0; dz < size; dz++) {
+                int index = channel * height * width + (y * stride + dy) * width + z * stride + dz;
+                window.add(x.getRow(index).get(b));
+              }
+            }
+            windows.add(window);
+          }
+        }
+      }
+    }
+    return windows;
+  }
+
+  private static class Tournament {
+
+    private final List<List<DRes<SInt>>> candidates;
+    private final int precision;
+
+    private Tournament(List<List<DRes<SInt>>> candidates, int precision) {
+      this.candidates = candidates;
+      this.precision = precision;
+    }
+  }
+
+}
@@ -7,25 +7,79 @@ import dk.alexandra.fresco.framework.builder.numeric.ProtocolBuilderNumeric;
 import dk.alexandra.fresco.lib.collections.Matrix;
 import java.math.BigDecimal;
 import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
+/**
+ * Evaluates a feed-forward neural network on a secret input.
+ *
+ * <p>
+ * The input is either a single sample given as a column vector or a batch of <i>B</i> samples given
+ * as a <i>n x B</i>-matrix where each column is a sample. A batch is pushed through each layer as a
+ * single matrix product followed by one activation pass, and the output is a matrix with a column
+ * for each sample.
+ * </p>
+ */
 public class NeuralNetwork implements Computation<Matrix<DRes<SReal>>, ProtocolBuilderNumeric> {
 
-  private List<FullyConnectedLayerParameters<BigDecimal>> layerParameters;
+  private List<Function<DRes<Matrix<DRes<SReal>>>, Layer>> layers;
   private DRes<Matrix<DRes<SReal>>> input;
 
+  /**
+   * Create a new neural network with public weights.
+   *
+   * @param layers
+   * @param input
+   */
   public NeuralNetwork(List<FullyConnectedLayerParameters<BigDecimal>> layers,
       DRes<Matrix<DRes<SReal>>> input) {
-    this.layerParameters = layers;
+    this(input, layers.stream()
+        .map(parameters -> (Function<DRes<Matrix<DRes<SReal>>>, Layer>) x ->
+            new PublicFullyConnectedLayer(parameters, x))
+        .collect(Collectors.toList()));
+  }
+
+  private NeuralNetwork(DRes<Matrix<DRes<SReal>>> input,
+      List<Function<DRes<Matrix<DRes<SReal>>>, Layer>> layers) {
+    this.layers = layers;
     this.input = input;
   }
 
+  /**
+   * Create a new neural network where the weights and biases of all layers are secret.
+   *
+   * @param layers
+   * @param input
+   * @return
+   */
+  public static NeuralNetwork withPrivateWeights(
+      List<FullyConnectedLayerParameters<DRes<SReal>>> layers, DRes<Matrix<DRes<SReal>>> input) {
+    return new NeuralNetwork(input, layers.stream()
+        .map(parameters -> (Function<DRes<Matrix<DRes<SReal>>>, Layer>) x ->
+            new PrivateFullyConnectedLayer(parameters, x))
+        .collect(Collectors.toList()));
+  }
+
+  /**
+   * Create a new neural network from arbitrary layers. Each element of the list creates a layer
+   * given the output of the previous layer, which allows eg. public and private layers to be
+   * mixed.
+   *
+   * @param layers
+   * @param input
+   * @return
+   */
+  public static NeuralNetwork fromLayers(List<Function<DRes<Matrix<DRes<SReal>>>, Layer>> layers,
+      DRes<Matrix<DRes<SReal>>> input) {
+    return new NeuralNetwork(input, layers);
+  }
+
   @Override
   public DRes<Matrix<DRes<SReal>>> buildComputation(ProtocolBuilderNumeric builder) {
     return builder.seq(seq -> {
       DRes<Matrix<DRes<SReal>>> x = input;
-      for (FullyConnectedLayerParameters<BigDecimal> parameters : layerParameters) {
-        // TODO: For now, only public fully connected layers are supported
-        x = seq.seq(new PublicFullyConnectedLayer(parameters, x));
+      for (Function<DRes<Matrix<DRes<SReal>>>, Layer> layer : layers) {
+        x = seq.seq(layer.apply(x));
       }
       return x;
     });
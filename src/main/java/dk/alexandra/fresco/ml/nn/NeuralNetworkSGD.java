@@ -0,0 +1,318 @@
+package dk.alexandra.fresco.ml.nn;
+
+import dk.alexandra.fresco.framework.DRes;
+import dk.alexandra.fresco.framework.builder.Computation;
+import dk.alexandra.fresco.framework.builder.numeric.ProtocolBuilderNumeric;
+import dk.alexandra.fresco.framework.util.Pair;
+import dk.alexandra.fresco.framework.value.SInt;
+import dk.alexandra.fresco.lib.collections.Matrix;
+import dk.alexandra.fresco.lib.real.SReal;
+import dk.alexandra.fresco.lib.real.fixed.SFixed;
+import dk.alexandra.fresco.ml.libext.FixedPointMatrixMult;
+import dk.alexandra.fresco.ml.nn.ActivationFunctions.Type;
+import dk.alexandra.fresco.ml.utils.FixedPointUtils;
+import dk.alexandra.fresco.ml.utils.LinearAlgebraUtils;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Trains a feed-forward neural network with secret weights using mini-batch stochastic gradient
+ * descent, similar to {@link dk.alexandra.fresco.ml.lr.LogisticRegressionSGD}.
+ *
+ * <p>
+ * Each mini-batch is given as a matrix where each column is a sample, and both the forward and the
+ * backward pass work on the whole batch using matrix products, which are computed using
+ * {@link FixedPointMatrixMult}. The comparison bits computed by the ReLU in the forward pass are
+ * reused as the derivative in the backward pass, so the backward pass needs no comparisons. The
+ * comparisons only cover the bit length given for the layer plus the precision of the values, so
+ * a tight bound on the pre-activations of each layer makes them cheaper.
+ * </p>
+ *
+ * <p>
+ * Hidden layers must use {@link Type#RELU} or {@link Type#IDENTITY}. The error of the output layer
+ * is taken to be the difference between the output and the expected output, which is the exact
+ * gradient for an identity output with squared loss and for a sigmoid output with cross entropy
+ * loss. A sigmoid output is evaluated using
+ * {@link DefaultActivationFunctions#DEFAULT_SIGMOID_APPROXIMATION}. Since the exponentials and
+ * divisions of a softmax are expensive, a softmax output is trained as if each output was a
+ * sigmoid, ie. using the cross entropy loss of each class against the rest. The sigmoid is
+ * increasing, so the largest output, and thus the predicted class, is the same.
+ * </p>
+ */
+public class NeuralNetworkSGD implements
+    Computation<List<FullyConnectedLayerParameters<DRes<SReal>>>, ProtocolBuilderNumeric> {
+
+  /**
+   * The bound on the pre-activations of a layer used unless other bounds are given, so the
+   * pre-activations are assumed to be less than 2<sup>16</sup> in absolute value.
+   */
+  public static final int DEFAULT_BIT_LENGTH = 16;
+
+  private final List<FullyConnectedLayerParameters<DRes<SReal>>> layers;
+  private final List<DRes<Matrix<DRes<SReal>>>> inputs;
+  private final List<DRes<Matrix<DRes<SReal>>>> expected;
+  private final double rate;
+  private final int epochs;
+  private final List<Integer> bitLengths;
+
+  /**
+   * Create a new training computation doing a single pass over the batches.
+   *
+   * @param layers The initial parameters of the network.
+   * @param inputs The mini-batches, where each column of a batch is a sample.
+   * @param expected The expected outputs for each mini-batch.
+   * @param rate The learning rate.
+   */
+  public NeuralNetworkSGD(List<FullyConnectedLayerParameters<DRes<SReal>>> layers,
+      List<DRes<Matrix<DRes<SReal>>>> inputs, List<DRes<Matrix<DRes<SReal>>>> expected,
+      double rate) {
+    this(layers, inputs, expected, rate, 1);
+  }
+
+  /**
+   * Create a new training computation.
+   *
+   * @param layers The initial parameters of the network.
+   * @param inputs The mini-batches, where each column of a batch is a sample.
+   * @param expected The expected outputs for each mini-batch.
+   * @param rate The learning rate.
+   * @param epochs The number of passes over all batches.
+   */
+  public NeuralNetworkSGD(List<FullyConnectedLayerParameters<DRes<SReal>>> layers,
+      List<DRes<Matrix<DRes<SReal>>>> inputs, List<DRes<Matrix<DRes<SReal>>>> expected,
+      double rate, int epochs) {
+    this(layers, inputs, expected, rate, epochs,
+        Collections.nCopies(layers.size(), DEFAULT_BIT_LENGTH));
+  }
+
+  /**
+   * Create a new training computation with a bound on the pre-activations of each layer.
+   *
+   * @param layers The initial parameters of the network.
+   * @param inputs The mini-batches, where each column of a batch is a sample.
+   * @param expected The expected outputs for each mini-batch.
+   * @param rate The learning rate.
+   * @param epochs The number of passes over all batches.
+   * @param bitLengths For each layer a bound <i>b</i> such that the inputs to the activation
+   *        function of the layer are less than 2<sup>b</sup> in absolute value. It is only used
+   *        for ReLU layers.
+   */
+  public NeuralNetworkSGD(List<FullyConnectedLayerParameters<DRes<SReal>>> layers,
+      List<DRes<Matrix<DRes<SReal>>>> inputs, List<DRes<Matrix<DRes<SReal>>>> expected,
+      double rate, int epochs, List<Integer> bitLengths) {
+    if (inputs.size() != expected.size()) {
+      throw new IllegalArgumentException("There must be an expected output for each batch");
+    }
+    if (bitLengths.size() != layers.size()) {
+      throw new IllegalArgumentException(
+          "There must be a bit length for each of the " + layers.size() + " layers");
+    }
+    for (int i = 0; i < layers.size(); i++) {
+      Type type = layers.get(i).getActivation();
+      boolean supported = i < layers.size() - 1
+          ? type == Type.RELU || type == Type.IDENTITY
+          : type == Type.IDENTITY || type == Type.SIGMOID || type == Type.SIGMOID_APPROXIMATION
+              || type == Type.SOFTMAX;
+      if (!supported) {
+        throw new IllegalArgumentException(
+            "Unsupported activation function for training layer " + i + ", " + type);
+      }
+    }
+    this.layers = layers;
+    this.inputs = inputs;
+    this.expected = expected;
+    this.rate = rate;
+    this.epochs = epochs;
+    this.bitLengths = bitLengths;
+  }
+
+  @Override
+  public DRes<List<FullyConnectedLayerParameters<DRes<SReal>>>> buildComputation(
+      ProtocolBuilderNumeric builder) {
+    int iterations = epochs * inputs.size();
+    return builder.seq(seq -> {
+      return new IterationState(0, () -> layers);
+    }).whileLoop(state -> state.i < iterations, (seq, state) -> {
+      int batch = state.i % inputs.size();
+      DRes<List<FullyConnectedLayerParameters<DRes<SReal>>>> updated = seq.seq(
+          new BatchGradient(state.layers.out(), inputs.get(batch), expected.get(batch), rate,
+              bitLengths));
+      return new IterationState(state.i + 1, updated);
+    }).seq((seq, state) -> {
+      return state.layers;
+    });
+  }
+
+  /**
+   * Computes the updated parameters after a single mini-batch.
+   */
+  private static class BatchGradient implements
+      Computation<List<FullyConnectedLayerParameters<DRes<SReal>>>, ProtocolBuilderNumeric> {
+
+    private final List<FullyConnectedLayerParameters<DRes<SReal>>> layers;
+    private final DRes<Matrix<DRes<SReal>>> input;
+    private final DRes<Matrix<DRes<SReal>>> expected;
+    private final double rate;
+    private final List<Integer> bitLengths;
+
+    private BatchGradient(List<FullyConnectedLayerParameters<DRes<SReal>>> layers,
+        DRes<Matrix<DRes<SReal>>> input, DRes<Matrix<DRes<SReal>>> expected, double rate,
+        List<Integer> bitLengths) {
+      this.layers = layers;
+      this.input = input;
+      this.expected = expected;
+      this.rate = rate;
+      this.bitLengths = bitLengths;
+    }
+
+    @Override
+    public DRes<List<FullyConnectedLayerParameters<DRes<SReal>>>> buildComputation(
+        ProtocolBuilderNumeric builder) {
+      int n = layers.size();
+      // The activations of all layers, starting with the input, and the derivatives of the ReLU
+      // activations, or null if the layer has no ReLU
+      List<DRes<Matrix<DRes<SReal>>>> activations = new ArrayList<>(n + 1);
+      List<DRes<Matrix<DRes<SInt>>>> derivatives = new ArrayList<>(n);
+      activations.add(input);
+
+      return builder.seq(seq -> {
+        // Forward pass
+        for (int l = 0; l < n; l++) {
+          FullyConnectedLayerParameters<DRes<SReal>> layer = layers.get(l);
+          int bound = bitLengths.get(l);
+          DRes<Matrix<DRes<SReal>>> a = activations.get(activations.size() - 1);
+          DRes<Matrix<DRes<SReal>>> product =
+              seq.seq(new FixedPointMatrixMult(layer::getWeights, a));
+          DRes<Matrix<DRes<SReal>>> z = seq.seq(s -> {
+            Matrix<DRes<SReal>> bias = new LinearAlgebraUtils()
+                .repeatColumn(layer.getBias(), product.out().getWidth());
+            return s.realLinAlg().add(() -> bias, product);
+          });
+          if (layer.getActivation() == Type.RELU) {
+            DRes<Pair<Matrix<DRes<SReal>>, Matrix<DRes<SInt>>>> relu = seq.seq(s -> {
+              // The integer representations are bounded by the bound on the values shifted by the
+              // precision
+              int bitLength = Math.min(bound + new FixedPointUtils().maxPrecision(z.out()),
+                  s.getBasicNumericContext().getMaxBitLength());
+              return new DefaultActivationFunctions(s).reluWithBits(z.out(), bitLength);
+            });
+            activations.add(() -> relu.out().getFirst());
+            derivatives.add(() -> relu.out().getSecond());
+          } else {
+            Type type = layer.getActivation() == Type.SIGMOID
+                || layer.getActivation() == Type.SOFTMAX ? Type.SIGMOID_APPROXIMATION
+                    : layer.getActivation();
+            activations.add(
+                seq.seq(s -> new DefaultActivationFunctions(s).activation(type, z.out())));
+            derivatives.add(null);
+          }
+        }
+
+        // Backward pass. The error of the output layer is the difference to the expected output.
+        // The error of a hidden layer is only known once the layer above it has been handled, so
+        // it is looked up when needed.
+        List<DRes<Matrix<DRes<SReal>>>> errors = new ArrayList<>(Collections.nCopies(n, null));
+        List<DRes<Matrix<DRes<SReal>>>> weights = new ArrayList<>(Collections.nCopies(n, null));
+        List<DRes<Matrix<DRes<SReal>>>> biases = new ArrayList<>(Collections.nCopies(n, null));
+        errors.set(n - 1, seq.realLinAlg().sub(activations.get(n), expected));
+        for (int l = n - 1; l >= 0; l--) {
+          int index = l;
+          FullyConnectedLayerParameters<DRes<SReal>> layer = layers.get(l);
+          DRes<Matrix<DRes<SReal>>> error = () -> errors.get(index).out();
+          DRes<Matrix<DRes<SInt>>> derivative = l > 0 ? derivatives.get(l - 1) : null;
+
+          // The learning rate and the averaging over the batch are applied to the error before
+          // computing the gradients, since the error is usually smaller than the weights
+          DRes<Matrix<DRes<SReal>>> scaled = seq.seq(s -> s.realLinAlg()
+              .scale(BigDecimal.valueOf(rate / error.out().getWidth()), error));
+          seq.par(par -> {
+            weights.set(index, par.seq(s -> {
+              DRes<Matrix<DRes<SReal>>> gradient = s.seq(new FixedPointMatrixMult(scaled,
+                  s.realLinAlg().transpose(activations.get(index))));
+              return s.realLinAlg().sub(layer::getWeights, gradient);
+            }));
+            biases.set(index, par.seq(s -> {
+              DRes<Matrix<DRes<SReal>>> gradient = s.seq(r -> rowSums(r, scaled.out()));
+              return s.realLinAlg().sub(layer::getBias, gradient);
+            }));
+            if (index > 0) {
+              // Propagate the error using the weights before the update
+              errors.set(index - 1, par.seq(s -> {
+                DRes<Matrix<DRes<SReal>>> propagated = s.seq(new FixedPointMatrixMult(
+                    s.realLinAlg().transpose(layer::getWeights), error));
+                if (derivative == null) {
+                  return propagated;
+                }
+                return s.seq(r -> mask(r, propagated.out(), derivative.out()));
+              }));
+            }
+            return () -> null;
+          });
+        }
+        return () -> {
+          List<FullyConnectedLayerParameters<DRes<SReal>>> updated = new ArrayList<>(n);
+          for (int l = 0; l < n; l++) {
+            updated.add(new FullyConnectedLayerParameters<>(weights.get(l).out(),
+                biases.get(l).out(), layers.get(l).getActivation()));
+          }
+          return updated;
+        };
+      });
+    }
+  }
+
+  /**
+   * Returns the sums of the rows of a matrix as a column vector.
+   */
+  private static DRes<Matrix<DRes<SReal>>> rowSums(ProtocolBuilderNumeric builder,
+      Matrix<DRes<SReal>> matrix) {
+    return builder.par(par -> {
+      List<DRes<SReal>> sums = new ArrayList<>(matrix.getHeight());
+      for (int i = 0; i < matrix.getHeight(); i++) {
+        sums.add(par.realAdvanced().sum(matrix.getRow(i)));
+      }
+      return () -> new LinearAlgebraUtils().createColumnVector(sums);
+    });
+  }
+
+  /**
+   * Multiplies each entry of a matrix by the corresponding bit. Multiplying by a bit does not
+   * change the scaling, so no truncation is needed.
+   */
+  private static DRes<Matrix<DRes<SReal>>> mask(ProtocolBuilderNumeric builder,
+      Matrix<DRes<SReal>> matrix, Matrix<DRes<SInt>> bits) {
+    return builder.par(par -> {
+      Matrix<DRes<SReal>> result = new Matrix<>(matrix.getHeight(), matrix.getWidth(), i -> {
+        ArrayList<DRes<SReal>> row = new ArrayList<>(matrix.getWidth());
+        for (int j = 0; j < matrix.getWidth(); j++) {
+          SFixed x = (SFixed) matrix.getRow(i).get(j).out();
+          row.add(new SFixed(par.numeric().mult(bits.getRow(i).get(j), x.getSInt()),
+              x.getPrecision()));
+        }
+        return row;
+      });
+      return () -> result;
+    });
+  }
+
+  private static class IterationState
+      implements DRes<IterationState> {
+
+    private final int i;
+    private final DRes<List<FullyConnectedLayerParameters<DRes<SReal>>>> layers;
+
+    private IterationState(int round,
+        DRes<List<FullyConnectedLayerParameters<DRes<SReal>>>> layers) {
+      this.i = round;
+      this.layers = layers;
+    }
+
+    @Override
+    public IterationState out() {
+      return this;
+    }
+
+  }
+}
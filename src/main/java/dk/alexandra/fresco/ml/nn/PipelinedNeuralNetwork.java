@@ -0,0 +1,80 @@
+package dk.alexandra.fresco.ml.nn;
+
+import dk.alexandra.fresco.framework.DRes;
+import dk.alexandra.fresco.framework.builder.Computation;
+import dk.alexandra.fresco.framework.builder.numeric.ProtocolBuilderNumeric;
+import dk.alexandra.fresco.lib.collections.Matrix;
+import dk.alexandra.fresco.lib.real.SReal;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Evaluates a feed-forward neural network on a stream of inputs, where the evaluation of the
+ * inputs is pipelined.
+ *
+ * <p>
+ * Each input is passed through the layers by its own sequential evaluation as in {@link
+ * NeuralNetwork}, and the evaluations of all inputs are run in parallel. There is no
+ * synchronisation between the inputs, so the protocol batches of each round carry whatever layers
+ * the inputs have reached, eg. layer <i>k</i> of one input together with layer <i>k - 1</i> of
+ * another, and each input needs exactly as many rounds as when evaluated on its own.
+ * </p>
+ */
+public class PipelinedNeuralNetwork
+    implements Computation<List<Matrix<DRes<SReal>>>, ProtocolBuilderNumeric> {
+
+  private final List<Function<DRes<Matrix<DRes<SReal>>>, Layer>> layers;
+  private final List<DRes<Matrix<DRes<SReal>>>> inputs;
+
+  /**
+   * Create a new pipelined neural network. Each element of the list of layers creates a layer
+   * given the output of the previous layer as described in {@link NeuralNetwork#fromLayers(List,
+   * DRes)}.
+   *
+   * @param layers
+   * @param inputs
+   */
+  public PipelinedNeuralNetwork(List<Function<DRes<Matrix<DRes<SReal>>>, Layer>> layers,
+      List<DRes<Matrix<DRes<SReal>>>> inputs) {
+    if (inputs.isEmpty() || layers.isEmpty()) {
+      throw new IllegalArgumentException("There must be at least one input and one layer");
+    }
+    this.layers = layers;
+    this.inputs = inputs;
+  }
+
+  /**
+   * Create a new pipelined neural network with public weights.
+   *
+   * @param layers
+   * @param inputs
+   * @return
+   */
+  public static PipelinedNeuralNetwork withPublicWeights(
+      List<FullyConnectedLayerParameters<BigDecimal>> layers,
+      List<DRes<Matrix<DRes<SReal>>>> inputs) {
+    return new PipelinedNeuralNetwork(layers.stream()
+        .map(parameters -> (Function<DRes<Matrix<DRes<SReal>>>, Layer>) x ->
+            new PublicFullyConnectedLayer(parameters, x))
+        .collect(Collectors.toList()), inputs);
+  }
+
+  @Override
+  public DRes<List<Matrix<DRes<SReal>>>> buildComputation(ProtocolBuilderNumeric builder) {
+    return builder.par(par -> {
+      List<DRes<Matrix<DRes<SReal>>>> outputs = new ArrayList<>(inputs.size());
+      for (DRes<Matrix<DRes<SReal>>> input : inputs) {
+        outputs.add(par.seq(NeuralNetwork.fromLayers(layers, input)));
+      }
+      return () -> outputs;
+    }).seq((seq, outputs) -> {
+      List<Matrix<DRes<SReal>>> result =
+          outputs.stream().map(DRes::out).collect(Collectors.toList());
+      return () -> result;
+    });
+  }
+
+}
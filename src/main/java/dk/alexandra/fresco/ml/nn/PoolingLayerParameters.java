@@ -0,0 +1,67 @@
+package dk.alexandra.fresco.ml.nn;
+
+/**
+ * Parameters for a 2D pooling layer. The input and output images are represented as column vectors
+ * in channel-major order as described in {@link ConvolutionLayerParameters}. The pooling is applied
+ * to each channel separately.
+ */
+public class PoolingLayerParameters {
+
+  private final int channels;
+  private final int inputHeight;
+  private final int inputWidth;
+  private final int windowSize;
+  private final int stride;
+
+  public PoolingLayerParameters(int channels, int inputHeight, int inputWidth, int windowSize,
+      int stride) {
+    if (windowSize < 1 || stride < 1) {
+      throw new IllegalArgumentException(
+          "Window size and stride must be positive, but was " + windowSize + " and " + stride);
+    }
+    if (windowSize > inputHeight || windowSize > inputWidth) {
+      throw new IllegalArgumentException("Window is larger than the input");
+    }
+    this.channels = channels;
+    this.inputHeight = inputHeight;
+    this.inputWidth = inputWidth;
+    this.windowSize = windowSize;
+    this.stride = stride;
+  }
+
+  public int getChannels() {
+    return channels;
+  }
+
+  public int getInputHeight() {
+    return inputHeight;
+  }
+
+  public int getInputWidth() {
+    return inputWidth;
+  }
+
+  public int getWindowSize() {
+    return windowSize;
+  }
+
+  public int getStride() {
+    return stride;
+  }
+
+  public int getOutputHeight() {
+    return (inputHeight - windowSize) / stride + 1;
+  }
+
+  public int getOutputWidth() {
+    return (inputWidth - windowSize) / stride + 1;
+  }
+
+  public int getInputs() {
+    return channels * inputHeight * inputWidth;
+  }
+
+  public int getOutputs() {
+    return channels * getOutputHeight() * getOutputWidth();
+  }
+}
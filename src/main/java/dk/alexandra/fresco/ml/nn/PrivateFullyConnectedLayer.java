@@ -0,0 +1,63 @@
+package dk.alexandra.fresco.ml.nn;
+
+import dk.alexandra.fresco.framework.DRes;
+import dk.alexandra.fresco.framework.builder.numeric.ProtocolBuilderNumeric;
+import dk.alexandra.fresco.lib.collections.Matrix;
+import dk.alexandra.fresco.lib.real.SReal;
+import dk.alexandra.fresco.ml.libext.FixedPointMatrixMult;
+import dk.alexandra.fresco.ml.libext.MatrixTriple;
+import dk.alexandra.fresco.ml.utils.LinearAlgebraUtils;
+
+/**
+ * This class represents a fully connected layer in a feed-forward neural network where the weights
+ * and bias are secret.
+ *
+ * <p>
+ * The product of the weights and the input is computed by {@link FixedPointMatrixMult} and
+ * truncated once per entry. If a {@link MatrixTriple} generated in a preprocessing phase is given,
+ * only the masked weights and masked input are opened. Otherwise the product is computed directly
+ * with an inner product per entry. As for {@link PublicFullyConnectedLayer} the input may be a
+ * batch of samples given as the columns of a matrix.
+ * </p>
+ */
+public class PrivateFullyConnectedLayer implements Layer {
+
+  private DRes<Matrix<DRes<SReal>>> v;
+  private FullyConnectedLayerParameters<DRes<SReal>> parameters;
+  private DRes<MatrixTriple> triple;
+
+  public PrivateFullyConnectedLayer(FullyConnectedLayerParameters<DRes<SReal>> parameters,
+      DRes<Matrix<DRes<SReal>>> v) {
+    this(parameters, v, null);
+  }
+
+  /**
+   * Create a new layer using a matrix triple generated in advance. The triple must have dimensions
+   * matching the weights and the input, and it must not be used anywhere else.
+   *
+   * @param parameters
+   * @param v
+   * @param triple
+   */
+  public PrivateFullyConnectedLayer(FullyConnectedLayerParameters<DRes<SReal>> parameters,
+      DRes<Matrix<DRes<SReal>>> v, DRes<MatrixTriple> triple) {
+    this.parameters = parameters;
+    this.v = v;
+    this.triple = triple;
+  }
+
+  @Override
+  public DRes<Matrix<DRes<SReal>>> buildComputation(ProtocolBuilderNumeric builder) {
+    return builder.seq(r1 -> {
+      return r1.seq(new FixedPointMatrixMult(parameters::getWeights, v, triple));
+    }).seq((r2, w) -> {
+      Matrix<DRes<SReal>> bias =
+          new LinearAlgebraUtils().repeatColumn(parameters.getBias(), w.getWidth());
+      return r2.realLinAlg().add(() -> bias, () -> w);
+    }).seq((r3, w) -> {
+      ActivationFunctions activation = new DefaultActivationFunctions(r3);
+      return activation.activation(parameters.getActivation(), w);
+    });
+  }
+
+}
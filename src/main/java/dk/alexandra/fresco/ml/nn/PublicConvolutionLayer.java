@@ -0,0 +1,106 @@
+package dk.alexandra.fresco.ml.nn;
+
+import dk.alexandra.fresco.framework.DRes;
+import dk.alexandra.fresco.framework.builder.numeric.ProtocolBuilderNumeric;
+import dk.alexandra.fresco.lib.collections.Matrix;
+import dk.alexandra.fresco.lib.real.SReal;
+import dk.alexandra.fresco.ml.utils.FixedPointUtils;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+
+/**
+ * This class represents a 2D convolution layer with public kernels in a feed-forward neural
+ * network.
+ *
+ * <p>
+ * The convolution is lowered to a single matrix product: The patches of the input covered by the
+ * kernel are arranged as the columns of a matrix (im2col), which is multiplied by the matrix of
+ * kernels using an {@link AffineTransformation}. The input may be a batch of images given as the
+ * columns of a matrix, in which case the patches of all images are handled by the same product.
+ * </p>
+ */
+public class PublicConvolutionLayer implements Layer {
+
+  private DRes<Matrix<DRes<SReal>>> v;
+  private ConvolutionLayerParameters<BigDecimal> parameters;
+
+  public PublicConvolutionLayer(ConvolutionLayerParameters<BigDecimal> parameters,
+      DRes<Matrix<DRes<SReal>>> v) {
+    this.parameters = parameters;
+    this.v = v;
+  }
+
+  @Override
+  public DRes<Matrix<DRes<SReal>>> buildComputation(ProtocolBuilderNumeric builder) {
+    return builder.seq(r1 -> {
+      Matrix<DRes<SReal>> x = v.out();
+      if (x.getHeight() != parameters.getInputs()) {
+        throw new IllegalArgumentException("Input has height " + x.getHeight()
+            + " but the layer expects " + parameters.getInputs());
+      }
+      Matrix<DRes<SReal>> patches = im2col(x, r1.realNumeric().known(BigDecimal.ZERO));
+      int precision = r1.getRealNumericContext().getPrecision();
+      Matrix<BigInteger> kernels = new FixedPointUtils().encode(parameters.getKernels(), precision);
+      return r1.seq(
+          new AffineTransformation(kernels, precision, parameters.getBias(), () -> patches));
+    }).seq((r2, product) -> {
+      ActivationFunctions activation = new DefaultActivationFunctions(r2);
+      return activation.activation(parameters.getActivation(), col2im(product));
+    });
+  }
+
+  /**
+   * Arrange the patches of each image as columns. The patches of the <i>b</i>'th image are in the
+   * columns <i>bn, ..., (b + 1)n - 1</i> where <i>n</i> is the number of positions of the kernel.
+   */
+  private Matrix<DRes<SReal>> im2col(Matrix<DRes<SReal>> x, DRes<SReal> zero) {
+    int channels = parameters.getInputChannels();
+    int height = parameters.getInputHeight();
+    int width = parameters.getInputWidth();
+    int kernelHeight = parameters.getKernelHeight();
+    int kernelWidth = parameters.getKernelWidth();
+    int outputHeight = parameters.getOutputHeight();
+    int outputWidth = parameters.getOutputWidth();
+    int positions = outputHeight * outputWidth;
+    int batchSize = x.getWidth();
+
+    return new Matrix<>(channels * kernelHeight * kernelWidth, positions * batchSize, row -> {
+      int channel = row / (kernelHeight * kernelWidth);
+      int dy = (row / kernelWidth) % kernelHeight;
+      int dx = row % kernelWidth;
+      ArrayList<DRes<SReal>> patchRow = new ArrayList<>(positions * batchSize);
+      for (int b = 0; b < batchSize; b++) {
+        for (int position = 0; position < positions; position++) {
+          int y = (position / outputWidth) * parameters.getStride() - parameters.getPadding() + dy;
+          int z = (position % outputWidth) * parameters.getStride() - parameters.getPadding() + dx;
+          if (y < 0 || y >= height || z < 0 || z >= width) {
+            patchRow.add(zero);
+          } else {
+            patchRow.add(x.getRow(channel * height * width + y * width + z).get(b));
+          }
+        }
+      }
+      return patchRow;
+    });
+  }
+
+  /**
+   * Rearrange the output of the product with the kernels such that each image is a column in
+   * channel-major order.
+   */
+  private Matrix<DRes<SReal>> col2im(Matrix<DRes<SReal>> product) {
+    int positions = parameters.getOutputHeight() * parameters.getOutputWidth();
+    int batchSize = product.getWidth() / positions;
+    return new Matrix<>(parameters.getOutputs(), batchSize, row -> {
+      int channel = row / positions;
+      int position = row % positions;
+      ArrayList<DRes<SReal>> image = new ArrayList<>(batchSize);
+      for (int b = 0; b < batchSize; b++) {
+        image.add(product.getRow(channel).get(b * positions + position));
+      }
+      return image;
+    });
+  }
+
+}
@@ -8,11 +8,23 @@ import java.math.BigDecimal;
 
 /**
  * This class represents a fully connected layer in a feed-forward neural network.
+ *
+ * <p>
+ * The input may either be a single sample given as a column vector or a batch of samples given as
+ * a matrix where each column is a sample. In the latter case the whole batch is evaluated using a
+ * single matrix product.
+ * </p>
+ *
+ * <p>
+ * The product with the weights is computed using {@link AffineTransformation}, which truncates once
+ * per output entry instead of once per term.
+ * </p>
  */
 public class PublicFullyConnectedLayer implements Layer {
 
   private DRes<Matrix<DRes<SReal>>> v;
   private FullyConnectedLayerParameters<BigDecimal> parameters;
+  private EncodedLayerParameters encoded;
 
   public PublicFullyConnectedLayer(FullyConnectedLayerParameters<BigDecimal> parameters,
       DRes<Matrix<DRes<SReal>>> v) {
@@ -20,15 +32,48 @@ public class PublicFullyConnectedLayer implements Layer {
     this.v = v;
   }
 
+  /**
+   * Create a new layer from parameters which have already been encoded, eg. as part of an
+   * {@link InferencePlan}.
+   *
+   * @param encoded
+   * @param v
+   */
+  public PublicFullyConnectedLayer(EncodedLayerParameters encoded,
+      DRes<Matrix<DRes<SReal>>> v) {
+    this.encoded = encoded;
+    this.v = v;
+  }
+
   @Override
   public DRes<Matrix<DRes<SReal>>> buildComputation(ProtocolBuilderNumeric builder) {
     return builder.seq(r1 -> {
-      return r1.realLinAlg().add(parameters.getBias(),
-          r1.realLinAlg().mult(parameters.getWeights(), v));
-    }).seq((r2, w) -> {
-      ActivationFunctions activation = new DefaultActivationFunctions(r2);
-      return activation.activation(parameters.getActivation(), w);
-    });
+      if (encoded == null) {
+        encoded = new EncodedLayerParameters(parameters,
+            r1.getRealNumericContext().getPrecision());
+      }
+      return r1.seq(new AffineTransformation(encoded, v));
+    }).seq((r2, w) -> activate(r2, encoded, w));
+  }
+
+  /**
+   * Applies the activation function of an encoded layer, using the comparison bit length of the
+   * layer for ReLU if it has one.
+   *
+   * @param builder
+   * @param encoded
+   * @param w
+   * @return
+   */
+  static DRes<Matrix<DRes<SReal>>> activate(ProtocolBuilderNumeric builder,
+      EncodedLayerParameters encoded, Matrix<DRes<SReal>> w) {
+    ActivationFunctions activation = new DefaultActivationFunctions(builder);
+    if (encoded.getActivation() == ActivationFunctions.Type.RELU
+        && encoded.getBitLength() != null) {
+      return activation.relu(w,
+          Math.min(encoded.getBitLength(), builder.getBasicNumericContext().getMaxBitLength()));
+    }
+    return activation.activation(encoded.getActivation(), w);
   }
 
 }
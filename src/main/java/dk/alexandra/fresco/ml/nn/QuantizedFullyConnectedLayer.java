@@ -0,0 +1,104 @@
+package dk.alexandra.fresco.ml.nn;
+
+import dk.alexandra.fresco.framework.DRes;
+import dk.alexandra.fresco.framework.builder.Computation;
+import dk.alexandra.fresco.framework.builder.numeric.ProtocolBuilderNumeric;
+import dk.alexandra.fresco.framework.value.SInt;
+import dk.alexandra.fresco.lib.collections.Matrix;
+import dk.alexandra.fresco.lib.compare.gt.LessThanOrEquals;
+import dk.alexandra.fresco.lib.real.fixed.utils.Truncate;
+import dk.alexandra.fresco.ml.nn.ActivationFunctions.Type;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class represents a fully connected layer in a quantized neural network, which works
+ * directly on secret integers as described in {@link QuantizedLayerParameters}.
+ *
+ * <p>
+ * Each output is computed as an inner product with the public integer weights, which is local, and
+ * rescaled with a single truncation. The ReLU compares the rescaled outputs using a bit length
+ * derived from the weights and the bit length of the input, which is usually much smaller than the
+ * maximum bit length used for general fixed point comparisons.
+ * </p>
+ */
+public class QuantizedFullyConnectedLayer
+    implements Computation<Matrix<DRes<SInt>>, ProtocolBuilderNumeric> {
+
+  private static final int COMPARISON_SECURITY_PARAMETER = 60;
+
+  private final QuantizedLayerParameters parameters;
+  private final int inputBitLength;
+  private final DRes<Matrix<DRes<SInt>>> v;
+
+  /**
+   * Create a new quantized layer.
+   *
+   * @param parameters The parameters of the layer.
+   * @param inputBitLength A bound on the bit length of the inputs, so all inputs must be less than
+   *        2<sup>inputBitLength</sup> in absolute value.
+   * @param v The input, where each column is a sample.
+   */
+  public QuantizedFullyConnectedLayer(QuantizedLayerParameters parameters, int inputBitLength,
+      DRes<Matrix<DRes<SInt>>> v) {
+    this.parameters = parameters;
+    this.inputBitLength = inputBitLength;
+    this.v = v;
+  }
+
+  @Override
+  public DRes<Matrix<DRes<SInt>>> buildComputation(ProtocolBuilderNumeric builder) {
+    int outputBitLength = parameters.getOutputBitLength(inputBitLength);
+    if (outputBitLength + parameters.getScale() + 1 > builder.getBasicNumericContext()
+        .getMaxBitLength()) {
+      throw new IllegalArgumentException("The layer may overflow: Outputs may have "
+          + outputBitLength + " bits before activation, but the maximum bit length is "
+          + builder.getBasicNumericContext().getMaxBitLength());
+    }
+    return builder.par(par -> {
+      Matrix<DRes<SInt>> x = v.out();
+      if (x.getHeight() != parameters.getInputs()) {
+        throw new IllegalArgumentException("Input has height " + x.getHeight()
+            + " but the layer expects " + parameters.getInputs());
+      }
+      List<List<DRes<SInt>>> columns = new ArrayList<>(x.getWidth());
+      for (int j = 0; j < x.getWidth(); j++) {
+        columns.add(x.getColumn(j));
+      }
+      Matrix<DRes<SInt>> result = new Matrix<>(parameters.getOutputs(), x.getWidth(), i -> {
+        ArrayList<DRes<SInt>> row = new ArrayList<>(x.getWidth());
+        for (List<DRes<SInt>> column : columns) {
+          row.add(par.seq(seq -> {
+            DRes<SInt> innerProduct = seq.advancedNumeric()
+                .innerProductWithPublicPart(parameters.getWeights().getRow(i), column);
+            DRes<SInt> withBias = seq.numeric().add(parameters.getBias().get(i), innerProduct);
+            if (parameters.getScale() == 0) {
+              return withBias;
+            }
+            return seq.seq(new Truncate(withBias, parameters.getScale()));
+          }));
+        }
+        return row;
+      });
+      return () -> result;
+    }).par((par, y) -> {
+      if (parameters.getActivation() == Type.IDENTITY) {
+        return () -> y;
+      }
+      Matrix<DRes<SInt>> result = new Matrix<>(y.getHeight(), y.getWidth(), i -> {
+        ArrayList<DRes<SInt>> row = new ArrayList<>(y.getWidth());
+        for (DRes<SInt> entry : y.getRow(i)) {
+          row.add(par.seq(seq -> {
+            DRes<SInt> nonNegative = seq.seq(new LessThanOrEquals(outputBitLength,
+                COMPARISON_SECURITY_PARAMETER, seq.numeric().known(BigInteger.ZERO), entry));
+            return seq.numeric().mult(nonNegative, entry);
+          }));
+        }
+        return row;
+      });
+      return () -> result;
+    });
+  }
+
+}
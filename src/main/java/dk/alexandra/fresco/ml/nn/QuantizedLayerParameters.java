@@ -0,0 +1,141 @@
+package dk.alexandra.fresco.ml.nn;
+
+import dk.alexandra.fresco.lib.collections.Matrix;
+import dk.alexandra.fresco.ml.nn.ActivationFunctions.Type;
+import dk.alexandra.fresco.ml.utils.FixedPointUtils;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Parameters for a fully connected layer in a quantized neural network.
+ *
+ * <p>
+ * The values passed between layers are integers <i>x</i> representing <i>x /
+ * 2<sup>f</sup></i> for a fixed number of fractional bits <i>f</i>. The weights of a layer are
+ * small integers representing <i>w / 2<sup>s</sup></i>, where the scale <i>s</i> is chosen for
+ * each layer, and the bias is given at the scale of the products, <i>2<sup>f + s</sup></i>. After
+ * adding the bias, the result is shifted <i>s</i> bits to the right, so the output of the layer
+ * has <i>f</i> fractional bits as the input.
+ * </p>
+ */
+public class QuantizedLayerParameters {
+
+  private final Matrix<BigInteger> weights;
+  private final List<BigInteger> bias;
+  private final int scale;
+  private final Type activation;
+
+  /**
+   * Create new parameters for a quantized layer.
+   *
+   * @param weights The weights as integers.
+   * @param bias The bias at the scale of the products.
+   * @param scale The number of fractional bits of the weights.
+   * @param activationFunction The activation function. Only {@link Type#RELU} and
+   *        {@link Type#IDENTITY} are supported.
+   */
+  public QuantizedLayerParameters(Matrix<BigInteger> weights, List<BigInteger> bias, int scale,
+      Type activationFunction) {
+    if (weights.getHeight() != bias.size()) {
+      throw new IllegalArgumentException("Height of weight matrix (" + weights.getHeight()
+          + ") must be equal to height of bias vector (" + bias.size() + ")");
+    }
+    if (activationFunction != Type.RELU && activationFunction != Type.IDENTITY) {
+      throw new IllegalArgumentException(
+          "Unsupported activation function for quantized layers, " + activationFunction);
+    }
+    if (scale < 0) {
+      throw new IllegalArgumentException("Scale must be non-negative but was " + scale);
+    }
+    this.weights = weights;
+    this.bias = Collections.unmodifiableList(bias);
+    this.scale = scale;
+    this.activation = activationFunction;
+  }
+
+  /**
+   * Quantize the parameters of a fully connected layer. The weights are represented by signed
+   * integers of at most the given bit length, using the largest scale which allows the largest
+   * weight to be represented.
+   *
+   * @param parameters The parameters to quantize.
+   * @param weightBits The bit length of the weights including the sign, eg. 8 or 16.
+   * @param fractionalBits The number of fractional bits of the input to the layer.
+   * @return
+   */
+  public static QuantizedLayerParameters quantize(
+      FullyConnectedLayerParameters<BigDecimal> parameters, int weightBits, int fractionalBits) {
+    if (weightBits < 2) {
+      throw new IllegalArgumentException("Weights must have at least two bits");
+    }
+    double max = 0.0;
+    Matrix<BigDecimal> w = parameters.getWeights();
+    for (int i = 0; i < w.getHeight(); i++) {
+      for (BigDecimal x : w.getRow(i)) {
+        max = Math.max(max, Math.abs(x.doubleValue()));
+      }
+    }
+    // Largest scale s such that max * 2^s fits in weightBits - 1 bits
+    double limit = (1L << (weightBits - 1)) - 1;
+    int scale = 0;
+    while (max > 0.0 && max * Math.pow(2, scale + 1) <= limit) {
+      scale++;
+    }
+    if (max * Math.pow(2, scale) > limit) {
+      throw new IllegalArgumentException("Weights are too large to be represented with "
+          + weightBits + " bits");
+    }
+    FixedPointUtils fixedPointUtils = new FixedPointUtils();
+    return new QuantizedLayerParameters(fixedPointUtils.encode(w, scale),
+        fixedPointUtils.encode(parameters.getBias(), scale + fractionalBits).getColumn(0), scale,
+        parameters.getActivation());
+  }
+
+  public Matrix<BigInteger> getWeights() {
+    return weights;
+  }
+
+  public List<BigInteger> getBias() {
+    return bias;
+  }
+
+  public int getScale() {
+    return scale;
+  }
+
+  public Type getActivation() {
+    return activation;
+  }
+
+  public int getInputs() {
+    return weights.getWidth();
+  }
+
+  public int getOutputs() {
+    return weights.getHeight();
+  }
+
+  /**
+   * Returns a bit length <i>l</i> such that the outputs of the layer are less than
+   * 2<sup>l</sup> in absolute value when the inputs are less than 2<sup>inputBitLength</sup> in
+   * absolute value.
+   *
+   * @param inputBitLength
+   * @return
+   */
+  public int getOutputBitLength(int inputBitLength) {
+    BigInteger inputBound = BigInteger.ONE.shiftLeft(inputBitLength);
+    BigInteger max = BigInteger.ZERO;
+    for (int i = 0; i < weights.getHeight(); i++) {
+      BigInteger sum = bias.get(i).abs();
+      for (BigInteger w : weights.getRow(i)) {
+        sum = sum.add(w.abs().multiply(inputBound));
+      }
+      max = max.max(sum);
+    }
+    // Add one to account for rounding in the truncation
+    return Math.max(max.shiftRight(scale).add(BigInteger.ONE).bitLength(), 1);
+  }
+}
@@ -0,0 +1,82 @@
+package dk.alexandra.fresco.ml.nn;
+
+import dk.alexandra.fresco.framework.DRes;
+import dk.alexandra.fresco.framework.builder.Computation;
+import dk.alexandra.fresco.framework.builder.numeric.ProtocolBuilderNumeric;
+import dk.alexandra.fresco.framework.value.SInt;
+import dk.alexandra.fresco.lib.collections.Matrix;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Evaluates a quantized feed-forward neural network on secret integers. See
+ * {@link QuantizedLayerParameters} for a description of the representation.
+ *
+ * <p>
+ * The input is a matrix where each column is a sample encoded as integers with the number of
+ * fractional bits the network was quantized for, and the output has the same representation.
+ * </p>
+ */
+public class QuantizedNeuralNetwork
+    implements Computation<Matrix<DRes<SInt>>, ProtocolBuilderNumeric> {
+
+  private final List<QuantizedLayerParameters> layers;
+  private final int inputBitLength;
+  private final DRes<Matrix<DRes<SInt>>> input;
+
+  /**
+   * Create a new quantized neural network.
+   *
+   * @param layers The layers.
+   * @param inputBitLength A bound on the bit length of the input, so all inputs must be less than
+   *        2<sup>inputBitLength</sup> in absolute value.
+   * @param input The input.
+   */
+  public QuantizedNeuralNetwork(List<QuantizedLayerParameters> layers, int inputBitLength,
+      DRes<Matrix<DRes<SInt>>> input) {
+    for (int i = 1; i < layers.size(); i++) {
+      if (layers.get(i - 1).getOutputs() != layers.get(i).getInputs()) {
+        throw new IllegalArgumentException("Layer " + i + " has " + layers.get(i).getInputs()
+            + " inputs but the previous layer has " + layers.get(i - 1).getOutputs()
+            + " outputs");
+      }
+    }
+    this.layers = layers;
+    this.inputBitLength = inputBitLength;
+    this.input = input;
+  }
+
+  /**
+   * Quantize the layers of a network. All weights are represented using the given number of bits
+   * and the values passed between the layers have the given number of fractional bits.
+   *
+   * @param layers
+   * @param weightBits
+   * @param fractionalBits
+   * @return
+   */
+  public static List<QuantizedLayerParameters> quantize(
+      List<FullyConnectedLayerParameters<BigDecimal>> layers, int weightBits,
+      int fractionalBits) {
+    List<QuantizedLayerParameters> quantized = new ArrayList<>(layers.size());
+    for (FullyConnectedLayerParameters<BigDecimal> layer : layers) {
+      quantized.add(QuantizedLayerParameters.quantize(layer, weightBits, fractionalBits));
+    }
+    return quantized;
+  }
+
+  @Override
+  public DRes<Matrix<DRes<SInt>>> buildComputation(ProtocolBuilderNumeric builder) {
+    return builder.seq(seq -> {
+      DRes<Matrix<DRes<SInt>>> x = input;
+      int bitLength = inputBitLength;
+      for (QuantizedLayerParameters layer : layers) {
+        x = seq.seq(new QuantizedFullyConnectedLayer(layer, bitLength, x));
+        bitLength = layer.getOutputBitLength(bitLength);
+      }
+      return x;
+    });
+  }
+
+}
@@ -0,0 +1,174 @@
+package dk.alexandra.fresco.ml.utils;
+
+import dk.alexandra.fresco.lib.collections.Matrix;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * A sparse matrix in compressed sparse row (CSR) format. Only the non-zero entries are stored
+ * together with their column indices, and the entries of row <i>i</i> are stored at the indices
+ * from <code>rowPointers[i]</code> (inclusive) to <code>rowPointers[i + 1]</code> (exclusive).
+ *
+ * <p>
+ * This is useful for pruned models with public weights, since the zero weights then require no
+ * work at all when evaluated.
+ * </p>
+ *
+ * @param <T> The type of the entries.
+ */
+public class CsrMatrix<T> {
+
+  private final int height;
+  private final int width;
+  private final int[] rowPointers;
+  private final int[] columnIndices;
+  private final List<T> values;
+  private final T zero;
+
+  /**
+   * Create a new sparse matrix.
+   *
+   * @param height The number of rows.
+   * @param width The number of columns.
+   * @param rowPointers Array of length <code>height + 1</code> with the index of the first
+   *        non-zero entry of each row.
+   * @param columnIndices The column index of each non-zero entry.
+   * @param values The non-zero entries.
+   * @param zero The value used for the entries which are not stored.
+   */
+  public CsrMatrix(int height, int width, int[] rowPointers, int[] columnIndices, List<T> values,
+      T zero) {
+    if (rowPointers.length != height + 1) {
+      throw new IllegalArgumentException(
+          "Expected " + (height + 1) + " row pointers but got " + rowPointers.length);
+    }
+    if (columnIndices.length != values.size() || rowPointers[height] != values.size()) {
+      throw new IllegalArgumentException("Number of column indices (" + columnIndices.length
+          + ") and values (" + values.size() + ") must match the row pointers");
+    }
+    for (int i = 0; i < height; i++) {
+      if (rowPointers[i] > rowPointers[i + 1]) {
+        throw new IllegalArgumentException("Row pointers must be non-decreasing");
+      }
+    }
+    for (int column : columnIndices) {
+      if (column < 0 || column >= width) {
+        throw new IllegalArgumentException("Column index " + column + " out of bounds");
+      }
+    }
+    this.height = height;
+    this.width = width;
+    this.rowPointers = rowPointers.clone();
+    this.columnIndices = columnIndices.clone();
+    this.values = Collections.unmodifiableList(new ArrayList<>(values));
+    this.zero = zero;
+  }
+
+  /**
+   * Create a sparse matrix from a dense matrix, storing only the entries which are not zero.
+   *
+   * @param matrix The dense matrix.
+   * @param isZero Decides whether an entry is zero.
+   * @param zero The zero element.
+   * @return
+   */
+  public static <T> CsrMatrix<T> fromDense(Matrix<T> matrix, Predicate<T> isZero, T zero) {
+    int[] rowPointers = new int[matrix.getHeight() + 1];
+    List<Integer> columns = new ArrayList<>();
+    List<T> values = new ArrayList<>();
+    for (int i = 0; i < matrix.getHeight(); i++) {
+      List<T> row = matrix.getRow(i);
+      for (int j = 0; j < row.size(); j++) {
+        if (!isZero.test(row.get(j))) {
+          columns.add(j);
+          values.add(row.get(j));
+        }
+      }
+      rowPointers[i + 1] = values.size();
+    }
+    return new CsrMatrix<>(matrix.getHeight(), matrix.getWidth(), rowPointers,
+        columns.stream().mapToInt(Integer::intValue).toArray(), values, zero);
+  }
+
+  /**
+   * Create a sparse matrix from a dense matrix of decimals.
+   *
+   * @param matrix
+   * @return
+   */
+  public static CsrMatrix<BigDecimal> fromDense(Matrix<BigDecimal> matrix) {
+    return fromDense(matrix, x -> x.signum() == 0, BigDecimal.ZERO);
+  }
+
+  /**
+   * Apply a function to all non-zero entries.
+   *
+   * @param function The function.
+   * @param zero The zero element of the new matrix.
+   * @return
+   */
+  public <S> CsrMatrix<S> map(Function<T, S> function, S zero) {
+    List<S> mapped = new ArrayList<>(values.size());
+    for (T value : values) {
+      mapped.add(function.apply(value));
+    }
+    return new CsrMatrix<>(height, width, rowPointers, columnIndices, mapped, zero);
+  }
+
+  /**
+   * Returns this matrix as a dense matrix.
+   *
+   * @return
+   */
+  public Matrix<T> toDense() {
+    return new Matrix<>(height, width, i -> {
+      ArrayList<T> row = new ArrayList<>(Collections.nCopies(width, zero));
+      for (int k = rowPointers[i]; k < rowPointers[i + 1]; k++) {
+        row.set(columnIndices[k], values.get(k));
+      }
+      return row;
+    });
+  }
+
+  /**
+   * Returns the column indices of the non-zero entries in the given row in increasing order.
+   *
+   * @param row
+   * @return
+   */
+  public int[] getColumnIndices(int row) {
+    return Arrays.copyOfRange(columnIndices, rowPointers[row], rowPointers[row + 1]);
+  }
+
+  /**
+   * Returns the non-zero entries of the given row in the same order as
+   * {@link #getColumnIndices(int)}.
+   *
+   * @param row
+   * @return
+   */
+  public List<T> getValues(int row) {
+    return values.subList(rowPointers[row], rowPointers[row + 1]);
+  }
+
+  public int getHeight() {
+    return height;
+  }
+
+  public int getWidth() {
+    return width;
+  }
+
+  public int getNonZeros() {
+    return values.size();
+  }
+
+  public T getZero() {
+    return zero;
+  }
+}
@@ -0,0 +1,202 @@
+package dk.alexandra.fresco.ml.utils;
+
+import dk.alexandra.fresco.lib.collections.Matrix;
+import dk.alexandra.fresco.ml.nn.ActivationFunctions;
+import dk.alexandra.fresco.ml.nn.BatchNormParameters;
+import dk.alexandra.fresco.ml.nn.FullyConnectedLayerParameters;
+import dk.alexandra.fresco.ml.nn.InferencePlan;
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.deeplearning4j.nn.api.Layer;
+import org.deeplearning4j.nn.conf.layers.BaseLayer;
+import org.deeplearning4j.nn.conf.layers.BatchNormalization;
+import org.deeplearning4j.nn.conf.layers.DenseLayer;
+import org.deeplearning4j.nn.conf.layers.OutputLayer;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.nn.params.BatchNormalizationParamInitializer;
+import org.deeplearning4j.nn.params.DefaultParamInitializer;
+import org.deeplearning4j.util.ModelSerializer;
+import org.nd4j.linalg.activations.IActivation;
+import org.nd4j.linalg.activations.impl.ActivationIdentity;
+import org.nd4j.linalg.activations.impl.ActivationReLU;
+import org.nd4j.linalg.activations.impl.ActivationSigmoid;
+import org.nd4j.linalg.activations.impl.ActivationSoftmax;
+import org.nd4j.linalg.api.ndarray.INDArray;
+
+/**
+ * Converts a DL4J {@link MultiLayerNetwork} to layers which can be evaluated securely, reading the
+ * parameters directly from the network without exporting them to files first.
+ *
+ * <p>
+ * Dense and output layers with ReLU, sigmoid, softmax or identity activation functions are
+ * supported. DL4J stores the weights of a dense layer as an <i>n<sub>in</sub> x
+ * n<sub>out</sub></i>-matrix, so they are transposed. A batch normalisation layer is folded into
+ * the preceding dense layer, which must then have the identity as activation function.
+ * </p>
+ */
+public class Dl4jModelConverter {
+
+  /**
+   * Convert the layers of a network.
+   *
+   * @param network
+   * @return
+   */
+  public List<FullyConnectedLayerParameters<BigDecimal>> convert(MultiLayerNetwork network) {
+    List<FullyConnectedLayerParameters<BigDecimal>> layers = new ArrayList<>();
+    for (Layer layer : network.getLayers()) {
+      org.deeplearning4j.nn.conf.layers.Layer conf = layer.conf().getLayer();
+      if (conf instanceof DenseLayer || conf instanceof OutputLayer) {
+        layers.add(new FullyConnectedLayerParameters<>(
+            toMatrix(layer.getParam(DefaultParamInitializer.WEIGHT_KEY).transpose()),
+            toMatrix(layer.getParam(DefaultParamInitializer.BIAS_KEY).reshape(-1, 1)),
+            activation(((BaseLayer) conf).getActivationFn())));
+      } else if (conf instanceof BatchNormalization) {
+        if (layers.isEmpty() || layers.get(layers.size() - 1)
+            .getActivation() != ActivationFunctions.Type.IDENTITY) {
+          throw new IllegalArgumentException(
+              "Batch normalisation must follow a dense layer without activation function");
+        }
+        FullyConnectedLayerParameters<BigDecimal> previous = layers.remove(layers.size() - 1);
+        FullyConnectedLayerParameters<BigDecimal> folded =
+            new ModelOptimizer().foldBatchNorm(previous, batchNorm(layer));
+        layers.add(new FullyConnectedLayerParameters<>(folded.getWeights(), folded.getBias(),
+            activation(((BaseLayer) conf).getActivationFn())));
+      } else {
+        throw new IllegalArgumentException(
+            "Unsupported layer type, " + conf.getClass().getSimpleName());
+      }
+    }
+    return layers;
+  }
+
+  /**
+   * Convert a network and compile it to an inference plan with the given precision.
+   *
+   * @param network
+   * @param precision
+   * @return
+   */
+  public InferencePlan compile(MultiLayerNetwork network, int precision) {
+    return InferencePlan.compile(convert(network), precision);
+  }
+
+  /**
+   * Split a list of flattened parameters into layers using the layout of a network. The parameters
+   * must be ordered as by <code>network.params()</code>, ie. for each layer the weights in column
+   * major order followed by the bias. Since the weights are stored as an <i>n<sub>in</sub> x
+   * n<sub>out</sub></i>-matrix, each row of the transposed weight matrix is a consecutive block of
+   * parameters. Only dense and output layers are supported.
+   *
+   * @param network
+   * @param params
+   * @return
+   */
+  public <T> List<FullyConnectedLayerParameters<T>> unflatten(MultiLayerNetwork network,
+      List<T> params) {
+    if (params.size() != network.numParams()) {
+      throw new IllegalArgumentException("Expected " + network.numParams()
+          + " parameters but got " + params.size());
+    }
+    List<FullyConnectedLayerParameters<T>> layers = new ArrayList<>();
+    int offset = 0;
+    for (Layer layer : network.getLayers()) {
+      org.deeplearning4j.nn.conf.layers.Layer conf = layer.conf().getLayer();
+      if (!(conf instanceof DenseLayer || conf instanceof OutputLayer)) {
+        throw new IllegalArgumentException(
+            "Unsupported layer type, " + conf.getClass().getSimpleName());
+      }
+      INDArray w = layer.getParam(DefaultParamInitializer.WEIGHT_KEY);
+      final int in = w.rows();
+      final int out = w.columns();
+      final int start = offset;
+      Matrix<T> weights = new Matrix<>(out, in,
+          j -> new ArrayList<>(params.subList(start + j * in, start + (j + 1) * in)));
+      Matrix<T> bias = new Matrix<>(out, 1,
+          j -> new ArrayList<>(Collections.singletonList(params.get(start + in * out + j))));
+      layers.add(new FullyConnectedLayerParameters<>(weights, bias,
+          activation(((BaseLayer) conf).getActivationFn())));
+      offset += (int) layer.numParams();
+    }
+    return layers;
+  }
+
+  /**
+   * Convert a network saved using DL4J's <code>ModelSerializer</code>.
+   *
+   * @param file
+   * @return
+   * @throws IOException
+   */
+  public List<FullyConnectedLayerParameters<BigDecimal>> convert(File file) throws IOException {
+    return convert(ModelSerializer.restoreMultiLayerNetwork(file, false));
+  }
+
+  private BatchNormParameters batchNorm(Layer layer) {
+    BatchNormalization conf = (BatchNormalization) layer.conf().getLayer();
+    int size = (int) layer.getParam(BatchNormalizationParamInitializer.GLOBAL_MEAN).length();
+    List<BigDecimal> gamma;
+    List<BigDecimal> beta;
+    if (conf.isLockGammaBeta()) {
+      gamma = Collections.nCopies(size, BigDecimal.valueOf(conf.getGamma()));
+      beta = Collections.nCopies(size, BigDecimal.valueOf(conf.getBeta()));
+    } else {
+      gamma = toList(layer.getParam(BatchNormalizationParamInitializer.GAMMA));
+      beta = toList(layer.getParam(BatchNormalizationParamInitializer.BETA));
+    }
+    List<BigDecimal> mean = toList(layer.getParam(BatchNormalizationParamInitializer.GLOBAL_MEAN));
+    List<BigDecimal> variance;
+    double epsilon = conf.getEps();
+    if (conf.isUseLogStd()) {
+      // The standard deviation is stored as log10(sqrt(var + eps)), so 10^(2 log10(std)) is the
+      // variance with epsilon already added
+      epsilon = 0.0;
+      double[] logStd =
+          layer.getParam(BatchNormalizationParamInitializer.GLOBAL_LOG_STD).toDoubleVector();
+      variance = new ArrayList<>(size);
+      for (double x : logStd) {
+        variance.add(BigDecimal.valueOf(Math.pow(10.0, 2.0 * x)));
+      }
+    } else {
+      variance = toList(layer.getParam(BatchNormalizationParamInitializer.GLOBAL_VAR));
+    }
+    return new BatchNormParameters(gamma, beta, mean, variance, epsilon);
+  }
+
+  private ActivationFunctions.Type activation(IActivation activation) {
+    if (activation instanceof ActivationReLU) {
+      return ActivationFunctions.Type.RELU;
+    } else if (activation instanceof ActivationSigmoid) {
+      return ActivationFunctions.Type.SIGMOID;
+    } else if (activation instanceof ActivationSoftmax) {
+      return ActivationFunctions.Type.SOFTMAX;
+    } else if (activation == null || activation instanceof ActivationIdentity) {
+      return ActivationFunctions.Type.IDENTITY;
+    }
+    throw new IllegalArgumentException("Unsupported activation function, " + activation);
+  }
+
+  private Matrix<BigDecimal> toMatrix(INDArray array) {
+    double[][] values = array.toDoubleMatrix();
+    return new Matrix<>(values.length, values[0].length, i -> {
+      ArrayList<BigDecimal> row = new ArrayList<>(values[i].length);
+      for (double x : values[i]) {
+        row.add(BigDecimal.valueOf(x));
+      }
+      return row;
+    });
+  }
+
+  private List<BigDecimal> toList(INDArray array) {
+    double[] values = array.toDoubleVector();
+    List<BigDecimal> list = new ArrayList<>(values.length);
+    for (double x : values) {
+      list.add(BigDecimal.valueOf(x));
+    }
+    return list;
+  }
+}
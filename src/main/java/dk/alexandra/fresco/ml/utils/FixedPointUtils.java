@@ -0,0 +1,136 @@
+package dk.alexandra.fresco.ml.utils;
+
+import dk.alexandra.fresco.framework.DRes;
+import dk.alexandra.fresco.framework.builder.numeric.ProtocolBuilderNumeric;
+import dk.alexandra.fresco.framework.value.SInt;
+import dk.alexandra.fresco.lib.collections.Matrix;
+import dk.alexandra.fresco.lib.real.SReal;
+import dk.alexandra.fresco.lib.real.fixed.SFixed;
+import dk.alexandra.fresco.lib.real.fixed.utils.Truncate;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+
+/**
+ * Helper methods for working directly on the integer representation of fixed point numbers. This
+ * is used by computations which handle the scaling of the numbers themselves, eg. to postpone
+ * truncations.
+ */
+public class FixedPointUtils {
+
+  /**
+   * Encode a matrix of public numbers as integers with the given precision, ie. each entry is
+   * multiplied by 2<sup>precision</sup> and rounded to the nearest integer.
+   *
+   * @param matrix
+   * @param precision
+   * @return
+   */
+  public Matrix<BigInteger> encode(Matrix<BigDecimal> matrix, int precision) {
+    return new Matrix<>(matrix.getHeight(), matrix.getWidth(), i -> {
+      ArrayList<BigInteger> row = new ArrayList<>(matrix.getWidth());
+      for (BigDecimal x : matrix.getRow(i)) {
+        row.add(encode(x, precision));
+      }
+      return row;
+    });
+  }
+
+  /**
+   * Encode a public number as an integer with the given precision.
+   *
+   * @param x
+   * @param precision
+   * @return
+   */
+  public BigInteger encode(BigDecimal x, int precision) {
+    return x.multiply(new BigDecimal(BigInteger.ONE.shiftLeft(precision)))
+        .setScale(0, RoundingMode.HALF_UP).toBigIntegerExact();
+  }
+
+  /**
+   * Returns the largest precision of the entries in a matrix of fixed point numbers.
+   *
+   * @param matrix
+   * @return
+   */
+  public int maxPrecision(Matrix<DRes<SReal>> matrix) {
+    int max = 0;
+    for (int i = 0; i < matrix.getHeight(); i++) {
+      for (DRes<SReal> x : matrix.getRow(i)) {
+        max = Math.max(max, ((SFixed) x.out()).getPrecision());
+      }
+    }
+    return max;
+  }
+
+  /**
+   * Returns the integer representations of the entries of a matrix of fixed point numbers, all
+   * scaled to the given precision. Scaling up is a local operation, so this requires no
+   * communication.
+   *
+   * @param builder
+   * @param matrix
+   * @param precision
+   * @return
+   */
+  public Matrix<DRes<SInt>> toSInt(ProtocolBuilderNumeric builder, Matrix<DRes<SReal>> matrix,
+      int precision) {
+    return new Matrix<>(matrix.getHeight(), matrix.getWidth(), i -> {
+      ArrayList<DRes<SInt>> row = new ArrayList<>(matrix.getWidth());
+      for (DRes<SReal> x : matrix.getRow(i)) {
+        SFixed fixed = (SFixed) x.out();
+        if (fixed.getPrecision() > precision) {
+          throw new IllegalArgumentException("Cannot scale a number with precision "
+              + fixed.getPrecision() + " down to precision " + precision);
+        }
+        int shifts = precision - fixed.getPrecision();
+        row.add(shifts == 0 ? fixed.getSInt()
+            : builder.numeric().mult(BigInteger.ONE.shiftLeft(shifts), fixed.getSInt()));
+      }
+      return row;
+    });
+  }
+
+  /**
+   * Interprets a matrix of integers as fixed point numbers with the given precision.
+   *
+   * @param matrix
+   * @param precision
+   * @return
+   */
+  public Matrix<DRes<SReal>> fromSInt(Matrix<DRes<SInt>> matrix, int precision) {
+    return new Matrix<>(matrix.getHeight(), matrix.getWidth(), i -> {
+      ArrayList<DRes<SReal>> row = new ArrayList<>(matrix.getWidth());
+      for (DRes<SInt> x : matrix.getRow(i)) {
+        row.add(new SFixed(x, precision));
+      }
+      return row;
+    });
+  }
+
+  /**
+   * Truncates each entry of a matrix of integers by the given number of bits. All truncations are
+   * done in parallel, so the builder should be a parallel builder.
+   *
+   * @param builder
+   * @param matrix
+   * @param shifts
+   * @return
+   */
+  public Matrix<DRes<SInt>> truncate(ProtocolBuilderNumeric builder, Matrix<DRes<SInt>> matrix,
+      int shifts) {
+    if (shifts == 0) {
+      return matrix;
+    }
+    return new Matrix<>(matrix.getHeight(), matrix.getWidth(), i -> {
+      ArrayList<DRes<SInt>> row = new ArrayList<>(matrix.getWidth());
+      for (DRes<SInt> x : matrix.getRow(i)) {
+        row.add(builder.seq(new Truncate(x, shifts)));
+      }
+      return row;
+    });
+  }
+
+}
@@ -50,4 +50,46 @@ public class LinearAlgebraUtils {
 
   }
 
+  /**
+   * Create a n x m-matrix from m lists of length n, such that the i'th list becomes the i'th
+   * column of the matrix. This is useful for stacking a batch of samples into a single matrix.
+   *
+   * @param columns
+   * @return
+   */
+  public <T> Matrix<T> createMatrixFromColumns(List<? extends List<T>> columns) {
+    int height = columns.get(0).size();
+    for (List<T> column : columns) {
+      if (column.size() != height) {
+        throw new IllegalArgumentException(
+            "All columns must have the same length. Expected " + height + " but was "
+                + column.size());
+      }
+    }
+    return new Matrix<>(height, columns.size(), i -> {
+      ArrayList<T> row = new ArrayList<>(columns.size());
+      for (List<T> column : columns) {
+        row.add(column.get(i));
+      }
+      return row;
+    });
+  }
+
+  /**
+   * Create a n x m-matrix where each column is equal to the given n x 1-matrix.
+   *
+   * @param column
+   * @param width
+   * @return
+   */
+  public <T> Matrix<T> repeatColumn(Matrix<T> column, int width) {
+    if (column.getWidth() != 1) {
+      throw new IllegalArgumentException(
+          "Input must be a column vector. Has width " + column.getWidth() + " != 1.");
+    }
+    return new Matrix<>(column.getHeight(), width,
+        i -> new ArrayList<>(Collections.nCopies(width, column.getRow(i).get(0))));
+  }
+
+
 }
@@ -3,6 +3,7 @@ package dk.alexandra.fresco.ml.utils;
 import dk.alexandra.fresco.lib.collections.Matrix;
 import dk.alexandra.fresco.ml.nn.ActivationFunctions;
 import dk.alexandra.fresco.ml.nn.FullyConnectedLayerParameters;
+import dk.alexandra.fresco.ml.nn.QuantizedLayerParameters;
 import java.io.File;
 import java.io.IOException;
 import java.math.BigDecimal;
@@ -41,4 +42,24 @@ public class ModelLoader {
     return new FullyConnectedLayerParameters<>(weightsMatrix, biasVector, activationFunction);
   }
 
+  /**
+   * Load a fully connected layer and quantize it as described in
+   * {@link QuantizedLayerParameters#quantize(FullyConnectedLayerParameters, int, int)}.
+   *
+   * @param weights
+   * @param bias
+   * @param activationFunction
+   * @param weightBits
+   * @param fractionalBits
+   * @return
+   * @throws IOException
+   */
+  public QuantizedLayerParameters quantizedLayerFromCsv(File weights, File bias,
+      ActivationFunctions.Type activationFunction, int weightBits, int fractionalBits)
+      throws IOException {
+    return QuantizedLayerParameters.quantize(
+        fullyConnectedLayerFromCsv(weights, bias, activationFunction), weightBits,
+        fractionalBits);
+  }
+
 }
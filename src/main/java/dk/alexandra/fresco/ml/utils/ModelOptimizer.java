@@ -0,0 +1,284 @@
+package dk.alexandra.fresco.ml.utils;
+
+import dk.alexandra.fresco.lib.collections.Matrix;
+import dk.alexandra.fresco.ml.nn.ActivationFunctions.Type;
+import dk.alexandra.fresco.ml.nn.BatchNormParameters;
+import dk.alexandra.fresco.ml.nn.FullyConnectedLayerParameters;
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.IntFunction;
+
+/**
+ * Plaintext optimizations of a neural network with public weights. The optimizations are done
+ * once per model before any secure computation and reduce the number of neurons and layers, and
+ * hence the number of truncations and secure multiplications done on every evaluation, without
+ * changing the function computed by the network (up to rounding).
+ */
+public class ModelOptimizer {
+
+  private final MathContext mathContext;
+
+  /**
+   * Create a new optimizer where divisions and square roots are computed using the given math
+   * context.
+   *
+   * @param mathContext
+   */
+  public ModelOptimizer(MathContext mathContext) {
+    this.mathContext = mathContext;
+  }
+
+  public ModelOptimizer() {
+    this(MathContext.DECIMAL64);
+  }
+
+  /**
+   * Apply all optimizations to a network: Dead neurons are removed, and consecutive layers joined
+   * by an identity activation function are merged when this does not increase the size of the
+   * weights.
+   *
+   * @param layers
+   * @return
+   */
+  public List<FullyConnectedLayerParameters<BigDecimal>> optimize(
+      List<FullyConnectedLayerParameters<BigDecimal>> layers) {
+    return prune(mergeLinearLayers(prune(layers)));
+  }
+
+  /**
+   * Fold a batch normalisation into the layer it normalises. The activation function of the layer
+   * is applied after the normalisation.
+   *
+   * @param layer
+   * @param batchNorm
+   * @return
+   */
+  public FullyConnectedLayerParameters<BigDecimal> foldBatchNorm(
+      FullyConnectedLayerParameters<BigDecimal> layer, BatchNormParameters batchNorm) {
+    if (batchNorm.getSize() != layer.getOutputs()) {
+      throw new IllegalArgumentException("Batch normalisation has size " + batchNorm.getSize()
+          + " but the layer has " + layer.getOutputs() + " outputs");
+    }
+    Matrix<BigDecimal> weights = layer.getWeights();
+    List<BigDecimal> scales = new ArrayList<>(batchNorm.getSize());
+    for (int i = 0; i < batchNorm.getSize(); i++) {
+      double deviation = Math.sqrt(batchNorm.getVariance().get(i).doubleValue()
+          + batchNorm.getEpsilon());
+      scales.add(batchNorm.getGamma().get(i).divide(new BigDecimal(deviation), mathContext));
+    }
+    Matrix<BigDecimal> foldedWeights = new Matrix<>(weights.getHeight(), weights.getWidth(),
+        i -> {
+          ArrayList<BigDecimal> row = new ArrayList<>(weights.getWidth());
+          for (BigDecimal w : weights.getRow(i)) {
+            row.add(w.multiply(scales.get(i), mathContext));
+          }
+          return row;
+        });
+    Matrix<BigDecimal> foldedBias = column(layer.getOutputs(),
+        i -> layer.getBias().getRow(i).get(0).subtract(batchNorm.getMean().get(i))
+            .multiply(scales.get(i), mathContext).add(batchNorm.getBeta().get(i)));
+    return new FullyConnectedLayerParameters<>(foldedWeights, foldedBias, layer.getActivation());
+  }
+
+  /**
+   * Fold batch normalisations into a network. The i'th batch normalisation is applied to the
+   * outputs of the i'th layer and may be <code>null</code> if the layer is not normalised.
+   *
+   * @param layers
+   * @param batchNorms
+   * @return
+   */
+  public List<FullyConnectedLayerParameters<BigDecimal>> foldBatchNorms(
+      List<FullyConnectedLayerParameters<BigDecimal>> layers,
+      List<BatchNormParameters> batchNorms) {
+    if (layers.size() != batchNorms.size()) {
+      throw new IllegalArgumentException("Expected " + layers.size()
+          + " batch normalisations but got " + batchNorms.size());
+    }
+    List<FullyConnectedLayerParameters<BigDecimal>> folded = new ArrayList<>(layers.size());
+    for (int i = 0; i < layers.size(); i++) {
+      folded.add(batchNorms.get(i) == null ? layers.get(i)
+          : foldBatchNorm(layers.get(i), batchNorms.get(i)));
+    }
+    return folded;
+  }
+
+  /**
+   * Merge consecutive layers where the first has an identity activation function into a single
+   * layer computing <i>W<sub>2</sub>(W<sub>1</sub>x + b<sub>1</sub>) + b<sub>2</sub></i>. This
+   * saves a truncation per hidden neuron, but layers are only merged when the merged weight
+   * matrix is not larger than the two original ones, so a narrow hidden layer is kept.
+   *
+   * @param layers
+   * @return
+   */
+  public List<FullyConnectedLayerParameters<BigDecimal>> mergeLinearLayers(
+      List<FullyConnectedLayerParameters<BigDecimal>> layers) {
+    List<FullyConnectedLayerParameters<BigDecimal>> merged = new ArrayList<>(layers.size());
+    if (layers.isEmpty()) {
+      return merged;
+    }
+    FullyConnectedLayerParameters<BigDecimal> current = layers.get(0);
+    for (int k = 1; k < layers.size(); k++) {
+      FullyConnectedLayerParameters<BigDecimal> next = layers.get(k);
+      long mergedSize = (long) current.getInputs() * next.getOutputs();
+      long originalSize = (long) current.getInputs() * current.getOutputs()
+          + (long) next.getInputs() * next.getOutputs();
+      if (current.getActivation() == Type.IDENTITY && mergedSize <= originalSize) {
+        current = merge(current, next);
+      } else {
+        merged.add(current);
+        current = next;
+      }
+    }
+    merged.add(current);
+    return merged;
+  }
+
+  private FullyConnectedLayerParameters<BigDecimal> merge(
+      FullyConnectedLayerParameters<BigDecimal> first,
+      FullyConnectedLayerParameters<BigDecimal> second) {
+    Matrix<BigDecimal> w1 = first.getWeights();
+    Matrix<BigDecimal> w2 = second.getWeights();
+    Matrix<BigDecimal> weights = new Matrix<>(w2.getHeight(), w1.getWidth(), i -> {
+      ArrayList<BigDecimal> row = new ArrayList<>(w1.getWidth());
+      for (int j = 0; j < w1.getWidth(); j++) {
+        BigDecimal sum = BigDecimal.ZERO;
+        for (int l = 0; l < w1.getHeight(); l++) {
+          sum = sum.add(w2.getRow(i).get(l).multiply(w1.getRow(l).get(j)));
+        }
+        row.add(sum.round(mathContext));
+      }
+      return row;
+    });
+    Matrix<BigDecimal> bias = column(w2.getHeight(), i -> {
+      BigDecimal sum = second.getBias().getRow(i).get(0);
+      for (int l = 0; l < w1.getHeight(); l++) {
+        sum = sum.add(w2.getRow(i).get(l).multiply(first.getBias().getRow(l).get(0)));
+      }
+      return sum.round(mathContext);
+    });
+    return new FullyConnectedLayerParameters<>(weights, bias, second.getActivation());
+  }
+
+  /**
+   * Remove dead hidden neurons from a network. A hidden neuron is removed if it is not used by the
+   * next layer, eg. the corresponding column of the next weight matrix is zero, or if its weights
+   * are all zero, in which case its constant output is folded into the bias of the next layer.
+   * Neurons in layers with a softmax or argmax activation are never removed since the activation
+   * depends on all outputs, and neither are the inputs and outputs of the network.
+   *
+   * @param layers
+   * @return
+   */
+  public List<FullyConnectedLayerParameters<BigDecimal>> prune(
+      List<FullyConnectedLayerParameters<BigDecimal>> layers) {
+    List<FullyConnectedLayerParameters<BigDecimal>> pruned = new ArrayList<>(layers);
+    // Removing a neuron may leave neurons in the previous layer unused, so repeat until nothing
+    // changes
+    boolean changed = true;
+    while (changed) {
+      changed = false;
+      for (int k = 0; k < pruned.size() - 1; k++) {
+        changed |= pruneLayer(pruned, k);
+      }
+    }
+    return pruned;
+  }
+
+  private boolean pruneLayer(List<FullyConnectedLayerParameters<BigDecimal>> layers, int k) {
+    FullyConnectedLayerParameters<BigDecimal> layer = layers.get(k);
+    FullyConnectedLayerParameters<BigDecimal> next = layers.get(k + 1);
+    if (layer.getActivation() == Type.SOFTMAX || layer.getActivation() == Type.ARGMAX) {
+      return false;
+    }
+    List<Integer> keep = new ArrayList<>();
+    List<BigDecimal> nextBias = new ArrayList<>(next.getBias().getColumn(0));
+    for (int i = 0; i < layer.getOutputs(); i++) {
+      if (isZero(next.getWeights().getColumn(i))) {
+        continue;
+      }
+      if (isZero(layer.getWeights().getRow(i))) {
+        BigDecimal constant = activation(layer.getActivation(), layer.getBias().getRow(i).get(0));
+        for (int j = 0; j < nextBias.size(); j++) {
+          nextBias.set(j, nextBias.get(j)
+              .add(next.getWeights().getRow(j).get(i).multiply(constant), mathContext));
+        }
+        continue;
+      }
+      keep.add(i);
+    }
+    if (keep.size() == layer.getOutputs()) {
+      return false;
+    }
+    if (keep.isEmpty()) {
+      // The next layer is constant. Keep a single neuron which is always zero to preserve the
+      // structure of the network.
+      layers.set(k, new FullyConnectedLayerParameters<>(
+          new Matrix<>(1, layer.getInputs(), i -> zeros(layer.getInputs())),
+          column(1, i -> BigDecimal.ZERO), Type.IDENTITY));
+      layers.set(k + 1, new FullyConnectedLayerParameters<>(
+          new Matrix<>(next.getOutputs(), 1, i -> zeros(1)),
+          column(nextBias.size(), nextBias::get), next.getActivation()));
+      return layer.getOutputs() > 1 || !isZero(layer.getBias().getColumn(0))
+          || layer.getActivation() != Type.IDENTITY;
+    }
+    layers.set(k, new FullyConnectedLayerParameters<>(selectRows(layer.getWeights(), keep),
+        column(keep.size(), i -> layer.getBias().getRow(keep.get(i)).get(0)),
+        layer.getActivation()));
+    layers.set(k + 1, new FullyConnectedLayerParameters<>(selectColumns(next.getWeights(), keep),
+        column(nextBias.size(), nextBias::get), next.getActivation()));
+    return true;
+  }
+
+  private BigDecimal activation(Type type, BigDecimal x) {
+    switch (type) {
+      case IDENTITY:
+        return x;
+      case RELU:
+        return x.max(BigDecimal.ZERO);
+      case SIGMOID:
+      case SIGMOID_APPROXIMATION:
+        return new BigDecimal(1.0 / (1.0 + Math.exp(-x.doubleValue())), mathContext);
+      default:
+        throw new IllegalArgumentException("Unsupported activation function, " + type);
+    }
+  }
+
+  private static boolean isZero(List<BigDecimal> values) {
+    for (BigDecimal x : values) {
+      if (x.signum() != 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static ArrayList<BigDecimal> zeros(int n) {
+    return new ArrayList<>(Collections.nCopies(n, BigDecimal.ZERO));
+  }
+
+  private static Matrix<BigDecimal> column(int height, IntFunction<BigDecimal> entries) {
+    return new Matrix<>(height, 1,
+        i -> new ArrayList<>(Collections.singletonList(entries.apply(i))));
+  }
+
+  private static Matrix<BigDecimal> selectRows(Matrix<BigDecimal> matrix, List<Integer> rows) {
+    return new Matrix<>(rows.size(), matrix.getWidth(),
+        i -> new ArrayList<>(matrix.getRow(rows.get(i))));
+  }
+
+  private static Matrix<BigDecimal> selectColumns(Matrix<BigDecimal> matrix,
+      List<Integer> columns) {
+    return new Matrix<>(matrix.getHeight(), columns.size(), i -> {
+      ArrayList<BigDecimal> row = new ArrayList<>(columns.size());
+      for (int j : columns) {
+        row.add(matrix.getRow(i).get(j));
+      }
+      return row;
+    });
+  }
+}
@@ -0,0 +1,167 @@
+package dk.alexandra.fresco.ml.utils;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.DoubleUnaryOperator;
+import org.apache.commons.math3.fitting.PolynomialCurveFitter;
+import org.apache.commons.math3.fitting.WeightedObservedPoints;
+
+/**
+ * A piecewise polynomial function with public breakpoints and coefficients. With breakpoints
+ * <i>t<sub>1</sub> < ... < t<sub>k</sub></i>, the function is given by the polynomial
+ * <i>p<sub>0</sub></i> for <i>x < t<sub>1</sub></i>, by <i>p<sub>j</sub></i> for <i>t<sub>j</sub>
+ * &le; x < t<sub>j+1</sub></i> and by <i>p<sub>k</sub></i> for <i>x &ge; t<sub>k</sub></i>.
+ *
+ * <p>
+ * Such functions can be evaluated on secret inputs using only comparisons and multiplications, so
+ * they are used as cheap approximations of functions like the sigmoid function.
+ * </p>
+ */
+public class PiecewisePolynomial {
+
+  private static final int MAX_PIECES = 1024;
+  private static final int SAMPLES_PER_PIECE = 64;
+
+  private final List<BigDecimal> breakpoints;
+  private final List<List<BigDecimal>> coefficients;
+
+  /**
+   * Create a new piecewise polynomial.
+   *
+   * @param breakpoints The breakpoints in increasing order.
+   * @param coefficients The coefficients of each polynomial, starting with the constant term. There
+   *        must be exactly one more polynomial than there are breakpoints.
+   */
+  public PiecewisePolynomial(List<BigDecimal> breakpoints, List<List<BigDecimal>> coefficients) {
+    if (coefficients.size() != breakpoints.size() + 1) {
+      throw new IllegalArgumentException("Expected " + (breakpoints.size() + 1)
+          + " polynomials but got " + coefficients.size());
+    }
+    for (int i = 1; i < breakpoints.size(); i++) {
+      if (breakpoints.get(i - 1).compareTo(breakpoints.get(i)) >= 0) {
+        throw new IllegalArgumentException("Breakpoints must be strictly increasing");
+      }
+    }
+    this.breakpoints = Collections.unmodifiableList(new ArrayList<>(breakpoints));
+    this.coefficients = Collections.unmodifiableList(new ArrayList<>(coefficients));
+  }
+
+  public List<BigDecimal> getBreakpoints() {
+    return breakpoints;
+  }
+
+  public List<List<BigDecimal>> getCoefficients() {
+    return coefficients;
+  }
+
+  /**
+   * Returns the largest degree of the polynomials.
+   *
+   * @return
+   */
+  public int getDegree() {
+    return coefficients.stream().mapToInt(List::size).max().orElse(1) - 1;
+  }
+
+  /**
+   * Evaluate the function on a plain value.
+   *
+   * @param x
+   * @return
+   */
+  public double evaluate(double x) {
+    int piece = 0;
+    while (piece < breakpoints.size() && x >= breakpoints.get(piece).doubleValue()) {
+      piece++;
+    }
+    double result = 0.0;
+    List<BigDecimal> c = coefficients.get(piece);
+    for (int i = c.size() - 1; i >= 0; i--) {
+      result = result * x + c.get(i).doubleValue();
+    }
+    return result;
+  }
+
+  /**
+   * Create an approximation of the sigmoid function, <i>x -> 1 / (1 + e<sup>-x</sup>)</i>, using
+   * polynomials of the given degree. Outside the interval where the sigmoid is within the error
+   * bound of 0 or 1, the approximation is constant, and inside this interval it is split into
+   * equally sized pieces until each piece can be approximated within the error bound.
+   *
+   * <p>
+   * Note that the error bound does not include the rounding error from the fixed point
+   * representation used when evaluating the approximation on secret values.
+   * </p>
+   *
+   * @param degree The degree of the polynomials
+   * @param errorBound The largest allowed absolute error
+   * @return
+   */
+  public static PiecewisePolynomial sigmoid(int degree, double errorBound) {
+    if (errorBound <= 0.0 || errorBound >= 0.5) {
+      throw new IllegalArgumentException("Error bound must be in (0, 0.5) but was " + errorBound);
+    }
+    // The sigmoid is within the error bound of 0 and 1 outside [-bound, bound]
+    double bound = Math.log(1.0 / errorBound - 1.0);
+    return fit(x -> 1.0 / (1.0 + Math.exp(-x)), -bound, bound, 0.0, 1.0, degree, errorBound);
+  }
+
+  /**
+   * Fit a piecewise polynomial to the given function on the interval <i>[a, b]</i>. The
+   * approximation is constant equal to <i>left</i> below <i>a</i> and constant equal to
+   * <i>right</i> above <i>b</i>.
+   */
+  static PiecewisePolynomial fit(DoubleUnaryOperator f, double a, double b, double left,
+      double right, int degree, double errorBound) {
+    if (degree < 0) {
+      throw new IllegalArgumentException("Degree must be non-negative but was " + degree);
+    }
+    for (int pieces = 1; pieces <= MAX_PIECES; pieces++) {
+      List<BigDecimal> breakpoints = new ArrayList<>();
+      List<List<BigDecimal>> coefficients = new ArrayList<>();
+      coefficients.add(Collections.singletonList(BigDecimal.valueOf(left)));
+      double width = (b - a) / pieces;
+      boolean withinBound = true;
+      for (int i = 0; i < pieces && withinBound; i++) {
+        double start = a + i * width;
+        WeightedObservedPoints points = new WeightedObservedPoints();
+        for (int j = 0; j <= SAMPLES_PER_PIECE; j++) {
+          double x = start + j * width / SAMPLES_PER_PIECE;
+          points.add(x, f.applyAsDouble(x));
+        }
+        double[] fitted = PolynomialCurveFitter.create(degree).fit(points.toList());
+        for (int j = 0; j <= 4 * SAMPLES_PER_PIECE; j++) {
+          double x = start + j * width / (4 * SAMPLES_PER_PIECE);
+          if (Math.abs(evaluate(fitted, x) - f.applyAsDouble(x)) > errorBound) {
+            withinBound = false;
+            break;
+          }
+        }
+        breakpoints.add(BigDecimal.valueOf(start));
+        List<BigDecimal> c = new ArrayList<>(fitted.length);
+        for (double d : fitted) {
+          c.add(BigDecimal.valueOf(d));
+        }
+        coefficients.add(c);
+      }
+      if (withinBound) {
+        breakpoints.add(BigDecimal.valueOf(b));
+        coefficients.add(Collections.singletonList(BigDecimal.valueOf(right)));
+        return new PiecewisePolynomial(breakpoints, coefficients);
+      }
+    }
+    throw new IllegalArgumentException("Unable to approximate function within error bound "
+        + errorBound + " using at most " + MAX_PIECES + " pieces of degree " + degree);
+  }
+
+  private static double evaluate(double[] coefficients, double x) {
+    double result = 0.0;
+    for (int i = coefficients.length - 1; i >= 0; i--) {
+      result = result * x + coefficients[i];
+    }
+    return result;
+  }
+
+}
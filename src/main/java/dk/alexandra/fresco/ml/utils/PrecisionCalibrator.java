@@ -0,0 +1,250 @@
+package dk.alexandra.fresco.ml.utils;
+
+import dk.alexandra.fresco.lib.collections.Matrix;
+import dk.alexandra.fresco.ml.nn.ActivationFunctions.Type;
+import dk.alexandra.fresco.ml.nn.FullyConnectedLayerParameters;
+import dk.alexandra.fresco.ml.nn.InferencePlan;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Chooses a fixed point precision and a comparison bit length for each layer of a network with
+ * public weights from a calibration set, and compiles the network to an {@link InferencePlan}
+ * using these.
+ *
+ * <p>
+ * The network is evaluated in plaintext, simulating the rounding of the weights and the truncation
+ * of the outputs of each layer. Since the secure truncation may round either up or down, the
+ * network is evaluated twice, with all truncations rounding down and up respectively. The
+ * precisions are chosen greedily from the first layer to the last: Each layer gets the smallest
+ * precision such that the outputs of the network stay within the given tolerance of the exact
+ * outputs on all calibration samples, with the following layers at the maximum precision. The bit
+ * length of a layer is then chosen to bound the largest output seen on the calibration set before
+ * the activation function, with a number of extra bits of headroom for inputs outside the
+ * calibration set. A smaller precision gives less work in the truncations, and a smaller bit length
+ * gives cheaper comparisons in the ReLU.
+ * </p>
+ */
+public class PrecisionCalibrator {
+
+  private final double tolerance;
+  private final int minPrecision;
+  private final int maxPrecision;
+  private final int headroom;
+
+  /**
+   * Create a new calibrator.
+   *
+   * @param tolerance The largest allowed absolute error of the outputs of the network.
+   * @param minPrecision The smallest precision to consider.
+   * @param maxPrecision The largest precision to consider, which should be at most the default
+   *        precision used in the computations.
+   * @param headroom The number of bits added to the bit lengths seen on the calibration set.
+   */
+  public PrecisionCalibrator(double tolerance, int minPrecision, int maxPrecision,
+      int headroom) {
+    if (minPrecision < 1 || minPrecision > maxPrecision) {
+      throw new IllegalArgumentException("Invalid precision range [" + minPrecision + ", "
+          + maxPrecision + "]");
+    }
+    if (headroom < 0) {
+      throw new IllegalArgumentException("Headroom must be non-negative but was " + headroom);
+    }
+    this.tolerance = tolerance;
+    this.minPrecision = minPrecision;
+    this.maxPrecision = maxPrecision;
+    this.headroom = headroom;
+  }
+
+  /**
+   * Choose the precision and bit length of each layer and compile the network.
+   *
+   * @param layers The layers of the network.
+   * @param samples The calibration set, where each row is a sample.
+   * @return
+   */
+  public InferencePlan calibrate(List<FullyConnectedLayerParameters<BigDecimal>> layers,
+      Matrix<BigDecimal> samples) {
+    List<Integer> precisions = calibratePrecisions(layers, samples);
+    return InferencePlan.compile(layers, precisions, bitLengths(layers, samples, precisions));
+  }
+
+  /**
+   * Choose the precision of each layer.
+   *
+   * @param layers The layers of the network.
+   * @param samples The calibration set, where each row is a sample.
+   * @return
+   */
+  public List<Integer> calibratePrecisions(List<FullyConnectedLayerParameters<BigDecimal>> layers,
+      Matrix<BigDecimal> samples) {
+    List<double[][]> weights = weights(layers);
+    List<double[]> biases = biases(layers);
+    List<double[]> inputs = new ArrayList<>(samples.getHeight());
+    List<double[]> exact = new ArrayList<>(samples.getHeight());
+    for (int i = 0; i < samples.getHeight(); i++) {
+      double[] x = toArray(samples.getRow(i));
+      inputs.add(x);
+      exact.add(evaluate(layers, weights, biases, x, null, false, null));
+    }
+
+    List<Integer> precisions =
+        new ArrayList<>(Collections.nCopies(layers.size(), maxPrecision));
+    for (int l = 0; l < layers.size(); l++) {
+      for (int p = minPrecision; p < maxPrecision; p++) {
+        precisions.set(l, p);
+        if (withinTolerance(layers, weights, biases, inputs, exact, precisions)) {
+          break;
+        }
+        precisions.set(l, maxPrecision);
+      }
+    }
+    return precisions;
+  }
+
+  /**
+   * Choose the comparison bit length of each layer given the precisions.
+   *
+   * @param layers The layers of the network.
+   * @param samples The calibration set, where each row is a sample.
+   * @param precisions The precision of each layer.
+   * @return
+   */
+  public List<Integer> bitLengths(List<FullyConnectedLayerParameters<BigDecimal>> layers,
+      Matrix<BigDecimal> samples, List<Integer> precisions) {
+    List<double[][]> weights = weights(layers);
+    List<double[]> biases = biases(layers);
+    double[] max = new double[layers.size()];
+    for (int i = 0; i < samples.getHeight(); i++) {
+      evaluate(layers, weights, biases, toArray(samples.getRow(i)), precisions, true, max);
+    }
+    List<Integer> bitLengths = new ArrayList<>(layers.size());
+    for (int l = 0; l < layers.size(); l++) {
+      // Bits needed for the integer part, the fractional part and the sign
+      int integerBits = max[l] < 1.0 ? 0 : 64 - Long.numberOfLeadingZeros((long) max[l]);
+      bitLengths.add(integerBits + precisions.get(l) + headroom + 1);
+    }
+    return bitLengths;
+  }
+
+  private boolean withinTolerance(List<FullyConnectedLayerParameters<BigDecimal>> layers,
+      List<double[][]> weights, List<double[]> biases, List<double[]> inputs,
+      List<double[]> exact, List<Integer> precisions) {
+    for (boolean up : new boolean[] {false, true}) {
+      for (int i = 0; i < inputs.size(); i++) {
+        double[] y = evaluate(layers, weights, biases, inputs.get(i), precisions, up, null);
+        for (int j = 0; j < y.length; j++) {
+          if (Math.abs(y[j] - exact.get(i)[j]) > tolerance) {
+            return false;
+          }
+        }
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Evaluate the network on a single sample. If precisions are given, the rounding of the weights
+   * and the truncation of the outputs of each layer is simulated, rounding up or down as given,
+   * and if max is given, it is updated with the largest absolute output of each layer before the
+   * activation function.
+   */
+  private static double[] evaluate(List<FullyConnectedLayerParameters<BigDecimal>> layers,
+      List<double[][]> weights, List<double[]> biases, double[] x, List<Integer> precisions,
+      boolean up, double[] max) {
+    for (int l = 0; l < layers.size(); l++) {
+      double[][] w = weights.get(l);
+      double[] z = new double[w.length];
+      for (int i = 0; i < w.length; i++) {
+        double sum = biases.get(l)[i];
+        for (int j = 0; j < x.length; j++) {
+          sum += (precisions == null ? w[i][j] : round(w[i][j], precisions.get(l))) * x[j];
+        }
+        z[i] = precisions == null ? sum : truncate(sum, precisions.get(l), up);
+        if (max != null) {
+          max[l] = Math.max(max[l], Math.abs(z[i]));
+        }
+      }
+      x = activation(layers.get(l).getActivation(), z);
+    }
+    return x;
+  }
+
+  private static double[] activation(Type type, double[] z) {
+    double[] a = new double[z.length];
+    switch (type) {
+      case IDENTITY:
+        return z;
+      case RELU:
+        for (int i = 0; i < z.length; i++) {
+          a[i] = Math.max(0.0, z[i]);
+        }
+        return a;
+      case SIGMOID:
+      case SIGMOID_APPROXIMATION:
+        for (int i = 0; i < z.length; i++) {
+          a[i] = 1.0 / (1.0 + Math.exp(-z[i]));
+        }
+        return a;
+      case SOFTMAX:
+        double sum = 0.0;
+        for (int i = 0; i < z.length; i++) {
+          a[i] = Math.exp(z[i]);
+          sum += a[i];
+        }
+        for (int i = 0; i < z.length; i++) {
+          a[i] /= sum;
+        }
+        return a;
+      case ARGMAX:
+        int argmax = 0;
+        for (int i = 1; i < z.length; i++) {
+          if (z[i] > z[argmax]) {
+            argmax = i;
+          }
+        }
+        a[argmax] = 1.0;
+        return a;
+      default:
+        throw new IllegalArgumentException("Unsupported activation function, " + type);
+    }
+  }
+
+  private static List<double[][]> weights(
+      List<FullyConnectedLayerParameters<BigDecimal>> layers) {
+    LinearAlgebraUtils utils = new LinearAlgebraUtils();
+    List<double[][]> weights = new ArrayList<>(layers.size());
+    for (FullyConnectedLayerParameters<BigDecimal> layer : layers) {
+      weights.add(utils.convert(layer.getWeights()).getData());
+    }
+    return weights;
+  }
+
+  private static List<double[]> biases(List<FullyConnectedLayerParameters<BigDecimal>> layers) {
+    LinearAlgebraUtils utils = new LinearAlgebraUtils();
+    List<double[]> biases = new ArrayList<>(layers.size());
+    for (FullyConnectedLayerParameters<BigDecimal> layer : layers) {
+      biases.add(utils.convert(layer.getBias()).getColumn(0));
+    }
+    return biases;
+  }
+
+  private static double truncate(double x, int precision, boolean up) {
+    double scaled = Math.scalb(x, precision);
+    return (up ? Math.ceil(scaled) : Math.floor(scaled)) / Math.scalb(1.0, precision);
+  }
+
+  private static double round(double x, int precision) {
+    return Math.rint(Math.scalb(x, precision)) / Math.scalb(1.0, precision);
+  }
+
+  private static double[] toArray(List<BigDecimal> values) {
+    double[] array = new double[values.size()];
+    for (int i = 0; i < array.length; i++) {
+      array[i] = values.get(i).doubleValue();
+    }
+    return array;
+  }
+}
@@ -20,6 +20,7 @@ import dk.alexandra.fresco.lib.real.SReal;
 import dk.alexandra.fresco.ml.lr.LogisticRegression;
 import dk.alexandra.fresco.ml.lr.LogisticRegressionPrediction;
 import dk.alexandra.fresco.ml.lr.LogisticRegressionSGD;
+import dk.alexandra.fresco.ml.utils.PiecewisePolynomial;
 
 public class LRTests {
 
@@ -58,6 +59,44 @@ public class LRTests {
         }
     }
 
+    public static class TestLogRegPredictionApproximation<ResourcePoolT extends ResourcePool>
+            extends TestThreadFactory<ResourcePoolT, ProtocolBuilderNumeric> {
+
+        @Override
+        public TestThread<ResourcePoolT, ProtocolBuilderNumeric> next() {
+            return new TestThread<ResourcePoolT, ProtocolBuilderNumeric>() {
+
+                @Override
+                public void test() throws Exception {
+
+                    List<Double> row = Arrays.asList(1.5, 2.5);
+
+                    List<Double> b = Arrays.asList(0.1, 0.2, 0.3);
+
+                    double errorBound = 0.01;
+                    PiecewisePolynomial approximation = PiecewisePolynomial.sigmoid(2, errorBound);
+
+                    Application<BigDecimal, ProtocolBuilderNumeric> testApplication = seq -> {
+
+                        List<DRes<SReal>> secretRow =
+                                row.stream().map(i -> seq.realNumeric().known(BigDecimal.valueOf(i))).collect(Collectors.toList());
+
+                        List<DRes<SReal>> secretB =
+                                b.stream().map(i -> seq.realNumeric().known(BigDecimal.valueOf(i))).collect(Collectors.toList());
+
+                        DRes<SReal> y =
+                                new LogisticRegressionPrediction(secretRow, secretB, approximation).buildComputation(seq);
+
+                        return seq.realNumeric().open(y);
+                    };
+                    double expected = .759510916949111;
+                    BigDecimal output = runApplication(testApplication);
+                    Assert.assertTrue(Math.abs(output.doubleValue() - expected) < errorBound + 0.001);
+                }
+            };
+        }
+    }
+
     public static class TestLogRegSGDSingleEpoch<ResourcePoolT extends ResourcePool>
             extends TestThreadFactory<ResourcePoolT, ProtocolBuilderNumeric> {
 
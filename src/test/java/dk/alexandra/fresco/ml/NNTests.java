@@ -7,22 +7,44 @@ import dk.alexandra.fresco.framework.TestThreadRunner.TestThread;
 import dk.alexandra.fresco.framework.TestThreadRunner.TestThreadFactory;
 import dk.alexandra.fresco.framework.builder.numeric.ProtocolBuilderNumeric;
 import dk.alexandra.fresco.framework.sce.resources.ResourcePool;
+import dk.alexandra.fresco.framework.value.SInt;
+import dk.alexandra.fresco.framework.util.Pair;
 import dk.alexandra.fresco.lib.collections.Matrix;
 import dk.alexandra.fresco.lib.collections.MatrixUtils;
+import dk.alexandra.fresco.ml.libext.GenerateMatrixTriple;
+import dk.alexandra.fresco.ml.libext.MatrixTriple;
 import dk.alexandra.fresco.ml.nn.ActivationFunctions;
+import dk.alexandra.fresco.ml.nn.ConvolutionLayerParameters;
+import dk.alexandra.fresco.ml.nn.EncodedLayerParameters;
 import dk.alexandra.fresco.ml.nn.FullyConnectedLayerParameters;
+import dk.alexandra.fresco.ml.nn.InferencePlan;
+import dk.alexandra.fresco.ml.nn.MaxPoolingLayer;
 import dk.alexandra.fresco.ml.nn.NeuralNetwork;
+import dk.alexandra.fresco.ml.nn.NeuralNetworkSGD;
+import dk.alexandra.fresco.ml.nn.PipelinedNeuralNetwork;
+import dk.alexandra.fresco.ml.nn.PoolingLayerParameters;
+import dk.alexandra.fresco.ml.nn.PrivateFullyConnectedLayer;
+import dk.alexandra.fresco.ml.nn.PublicConvolutionLayer;
+import dk.alexandra.fresco.ml.nn.QuantizedLayerParameters;
+import dk.alexandra.fresco.ml.nn.QuantizedNeuralNetwork;
+import dk.alexandra.fresco.ml.utils.CsrMatrix;
+import dk.alexandra.fresco.ml.utils.FixedPointUtils;
 import dk.alexandra.fresco.ml.utils.LinearAlgebraUtils;
 import dk.alexandra.fresco.ml.utils.ModelLoader;
+import dk.alexandra.fresco.ml.utils.PrecisionCalibrator;
 import java.io.File;
 import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.apache.commons.math3.linear.RealMatrix;
 import org.apache.commons.math3.linear.RealVector;
 import org.junit.Assert;
 
@@ -165,6 +187,978 @@ public class NNTests {
     }
   }
 
+  public static class TestNN2layerBatched<ResourcePoolT extends ResourcePool>
+      extends TestThreadFactory<ResourcePoolT, ProtocolBuilderNumeric> {
+
+    @Override
+    public TestThread<ResourcePoolT, ProtocolBuilderNumeric> next() {
+      return new TestThread<ResourcePoolT, ProtocolBuilderNumeric>() {
+        final int tests = 3;
+
+        @Override
+        public void test() throws Exception {
+          ModelLoader loader = new ModelLoader(defaultPrecision);
+
+          List<FullyConnectedLayerParameters<BigDecimal>> layers = Arrays.asList(
+              loader.fullyConnectedLayerFromCsv(
+                  new File(
+                      getClass().getClassLoader().getResource("mnist/2-layer/0W.csv").getFile()),
+                  new File(
+                      getClass().getClassLoader().getResource("mnist/2-layer/0b.csv").getFile()),
+                  ActivationFunctions.Type.RELU),
+              loader.fullyConnectedLayerFromCsv(
+                  new File(
+                      getClass().getClassLoader().getResource("mnist/2-layer/1W.csv").getFile()),
+                  new File(
+                      getClass().getClassLoader().getResource("mnist/2-layer/1b.csv").getFile()),
+                  ActivationFunctions.Type.RELU),
+              loader.fullyConnectedLayerFromCsv(
+                  new File(
+                      getClass().getClassLoader().getResource("mnist/2-layer/2W.csv").getFile()),
+                  new File(
+                      getClass().getClassLoader().getResource("mnist/2-layer/2b.csv").getFile()),
+                  ActivationFunctions.Type.IDENTITY));
+
+          // Test data
+          Matrix<BigDecimal> testVectors = loader.matrixFromCsv(
+              new File(getClass().getClassLoader().getResource("test.csv").getFile()));
+
+          // Expected
+          Stream<String> expectedLines = Files
+              .lines(Paths.get(getClass().getClassLoader().getResource("labels.csv").getFile()));
+          List<Integer> expected =
+              expectedLines.map(s -> Integer.parseInt(s)).collect(Collectors.toList());
+          expectedLines.close();
+
+          LinearAlgebraUtils utils = new LinearAlgebraUtils();
+
+          // All samples are evaluated at once as the columns of a single input matrix
+          List<List<BigDecimal>> samples = new ArrayList<>();
+          for (int i = 0; i < tests; i++) {
+            samples.add(testVectors.getRow(i));
+          }
+          Matrix<BigDecimal> batch = utils.createMatrixFromColumns(samples);
+
+          Application<Matrix<BigDecimal>, ProtocolBuilderNumeric> testApplication = root -> {
+            DRes<Matrix<DRes<SReal>>> input = root.realLinAlg().input(batch, 1);
+            DRes<Matrix<DRes<SReal>>> out = root.seq(new NeuralNetwork(layers, input));
+            DRes<Matrix<DRes<BigDecimal>>> opened = root.realLinAlg().openMatrix(out);
+            return () -> new MatrixUtils().unwrapMatrix(opened);
+          };
+
+          Matrix<BigDecimal> output = runApplication(testApplication);
+          Assert.assertEquals(tests, output.getWidth());
+          for (int i = 0; i < tests; i++) {
+            RealVector a = utils.convert(output).getColumnVector(i);
+            Assert.assertEquals(expected.get(i).intValue(), a.getMaxIndex());
+          }
+        }
+      };
+    }
+  }
+
+  public static class TestNN2layerPipelined<ResourcePoolT extends ResourcePool>
+      extends TestThreadFactory<ResourcePoolT, ProtocolBuilderNumeric> {
+
+    @Override
+    public TestThread<ResourcePoolT, ProtocolBuilderNumeric> next() {
+      return new TestThread<ResourcePoolT, ProtocolBuilderNumeric>() {
+        final int tests = 3;
+
+        @Override
+        public void test() throws Exception {
+          ModelLoader loader = new ModelLoader(defaultPrecision);
+
+          List<FullyConnectedLayerParameters<BigDecimal>> layers = Arrays.asList(
+              loader.fullyConnectedLayerFromCsv(
+                  new File(
+                      getClass().getClassLoader().getResource("mnist/2-layer/0W.csv").getFile()),
+                  new File(
+                      getClass().getClassLoader().getResource("mnist/2-layer/0b.csv").getFile()),
+                  ActivationFunctions.Type.RELU),
+              loader.fullyConnectedLayerFromCsv(
+                  new File(
+                      getClass().getClassLoader().getResource("mnist/2-layer/1W.csv").getFile()),
+                  new File(
+                      getClass().getClassLoader().getResource("mnist/2-layer/1b.csv").getFile()),
+                  ActivationFunctions.Type.RELU),
+              loader.fullyConnectedLayerFromCsv(
+                  new File(
+                      getClass().getClassLoader().getResource("mnist/2-layer/2W.csv").getFile()),
+                  new File(
+                      getClass().getClassLoader().getResource("mnist/2-layer/2b.csv").getFile()),
+                  ActivationFunctions.Type.IDENTITY));
+
+          // Test data
+          Matrix<BigDecimal> testVectors = loader.matrixFromCsv(
+              new File(getClass().getClassLoader().getResource("test.csv").getFile()));
+
+          // Expected
+          Stream<String> expectedLines = Files
+              .lines(Paths.get(getClass().getClassLoader().getResource("labels.csv").getFile()));
+          List<Integer> expected =
+              expectedLines.map(s -> Integer.parseInt(s)).collect(Collectors.toList());
+          expectedLines.close();
+
+          LinearAlgebraUtils utils = new LinearAlgebraUtils();
+
+          Application<List<Matrix<BigDecimal>>, ProtocolBuilderNumeric> testApplication =
+              root -> {
+                List<DRes<Matrix<DRes<SReal>>>> inputs = new ArrayList<>();
+                for (int i = 0; i < tests; i++) {
+                  inputs.add(root.realLinAlg()
+                      .input(utils.createColumnVector(testVectors.getRow(i)), 1));
+                }
+                DRes<List<Matrix<DRes<SReal>>>> out =
+                    root.seq(PipelinedNeuralNetwork.withPublicWeights(layers, inputs));
+                return root.par(par -> {
+                  List<DRes<Matrix<DRes<BigDecimal>>>> opened = new ArrayList<>();
+                  for (Matrix<DRes<SReal>> o : out.out()) {
+                    opened.add(par.realLinAlg().openMatrix(() -> o));
+                  }
+                  return () -> opened.stream().map(l -> new MatrixUtils().unwrapMatrix(l))
+                      .collect(Collectors.toList());
+                });
+              };
+
+          List<Matrix<BigDecimal>> output = runApplication(testApplication);
+          Assert.assertEquals(tests, output.size());
+          for (int i = 0; i < tests; i++) {
+            RealVector a = utils.convert(output.get(i)).getColumnVector(0);
+            Assert.assertEquals(expected.get(i).intValue(), a.getMaxIndex());
+          }
+        }
+      };
+    }
+  }
+
+  public static class TestNN1layerPrivate<ResourcePoolT extends ResourcePool>
+      extends TestThreadFactory<ResourcePoolT, ProtocolBuilderNumeric> {
+
+    @Override
+    public TestThread<ResourcePoolT, ProtocolBuilderNumeric> next() {
+      return new TestThread<ResourcePoolT, ProtocolBuilderNumeric>() {
+        final int tests = 2;
+
+        @Override
+        public void test() throws Exception {
+          ModelLoader loader = new ModelLoader(defaultPrecision);
+
+          List<FullyConnectedLayerParameters<BigDecimal>> layers = Arrays.asList(
+              loader.fullyConnectedLayerFromCsv(
+                  new File(
+                      getClass().getClassLoader().getResource("mnist/1-layer/0W.csv").getFile()),
+                  new File(
+                      getClass().getClassLoader().getResource("mnist/1-layer/0b.csv").getFile()),
+                  ActivationFunctions.Type.RELU),
+              loader.fullyConnectedLayerFromCsv(
+                  new File(
+                      getClass().getClassLoader().getResource("mnist/1-layer/1W.csv").getFile()),
+                  new File(
+                      getClass().getClassLoader().getResource("mnist/1-layer/1b.csv").getFile()),
+                  ActivationFunctions.Type.IDENTITY));
+
+          // Test data
+          Matrix<BigDecimal> testVectors = loader.matrixFromCsv(
+              new File(getClass().getClassLoader().getResource("test.csv").getFile()));
+
+          // Expected
+          Stream<String> expectedLines = Files
+              .lines(Paths.get(getClass().getClassLoader().getResource("labels.csv").getFile()));
+          List<Integer> expected =
+              expectedLines.map(s -> Integer.parseInt(s)).collect(Collectors.toList());
+          expectedLines.close();
+
+          LinearAlgebraUtils utils = new LinearAlgebraUtils();
+
+          List<List<BigDecimal>> samples = new ArrayList<>();
+          for (int i = 0; i < tests; i++) {
+            samples.add(testVectors.getRow(i));
+          }
+          Matrix<BigDecimal> batch = utils.createMatrixFromColumns(samples);
+
+          Application<Matrix<BigDecimal>, ProtocolBuilderNumeric> testApplication = root -> {
+            return root.par(par -> {
+              // The model owner inputs the weights and biases secretly
+              List<DRes<Matrix<DRes<SReal>>>> model = new ArrayList<>();
+              for (FullyConnectedLayerParameters<BigDecimal> layer : layers) {
+                model.add(par.realLinAlg().input(layer.getWeights(), 1));
+                model.add(par.realLinAlg().input(layer.getBias(), 1));
+              }
+              DRes<Matrix<DRes<SReal>>> input = par.realLinAlg().input(batch, 2);
+              return () -> new Pair<>(model, input);
+            }).seq((seq, inputs) -> {
+              List<FullyConnectedLayerParameters<DRes<SReal>>> secretLayers = new ArrayList<>();
+              for (int i = 0; i < layers.size(); i++) {
+                secretLayers.add(new FullyConnectedLayerParameters<>(
+                    inputs.getFirst().get(2 * i).out(), inputs.getFirst().get(2 * i + 1).out(),
+                    layers.get(i).getActivation()));
+              }
+              DRes<Matrix<DRes<SReal>>> out =
+                  seq.seq(NeuralNetwork.withPrivateWeights(secretLayers, inputs.getSecond()));
+              DRes<Matrix<DRes<BigDecimal>>> opened = seq.realLinAlg().openMatrix(out);
+              return () -> new MatrixUtils().unwrapMatrix(opened);
+            });
+          };
+
+          Matrix<BigDecimal> output = runApplication(testApplication);
+          for (int i = 0; i < tests; i++) {
+            RealVector a = utils.convert(output).getColumnVector(i);
+            Assert.assertEquals(expected.get(i).intValue(), a.getMaxIndex());
+          }
+        }
+      };
+    }
+  }
+
+  public static class TestPrivateLayerTriple<ResourcePoolT extends ResourcePool>
+      extends TestThreadFactory<ResourcePoolT, ProtocolBuilderNumeric> {
+
+    @Override
+    public TestThread<ResourcePoolT, ProtocolBuilderNumeric> next() {
+      return new TestThread<ResourcePoolT, ProtocolBuilderNumeric>() {
+
+        @Override
+        public void test() throws Exception {
+          double[][] weights = {{1.0, -0.5, 0.25}, {-2.0, 0.75, 1.5}};
+          double[][] bias = {{0.5}, {-1.0}};
+          double[][] samples = {{1.0, -1.5}, {2.0, 0.5}, {-0.75, 3.0}};
+
+          // The layer is evaluated both with the product computed directly and with a matrix
+          // triple generated before the input is given
+          for (boolean preprocess : new boolean[] {false, true}) {
+            Application<Matrix<BigDecimal>, ProtocolBuilderNumeric> testApplication = root -> {
+              DRes<MatrixTriple> triple = preprocess
+                  ? root.seq(new GenerateMatrixTriple(2, 3, 2))
+                  : null;
+              return root.seq(seq -> {
+                DRes<Matrix<DRes<SReal>>> w = seq.realLinAlg().input(toMatrix(weights), 1);
+                DRes<Matrix<DRes<SReal>>> b = seq.realLinAlg().input(toMatrix(bias), 1);
+                DRes<Matrix<DRes<SReal>>> x = seq.realLinAlg().input(toMatrix(samples), 2);
+                return () -> new Pair<>(new Pair<>(w, b), x);
+              }).seq((seq, inputs) -> {
+                FullyConnectedLayerParameters<DRes<SReal>> parameters =
+                    new FullyConnectedLayerParameters<>(inputs.getFirst().getFirst().out(),
+                        inputs.getFirst().getSecond().out(), ActivationFunctions.Type.IDENTITY);
+                DRes<Matrix<DRes<SReal>>> out = seq.seq(
+                    new PrivateFullyConnectedLayer(parameters, inputs.getSecond(), triple));
+                DRes<Matrix<DRes<BigDecimal>>> opened = seq.realLinAlg().openMatrix(out);
+                return () -> new MatrixUtils().unwrapMatrix(opened);
+              });
+            };
+
+            Matrix<BigDecimal> output = runApplication(testApplication);
+            for (int i = 0; i < 2; i++) {
+              for (int j = 0; j < 2; j++) {
+                double expected = bias[i][0];
+                for (int k = 0; k < 3; k++) {
+                  expected += weights[i][k] * samples[k][j];
+                }
+                Assert.assertEquals(expected, output.getRow(i).get(j).doubleValue(), 0.01);
+              }
+            }
+          }
+        }
+      };
+    }
+  }
+
+  public static class TestNN1layerArgmax<ResourcePoolT extends ResourcePool>
+      extends TestThreadFactory<ResourcePoolT, ProtocolBuilderNumeric> {
+
+    @Override
+    public TestThread<ResourcePoolT, ProtocolBuilderNumeric> next() {
+      return new TestThread<ResourcePoolT, ProtocolBuilderNumeric>() {
+        final int tests = 3;
+
+        @Override
+        public void test() throws Exception {
+          ModelLoader loader = new ModelLoader(defaultPrecision);
+
+          List<FullyConnectedLayerParameters<BigDecimal>> layers = Arrays.asList(
+              loader.fullyConnectedLayerFromCsv(
+                  new File(
+                      getClass().getClassLoader().getResource("mnist/1-layer/0W.csv").getFile()),
+                  new File(
+                      getClass().getClassLoader().getResource("mnist/1-layer/0b.csv").getFile()),
+                  ActivationFunctions.Type.RELU),
+              loader.fullyConnectedLayerFromCsv(
+                  new File(
+                      getClass().getClassLoader().getResource("mnist/1-layer/1W.csv").getFile()),
+                  new File(
+                      getClass().getClassLoader().getResource("mnist/1-layer/1b.csv").getFile()),
+                  ActivationFunctions.Type.ARGMAX));
+
+          // Test data
+          Matrix<BigDecimal> testVectors = loader.matrixFromCsv(
+              new File(getClass().getClassLoader().getResource("test.csv").getFile()));
+
+          // Expected
+          Stream<String> expectedLines = Files
+              .lines(Paths.get(getClass().getClassLoader().getResource("labels.csv").getFile()));
+          List<Integer> expected =
+              expectedLines.map(s -> Integer.parseInt(s)).collect(Collectors.toList());
+          expectedLines.close();
+
+          LinearAlgebraUtils utils = new LinearAlgebraUtils();
+
+          List<List<BigDecimal>> samples = new ArrayList<>();
+          for (int i = 0; i < tests; i++) {
+            samples.add(testVectors.getRow(i));
+          }
+          Matrix<BigDecimal> batch = utils.createMatrixFromColumns(samples);
+
+          Application<Matrix<BigDecimal>, ProtocolBuilderNumeric> testApplication = root -> {
+            DRes<Matrix<DRes<SReal>>> input = root.realLinAlg().input(batch, 1);
+            DRes<Matrix<DRes<SReal>>> out = root.seq(new NeuralNetwork(layers, input));
+            DRes<Matrix<DRes<BigDecimal>>> opened = root.realLinAlg().openMatrix(out);
+            return () -> new MatrixUtils().unwrapMatrix(opened);
+          };
+
+          Matrix<BigDecimal> output = runApplication(testApplication);
+          for (int i = 0; i < tests; i++) {
+            List<BigDecimal> oneHot = output.getColumn(i);
+            for (int j = 0; j < oneHot.size(); j++) {
+              int expectedBit = expected.get(i).intValue() == j ? 1 : 0;
+              Assert.assertEquals(expectedBit, oneHot.get(j).intValue());
+            }
+          }
+        }
+      };
+    }
+  }
+
+  public static class TestNN1layerSparse<ResourcePoolT extends ResourcePool>
+      extends TestThreadFactory<ResourcePoolT, ProtocolBuilderNumeric> {
+
+    @Override
+    public TestThread<ResourcePoolT, ProtocolBuilderNumeric> next() {
+      return new TestThread<ResourcePoolT, ProtocolBuilderNumeric>() {
+        final int tests = 3;
+
+        @Override
+        public void test() throws Exception {
+          ModelLoader loader = new ModelLoader(defaultPrecision);
+
+          List<FullyConnectedLayerParameters<BigDecimal>> layers = Arrays.asList(
+              loader.fullyConnectedLayerFromCsv(
+                  new File(
+                      getClass().getClassLoader().getResource("mnist/1-layer/0W.csv").getFile()),
+                  new File(
+                      getClass().getClassLoader().getResource("mnist/1-layer/0b.csv").getFile()),
+                  ActivationFunctions.Type.RELU),
+              loader.fullyConnectedLayerFromCsv(
+                  new File(
+                      getClass().getClassLoader().getResource("mnist/1-layer/1W.csv").getFile()),
+                  new File(
+                      getClass().getClassLoader().getResource("mnist/1-layer/1b.csv").getFile()),
+                  ActivationFunctions.Type.IDENTITY));
+
+          // Prune the weights to about 10% non-zeros, and remove all weights of the first neuron
+          // of each layer so the sparse layers have an empty row
+          List<FullyConnectedLayerParameters<BigDecimal>> prunedLayers = layers.stream()
+              .map(layer -> new FullyConnectedLayerParameters<>(prune(layer.getWeights(), 0.1),
+                  layer.getBias(), layer.getActivation()))
+              .collect(Collectors.toList());
+
+          // The same layers with the weights stored in sparse format
+          List<FullyConnectedLayerParameters<BigDecimal>> sparseLayers = prunedLayers.stream()
+              .map(layer -> new FullyConnectedLayerParameters<>(
+                  CsrMatrix.fromDense(layer.getWeights()), layer.getBias(),
+                  layer.getActivation()))
+              .collect(Collectors.toList());
+          for (FullyConnectedLayerParameters<BigDecimal> layer : sparseLayers) {
+            CsrMatrix<BigDecimal> weights = layer.getSparseWeights();
+            Assert.assertEquals(0, weights.getColumnIndices(0).length);
+            Assert.assertTrue(
+                weights.getNonZeros() <= weights.getHeight() * weights.getWidth() / 5);
+          }
+
+          // Test data
+          Matrix<BigDecimal> testVectors = loader.matrixFromCsv(
+              new File(getClass().getClassLoader().getResource("test.csv").getFile()));
+
+          LinearAlgebraUtils utils = new LinearAlgebraUtils();
+
+          // The outputs of the dense and sparse networks are opened alternately
+          Application<List<Matrix<BigDecimal>>, ProtocolBuilderNumeric> testApplication = root -> {
+            List<DRes<Matrix<DRes<BigDecimal>>>> opened = new ArrayList<>();
+            for (int i = 0; i < tests; i++) {
+              DRes<Matrix<DRes<SReal>>> testVector =
+                  root.realLinAlg().input(utils.createColumnVector(testVectors.getRow(i)), 1);
+              DRes<Matrix<DRes<SReal>>> dense =
+                  root.seq(new NeuralNetwork(prunedLayers, testVector));
+              DRes<Matrix<DRes<SReal>>> sparse =
+                  root.seq(new NeuralNetwork(sparseLayers, testVector));
+              opened.add(root.realLinAlg().openMatrix(dense));
+              opened.add(root.realLinAlg().openMatrix(sparse));
+            }
+
+            return () -> opened.stream().map(l -> new MatrixUtils().unwrapMatrix(l))
+                .collect(Collectors.toList());
+          };
+
+          List<Matrix<BigDecimal>> output = runApplication(testApplication);
+          for (int i = 0; i < tests; i++) {
+            RealVector dense = utils.convert(output.get(2 * i)).getColumnVector(0);
+            RealVector sparse = utils.convert(output.get(2 * i + 1)).getColumnVector(0);
+            Assert.assertEquals(0.0, dense.getLInfDistance(sparse), 0.001);
+          }
+        }
+      };
+    }
+  }
+
+  public static class TestNNTraining<ResourcePoolT extends ResourcePool>
+      extends TestThreadFactory<ResourcePoolT, ProtocolBuilderNumeric> {
+
+    @Override
+    public TestThread<ResourcePoolT, ProtocolBuilderNumeric> next() {
+      return new TestThread<ResourcePoolT, ProtocolBuilderNumeric>() {
+
+        @Override
+        public void test() throws Exception {
+          // A network with two inputs, three hidden neurons and one output learning a linear
+          // function from two batches of four samples
+          double[][] w1 = {{0.5, -0.3}, {0.2, 0.8}, {-0.6, 0.4}};
+          double[][] b1 = {{0.1}, {-0.1}, {0.05}};
+          double[][] w2 = {{0.3, -0.5, 0.7}};
+          double[][] b2 = {{0.0}};
+          double[][][] batches = {{{1.0, 0.5, -1.0, 0.2}, {0.3, -0.7, 0.9, 1.0}},
+              {{-0.4, 0.8, 0.1, -1.0}, {0.6, 0.2, -0.5, 0.3}}};
+          double[][][] labels = new double[batches.length][1][4];
+          for (int b = 0; b < batches.length; b++) {
+            for (int j = 0; j < 4; j++) {
+              labels[b][0][j] = 0.5 * batches[b][0][j] - 0.25 * batches[b][1][j] + 0.3;
+            }
+          }
+          double rate = 0.1;
+          int epochs = 2;
+
+          Application<List<Matrix<BigDecimal>>, ProtocolBuilderNumeric> testApplication =
+              root -> root.par(par -> {
+                List<DRes<Matrix<DRes<SReal>>>> parameters = new ArrayList<>();
+                for (double[][] p : Arrays.asList(w1, b1, w2, b2)) {
+                  parameters.add(par.realLinAlg().input(toMatrix(p), 1));
+                }
+                List<DRes<Matrix<DRes<SReal>>>> inputs = new ArrayList<>();
+                List<DRes<Matrix<DRes<SReal>>>> expected = new ArrayList<>();
+                for (int b = 0; b < batches.length; b++) {
+                  inputs.add(par.realLinAlg().input(toMatrix(batches[b]), 1));
+                  expected.add(par.realLinAlg().input(toMatrix(labels[b]), 1));
+                }
+                return () -> new Pair<>(parameters, new Pair<>(inputs, expected));
+              }).seq((seq, data) -> {
+                List<DRes<Matrix<DRes<SReal>>>> p = data.getFirst();
+                List<FullyConnectedLayerParameters<DRes<SReal>>> layers = Arrays.asList(
+                    new FullyConnectedLayerParameters<>(p.get(0).out(), p.get(1).out(),
+                        ActivationFunctions.Type.RELU),
+                    new FullyConnectedLayerParameters<>(p.get(2).out(), p.get(3).out(),
+                        ActivationFunctions.Type.IDENTITY));
+                // The pre-activations are less than 2 in absolute value
+                return seq.seq(new NeuralNetworkSGD(layers, data.getSecond().getFirst(),
+                    data.getSecond().getSecond(), rate, epochs, Arrays.asList(1, 1)));
+              }).seq((seq, layers) -> {
+                List<DRes<Matrix<DRes<BigDecimal>>>> opened = new ArrayList<>();
+                for (FullyConnectedLayerParameters<DRes<SReal>> layer : layers) {
+                  opened.add(seq.realLinAlg().openMatrix(layer::getWeights));
+                  opened.add(seq.realLinAlg().openMatrix(layer::getBias));
+                }
+                return () -> opened.stream().map(l -> new MatrixUtils().unwrapMatrix(l))
+                    .collect(Collectors.toList());
+              });
+
+          // Train the same network in plaintext
+          RealMatrix[] plain = {new Array2DRowRealMatrix(w1), new Array2DRowRealMatrix(b1),
+              new Array2DRowRealMatrix(w2), new Array2DRowRealMatrix(b2)};
+          for (int e = 0; e < epochs; e++) {
+            for (int b = 0; b < batches.length; b++) {
+              RealMatrix x = new Array2DRowRealMatrix(batches[b]);
+              int size = x.getColumnDimension();
+              RealMatrix ones = new Array2DRowRealMatrix(1, size).scalarAdd(1.0);
+              RealMatrix z1 = plain[0].multiply(x).add(plain[1].multiply(ones));
+              RealMatrix a1 = z1.copy();
+              RealMatrix d1 = z1.copy();
+              for (int i = 0; i < z1.getRowDimension(); i++) {
+                for (int j = 0; j < size; j++) {
+                  a1.setEntry(i, j, Math.max(0.0, z1.getEntry(i, j)));
+                  d1.setEntry(i, j, z1.getEntry(i, j) > 0.0 ? 1.0 : 0.0);
+                }
+              }
+              RealMatrix a2 = plain[2].multiply(a1).add(plain[3].multiply(ones));
+              RealMatrix e2 = a2.subtract(new Array2DRowRealMatrix(labels[b]));
+              RealMatrix e1 = plain[2].transpose().multiply(e2);
+              for (int i = 0; i < e1.getRowDimension(); i++) {
+                for (int j = 0; j < size; j++) {
+                  e1.setEntry(i, j, e1.getEntry(i, j) * d1.getEntry(i, j));
+                }
+              }
+              double scale = rate / size;
+              plain[2] = plain[2].subtract(e2.multiply(a1.transpose()).scalarMultiply(scale));
+              plain[3] = plain[3].subtract(e2.multiply(ones.transpose()).scalarMultiply(scale));
+              plain[0] = plain[0].subtract(e1.multiply(x.transpose()).scalarMultiply(scale));
+              plain[1] = plain[1].subtract(e1.multiply(ones.transpose()).scalarMultiply(scale));
+            }
+          }
+
+          List<Matrix<BigDecimal>> output = runApplication(testApplication);
+          LinearAlgebraUtils utils = new LinearAlgebraUtils();
+          for (int i = 0; i < plain.length; i++) {
+            RealMatrix difference = utils.convert(output.get(i)).subtract(plain[i]);
+            Assert.assertEquals(0.0, difference.getNorm(), 0.001);
+          }
+        }
+      };
+    }
+  }
+
+  public static class TestConvolution<ResourcePoolT extends ResourcePool>
+      extends TestThreadFactory<ResourcePoolT, ProtocolBuilderNumeric> {
+
+    @Override
+    public TestThread<ResourcePoolT, ProtocolBuilderNumeric> next() {
+      return new TestThread<ResourcePoolT, ProtocolBuilderNumeric>() {
+
+        @Override
+        public void test() throws Exception {
+          // Two 3 x 3 images with two channels each, one kernel of size 2 x 2 x 2
+          double[] kernel = {1.0, -1.0, 0.5, 0.0, 0.25, 2.0, -0.5, 1.0};
+          double bias = 0.5;
+          int channels = 2;
+          int size = 3;
+          int kernelSize = 2;
+          double[][] images = new double[channels * size * size][2];
+          for (int i = 0; i < images.length; i++) {
+            images[i][0] = i * 0.25 - 2.0;
+            images[i][1] = (i % 5) - 1.5;
+          }
+
+          ConvolutionLayerParameters<BigDecimal> parameters = new ConvolutionLayerParameters<>(
+              toMatrix(new double[][] {kernel}), toMatrix(new double[][] {{bias}}), channels,
+              size, size, kernelSize, kernelSize, 1, 0, ActivationFunctions.Type.IDENTITY);
+
+          Application<Matrix<BigDecimal>, ProtocolBuilderNumeric> testApplication = root -> {
+            DRes<Matrix<DRes<SReal>>> input = root.realLinAlg().input(toMatrix(images), 1);
+            DRes<Matrix<DRes<SReal>>> out = root.seq(new PublicConvolutionLayer(parameters, input));
+            DRes<Matrix<DRes<BigDecimal>>> opened = root.realLinAlg().openMatrix(out);
+            return () -> new MatrixUtils().unwrapMatrix(opened);
+          };
+
+          Matrix<BigDecimal> output = runApplication(testApplication);
+          Assert.assertEquals(4, output.getHeight());
+          for (int b = 0; b < 2; b++) {
+            for (int y = 0; y < 2; y++) {
+              for (int x = 0; x < 2; x++) {
+                double expected = bias;
+                for (int c = 0; c < channels; c++) {
+                  for (int dy = 0; dy < kernelSize; dy++) {
+                    for (int dx = 0; dx < kernelSize; dx++) {
+                      expected += kernel[c * 4 + dy * 2 + dx]
+                          * images[c * 9 + (y + dy) * 3 + x + dx][b];
+                    }
+                  }
+                }
+                Assert.assertEquals(expected, output.getRow(y * 2 + x).get(b).doubleValue(),
+                    0.01);
+              }
+            }
+          }
+        }
+      };
+    }
+  }
+
+  public static class TestConvolutionStridePadding<ResourcePoolT extends ResourcePool>
+      extends TestThreadFactory<ResourcePoolT, ProtocolBuilderNumeric> {
+
+    @Override
+    public TestThread<ResourcePoolT, ProtocolBuilderNumeric> next() {
+      return new TestThread<ResourcePoolT, ProtocolBuilderNumeric>() {
+
+        @Override
+        public void test() throws Exception {
+          // Two 5 x 4 images with two channels each, two kernels of size 2 x 3 x 2 applied with
+          // stride 2 and padding 1, giving two 3 x 3 output channels
+          int channels = 2;
+          int height = 5;
+          int width = 4;
+          int kernelHeight = 3;
+          int kernelWidth = 2;
+          int stride = 2;
+          int padding = 1;
+          int outputHeight = 3;
+          int outputWidth = 3;
+          double[][] kernels = new double[2][channels * kernelHeight * kernelWidth];
+          for (int k = 0; k < kernels.length; k++) {
+            for (int i = 0; i < kernels[k].length; i++) {
+              kernels[k][i] = ((i * 7 + k * 3) % 9) * 0.25 - 1.0;
+            }
+          }
+          double[][] bias = {{0.5}, {-0.25}};
+          double[][] images = new double[channels * height * width][2];
+          for (int i = 0; i < images.length; i++) {
+            images[i][0] = i * 0.125 - 2.0;
+            images[i][1] = (i % 5) - 1.5;
+          }
+
+          ConvolutionLayerParameters<BigDecimal> parameters = new ConvolutionLayerParameters<>(
+              toMatrix(kernels), toMatrix(bias), channels, height, width, kernelHeight,
+              kernelWidth, stride, padding, ActivationFunctions.Type.IDENTITY);
+          Assert.assertEquals(outputHeight, parameters.getOutputHeight());
+          Assert.assertEquals(outputWidth, parameters.getOutputWidth());
+
+          Application<Matrix<BigDecimal>, ProtocolBuilderNumeric> testApplication = root -> {
+            DRes<Matrix<DRes<SReal>>> input = root.realLinAlg().input(toMatrix(images), 1);
+            DRes<Matrix<DRes<SReal>>> out = root.seq(new PublicConvolutionLayer(parameters, input));
+            DRes<Matrix<DRes<BigDecimal>>> opened = root.realLinAlg().openMatrix(out);
+            return () -> new MatrixUtils().unwrapMatrix(opened);
+          };
+
+          Matrix<BigDecimal> output = runApplication(testApplication);
+          Assert.assertEquals(kernels.length * outputHeight * outputWidth, output.getHeight());
+          for (int b = 0; b < 2; b++) {
+            for (int k = 0; k < kernels.length; k++) {
+              for (int y = 0; y < outputHeight; y++) {
+                for (int x = 0; x < outputWidth; x++) {
+                  double expected = bias[k][0];
+                  for (int c = 0; c < channels; c++) {
+                    for (int dy = 0; dy < kernelHeight; dy++) {
+                      for (int dx = 0; dx < kernelWidth; dx++) {
+                        int row = y * stride - padding + dy;
+                        int column = x * stride - padding + dx;
+                        // Positions outside the image are zero
+                        if (row >= 0 && row < height && column >= 0 && column < width) {
+                          expected += kernels[k][(c * kernelHeight + dy) * kernelWidth + dx]
+                              * images[(c * height + row) * width + column][b];
+                        }
+                      }
+                    }
+                  }
+                  Assert.assertEquals(expected, output.getRow(
+                      (k * outputHeight + y) * outputWidth + x).get(b).doubleValue(), 0.01);
+                }
+              }
+            }
+          }
+        }
+      };
+    }
+  }
+
+  public static class TestMaxPooling<ResourcePoolT extends ResourcePool>
+      extends TestThreadFactory<ResourcePoolT, ProtocolBuilderNumeric> {
+
+    @Override
+    public TestThread<ResourcePoolT, ProtocolBuilderNumeric> next() {
+      return new TestThread<ResourcePoolT, ProtocolBuilderNumeric>() {
+
+        @Override
+        public void test() throws Exception {
+          // One 4 x 4 image with a single channel, pooled with 2 x 2 windows
+          double[][] image = new double[16][1];
+          for (int i = 0; i < image.length; i++) {
+            image[i][0] = ((i * 7) % 16) - 8.5;
+          }
+          PoolingLayerParameters parameters = new PoolingLayerParameters(1, 4, 4, 2, 2);
+
+          Application<Matrix<BigDecimal>, ProtocolBuilderNumeric> testApplication = root -> {
+            DRes<Matrix<DRes<SReal>>> input = root.realLinAlg().input(toMatrix(image), 1);
+            DRes<Matrix<DRes<SReal>>> out = root.seq(new MaxPoolingLayer(parameters, input));
+            DRes<Matrix<DRes<BigDecimal>>> opened = root.realLinAlg().openMatrix(out);
+            return () -> new MatrixUtils().unwrapMatrix(opened);
+          };
+
+          Matrix<BigDecimal> output = runApplication(testApplication);
+          Assert.assertEquals(4, output.getHeight());
+          for (int y = 0; y < 2; y++) {
+            for (int x = 0; x < 2; x++) {
+              double expected = Double.NEGATIVE_INFINITY;
+              for (int dy = 0; dy < 2; dy++) {
+                for (int dx = 0; dx < 2; dx++) {
+                  expected = Math.max(expected, image[(2 * y + dy) * 4 + 2 * x + dx][0]);
+                }
+              }
+              Assert.assertEquals(expected, output.getRow(y * 2 + x).get(0).doubleValue(), 0.01);
+            }
+          }
+        }
+      };
+    }
+  }
+
+  /**
+   * Sets all but the given fraction of the weights with the largest magnitude to zero, as well as
+   * all weights in the first row.
+   */
+  private static Matrix<BigDecimal> prune(Matrix<BigDecimal> weights, double fraction) {
+    List<BigDecimal> magnitudes = new ArrayList<>();
+    for (int i = 0; i < weights.getHeight(); i++) {
+      for (BigDecimal weight : weights.getRow(i)) {
+        magnitudes.add(weight.abs());
+      }
+    }
+    magnitudes.sort(Collections.reverseOrder());
+    BigDecimal threshold =
+        magnitudes.get(Math.max((int) (fraction * magnitudes.size()) - 1, 0));
+    return new Matrix<>(weights.getHeight(), weights.getWidth(), i -> weights.getRow(i).stream()
+        .map(weight -> i == 0 || weight.abs().compareTo(threshold) < 0 ? BigDecimal.ZERO : weight)
+        .collect(Collectors.toCollection(ArrayList::new)));
+  }
+
+  private static Matrix<BigDecimal> toMatrix(double[][] values) {
+    return new Matrix<>(values.length, values[0].length, i -> Arrays.stream(values[i])
+        .mapToObj(BigDecimal::valueOf).collect(Collectors.toCollection(ArrayList::new)));
+  }
+
+  public static class TestInferencePlan<ResourcePoolT extends ResourcePool>
+      extends TestThreadFactory<ResourcePoolT, ProtocolBuilderNumeric> {
+
+    @Override
+    public TestThread<ResourcePoolT, ProtocolBuilderNumeric> next() {
+      return new TestThread<ResourcePoolT, ProtocolBuilderNumeric>() {
+        final int tests = 3;
+
+        @Override
+        public void test() throws Exception {
+          ModelLoader loader = new ModelLoader(defaultPrecision);
+
+          List<FullyConnectedLayerParameters<BigDecimal>> layers = Arrays.asList(
+              loader.fullyConnectedLayerFromCsv(
+                  new File(
+                      getClass().getClassLoader().getResource("mnist/1-layer/0W.csv").getFile()),
+                  new File(
+                      getClass().getClassLoader().getResource("mnist/1-layer/0b.csv").getFile()),
+                  ActivationFunctions.Type.RELU),
+              loader.fullyConnectedLayerFromCsv(
+                  new File(
+                      getClass().getClassLoader().getResource("mnist/1-layer/1W.csv").getFile()),
+                  new File(
+                      getClass().getClassLoader().getResource("mnist/1-layer/1b.csv").getFile()),
+                  ActivationFunctions.Type.IDENTITY));
+
+          // Test data
+          Matrix<BigDecimal> testVectors = loader.matrixFromCsv(
+              new File(getClass().getClassLoader().getResource("test.csv").getFile()));
+
+          // Expected
+          Stream<String> expectedLines = Files
+              .lines(Paths.get(getClass().getClassLoader().getResource("labels.csv").getFile()));
+          List<Integer> expected =
+              expectedLines.map(s -> Integer.parseInt(s)).collect(Collectors.toList());
+          expectedLines.close();
+
+          LinearAlgebraUtils utils = new LinearAlgebraUtils();
+
+          // The plan is compiled once and used for all evaluations. The weights are encoded with 16
+          // bits of precision.
+          InferencePlan plan = InferencePlan.compile(layers, 16);
+
+          Application<List<Matrix<BigDecimal>>, ProtocolBuilderNumeric> testApplication = root -> {
+            List<DRes<Matrix<DRes<BigDecimal>>>> opened = new ArrayList<>();
+            for (int i = 0; i < tests; i++) {
+              DRes<Matrix<DRes<SReal>>> testVector =
+                  root.realLinAlg().input(utils.createColumnVector(testVectors.getRow(i)), 1);
+              DRes<Matrix<DRes<SReal>>> out = root.seq(plan.evaluate(testVector));
+              opened.add(root.realLinAlg().openMatrix(out));
+            }
+
+            return () -> opened.stream().map(l -> new MatrixUtils().unwrapMatrix(l))
+                .collect(Collectors.toList());
+          };
+
+          List<Matrix<BigDecimal>> output = runApplication(testApplication);
+          for (int i = 0; i < output.size(); i++) {
+            RealVector a = utils.convert(output.get(i)).getColumnVector(0);
+            Assert.assertEquals(expected.get(i).intValue(), a.getMaxIndex());
+          }
+        }
+      };
+    }
+  }
+
+  public static class TestQuantizedNN<ResourcePoolT extends ResourcePool>
+      extends TestThreadFactory<ResourcePoolT, ProtocolBuilderNumeric> {
+
+    @Override
+    public TestThread<ResourcePoolT, ProtocolBuilderNumeric> next() {
+      return new TestThread<ResourcePoolT, ProtocolBuilderNumeric>() {
+        final int tests = 3;
+
+        @Override
+        public void test() throws Exception {
+          ModelLoader loader = new ModelLoader(defaultPrecision);
+
+          // 16 bit weights and 8 fractional bits for the values passed between layers
+          int weightBits = 16;
+          int fractionalBits = 8;
+          List<QuantizedLayerParameters> layers = Arrays.asList(
+              loader.quantizedLayerFromCsv(
+                  new File(
+                      getClass().getClassLoader().getResource("mnist/1-layer/0W.csv").getFile()),
+                  new File(
+                      getClass().getClassLoader().getResource("mnist/1-layer/0b.csv").getFile()),
+                  ActivationFunctions.Type.RELU, weightBits, fractionalBits),
+              loader.quantizedLayerFromCsv(
+                  new File(
+                      getClass().getClassLoader().getResource("mnist/1-layer/1W.csv").getFile()),
+                  new File(
+                      getClass().getClassLoader().getResource("mnist/1-layer/1b.csv").getFile()),
+                  ActivationFunctions.Type.IDENTITY, weightBits, fractionalBits));
+
+          // Test data
+          Matrix<BigDecimal> testVectors = loader.matrixFromCsv(
+              new File(getClass().getClassLoader().getResource("test.csv").getFile()));
+
+          // Expected
+          Stream<String> expectedLines = Files
+              .lines(Paths.get(getClass().getClassLoader().getResource("labels.csv").getFile()));
+          List<Integer> expected =
+              expectedLines.map(s -> Integer.parseInt(s)).collect(Collectors.toList());
+          expectedLines.close();
+
+          FixedPointUtils fixedPointUtils = new FixedPointUtils();
+
+          // Pixels are in [0, 1], so the encoded inputs are at most 2^fractionalBits
+          int inputBitLength = fractionalBits + 1;
+
+          Application<Matrix<BigInteger>, ProtocolBuilderNumeric> testApplication = root -> {
+            Matrix<BigInteger> encoded = fixedPointUtils.encode(new Matrix<>(tests,
+                testVectors.getWidth(), i -> new ArrayList<>(testVectors.getRow(i))),
+                fractionalBits);
+            Matrix<DRes<SInt>> input = new Matrix<>(testVectors.getWidth(), tests, i -> {
+              ArrayList<DRes<SInt>> row = new ArrayList<>(tests);
+              for (BigInteger x : encoded.getColumn(i)) {
+                row.add(root.numeric().input(x, 1));
+              }
+              return row;
+            });
+            DRes<Matrix<DRes<SInt>>> out =
+                root.seq(new QuantizedNeuralNetwork(layers, inputBitLength, () -> input));
+            DRes<Matrix<DRes<BigInteger>>> opened = root.collections().openMatrix(out);
+            BigInteger modulus = root.getBasicNumericContext().getModulus();
+            // Map the opened values to signed integers
+            return () -> {
+              Matrix<BigInteger> result = new MatrixUtils().unwrapMatrix(opened);
+              return new Matrix<>(result.getHeight(), result.getWidth(), i -> {
+                ArrayList<BigInteger> row = new ArrayList<>(result.getWidth());
+                for (BigInteger x : result.getRow(i)) {
+                  row.add(x.compareTo(modulus.shiftRight(1)) > 0 ? x.subtract(modulus) : x);
+                }
+                return row;
+              });
+            };
+          };
+
+          Matrix<BigInteger> output = runApplication(testApplication);
+          for (int i = 0; i < tests; i++) {
+            List<BigInteger> column = output.getColumn(i);
+            int max = 0;
+            for (int j = 1; j < column.size(); j++) {
+              if (column.get(j).compareTo(column.get(max)) > 0) {
+                max = j;
+              }
+            }
+            Assert.assertEquals(expected.get(i).intValue(), max);
+          }
+        }
+      };
+    }
+  }
+
+  public static class TestCalibratedInferencePlan<ResourcePoolT extends ResourcePool>
+      extends TestThreadFactory<ResourcePoolT, ProtocolBuilderNumeric> {
+
+    @Override
+    public TestThread<ResourcePoolT, ProtocolBuilderNumeric> next() {
+      return new TestThread<ResourcePoolT, ProtocolBuilderNumeric>() {
+
+        @Override
+        public void test() throws Exception {
+          List<FullyConnectedLayerParameters<BigDecimal>> layers = Arrays.asList(
+              new FullyConnectedLayerParameters<>(
+                  toMatrix(new double[][] {{1.0, -2.0, 0.5}, {0.25, 1.0, -1.0}}),
+                  toMatrix(new double[][] {{0.5}, {-0.25}}), ActivationFunctions.Type.RELU),
+              new FullyConnectedLayerParameters<>(toMatrix(new double[][] {{1.0, 2.0}}),
+                  toMatrix(new double[][] {{0.1}}), ActivationFunctions.Type.IDENTITY));
+
+          // Each row is a sample
+          double[][] samples =
+              {{1.0, 2.0, -1.0}, {0.5, -1.0, 1.0}, {2.0, 0.0, 3.0}, {-1.5, 0.25, 0.75}};
+          double tolerance = 0.01;
+          InferencePlan plan = new PrecisionCalibrator(tolerance, 2, 16, 2)
+              .calibrate(layers, toMatrix(samples));
+          for (EncodedLayerParameters layer : plan.getLayers()) {
+            Assert.assertTrue(layer.getPrecision() < 16);
+            Assert.assertTrue(layer.getBitLength() < 32);
+          }
+
+          Application<Matrix<BigDecimal>, ProtocolBuilderNumeric> testApplication = root -> {
+            // The samples are evaluated as a single batch with a sample in each column
+            DRes<Matrix<DRes<SReal>>> input = root.realLinAlg().input(
+                new LinearAlgebraUtils().createMatrixFromColumns(toMatrix(samples).getRows()), 1);
+            DRes<Matrix<DRes<SReal>>> out = root.seq(plan.evaluate(input));
+            DRes<Matrix<DRes<BigDecimal>>> opened = root.realLinAlg().openMatrix(out);
+            return () -> new MatrixUtils().unwrapMatrix(opened);
+          };
+
+          Matrix<BigDecimal> output = runApplication(testApplication);
+          for (int j = 0; j < samples.length; j++) {
+            double[] x = samples[j];
+            double h1 = Math.max(0.0, x[0] - 2.0 * x[1] + 0.5 * x[2] + 0.5);
+            double h2 = Math.max(0.0, 0.25 * x[0] + x[1] - x[2] - 0.25);
+            Assert.assertEquals(h1 + 2.0 * h2 + 0.1, output.getRow(0).get(j).doubleValue(),
+                2 * tolerance);
+          }
+        }
+      };
+    }
+  }
+
+  public static class TestInferencePlanLocalInput<ResourcePoolT extends ResourcePool>
+      extends TestThreadFactory<ResourcePoolT, ProtocolBuilderNumeric> {
+
+    @Override
+    public TestThread<ResourcePoolT, ProtocolBuilderNumeric> next() {
+      return new TestThread<ResourcePoolT, ProtocolBuilderNumeric>() {
+
+        @Override
+        public void test() throws Exception {
+          List<FullyConnectedLayerParameters<BigDecimal>> layers = Arrays.asList(
+              new FullyConnectedLayerParameters<>(
+                  toMatrix(new double[][] {{1.0, -2.0, 0.5}, {0.25, 1.0, -1.0}}),
+                  toMatrix(new double[][] {{0.5}, {-0.25}}), ActivationFunctions.Type.RELU),
+              new FullyConnectedLayerParameters<>(toMatrix(new double[][] {{1.0, 2.0}}),
+                  toMatrix(new double[][] {{0.1}}), ActivationFunctions.Type.IDENTITY));
+          InferencePlan plan = InferencePlan.compile(layers, 16);
+
+          // Each row is a sample
+          double[][] samples =
+              {{1.0, 2.0, -1.0}, {0.5, -1.0, 1.0}, {2.0, 0.0, 3.0}, {-1.5, 0.25, 0.75}};
+
+          Application<Matrix<BigDecimal>, ProtocolBuilderNumeric> testApplication = root -> {
+            // Only party 1 knows the samples, the other party only knows the size of the batch
+            Matrix<BigDecimal> input = root.getBasicNumericContext().getMyId() == 1
+                ? new LinearAlgebraUtils().createMatrixFromColumns(toMatrix(samples).getRows())
+                : new Matrix<>(3, samples.length,
+                    i -> new ArrayList<>(Collections.nCopies(samples.length, null)));
+            DRes<Matrix<DRes<SReal>>> out = root.seq(plan.evaluate(input, 1));
+            DRes<Matrix<DRes<BigDecimal>>> opened = root.realLinAlg().openMatrix(out);
+            return () -> new MatrixUtils().unwrapMatrix(opened);
+          };
+
+          Matrix<BigDecimal> output = runApplication(testApplication);
+          for (int j = 0; j < samples.length; j++) {
+            double[] x = samples[j];
+            double h1 = Math.max(0.0, x[0] - 2.0 * x[1] + 0.5 * x[2] + 0.5);
+            double h2 = Math.max(0.0, 0.25 * x[0] + x[1] - x[2] - 0.25);
+            Assert.assertEquals(h1 + 2.0 * h2 + 0.1, output.getRow(0).get(j).doubleValue(),
+                0.001);
+          }
+        }
+      };
+    }
+  }
+
   public static class TestFederatedLearning<ResourcePoolT extends ResourcePool>
       extends TestThreadFactory<ResourcePoolT, ProtocolBuilderNumeric> {
 
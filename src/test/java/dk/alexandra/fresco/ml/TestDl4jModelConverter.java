@@ -0,0 +1,140 @@
+package dk.alexandra.fresco.ml;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import dk.alexandra.fresco.ml.nn.ActivationFunctions.Type;
+import dk.alexandra.fresco.ml.nn.FullyConnectedLayerParameters;
+import dk.alexandra.fresco.ml.utils.Dl4jModelConverter;
+import dk.alexandra.fresco.ml.utils.LinearAlgebraUtils;
+import java.io.File;
+import java.math.BigDecimal;
+import java.util.List;
+import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.conf.layers.BatchNormalization;
+import org.deeplearning4j.nn.conf.layers.DenseLayer;
+import org.deeplearning4j.nn.conf.layers.OutputLayer;
+import org.deeplearning4j.nn.conf.layers.SubsamplingLayer;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.nn.params.BatchNormalizationParamInitializer;
+import org.deeplearning4j.util.ModelSerializer;
+import org.junit.Test;
+import org.nd4j.linalg.activations.Activation;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.lossfunctions.LossFunctions;
+
+public class TestDl4jModelConverter {
+
+  private final double[][] inputs = {{1.0, -2.0, 0.5, 0.25}, {-0.25, 3.0, 1.0, 0.0}};
+
+  @Test
+  public void testConvert() throws Exception {
+    MultiLayerNetwork network = createNetwork();
+    List<FullyConnectedLayerParameters<BigDecimal>> layers =
+        new Dl4jModelConverter().convert(network);
+
+    // The batch normalisation is folded into the first layer
+    assertEquals(2, layers.size());
+    assertEquals(4, layers.get(0).getInputs());
+    assertEquals(3, layers.get(0).getOutputs());
+    assertEquals(Type.RELU, layers.get(0).getActivation());
+    assertEquals(Type.IDENTITY, layers.get(1).getActivation());
+
+    INDArray expected = network.output(Nd4j.create(inputs));
+    for (int i = 0; i < inputs.length; i++) {
+      assertArrayEquals(expected.getRow(i).toDoubleVector(), evaluate(layers, inputs[i]), 1e-5);
+    }
+  }
+
+  @Test
+  public void testConvertLogStd() throws Exception {
+    // A large epsilon makes it visible if it is added to the variance twice
+    MultiLayerNetwork network = createNetwork(true);
+    List<FullyConnectedLayerParameters<BigDecimal>> layers =
+        new Dl4jModelConverter().convert(network);
+    INDArray expected = network.output(Nd4j.create(inputs));
+    for (int i = 0; i < inputs.length; i++) {
+      assertArrayEquals(expected.getRow(i).toDoubleVector(), evaluate(layers, inputs[i]), 1e-5);
+    }
+  }
+
+  @Test
+  public void testConvertFile() throws Exception {
+    MultiLayerNetwork network = createNetwork();
+    File file = File.createTempFile("model", ".zip");
+    file.deleteOnExit();
+    ModelSerializer.writeModel(network, file, false);
+
+    List<FullyConnectedLayerParameters<BigDecimal>> layers =
+        new Dl4jModelConverter().convert(file);
+    INDArray expected = network.output(Nd4j.create(inputs));
+    for (int i = 0; i < inputs.length; i++) {
+      assertArrayEquals(expected.getRow(i).toDoubleVector(), evaluate(layers, inputs[i]), 1e-5);
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testUnsupportedLayer() {
+    MultiLayerConfiguration conf = new NeuralNetConfiguration.Builder().seed(123).list()
+        .layer(new DenseLayer.Builder().nIn(4).nOut(4).activation(Activation.RELU).build())
+        .layer(new SubsamplingLayer.Builder().build())
+        .layer(new OutputLayer.Builder(LossFunctions.LossFunction.MSE).nIn(4).nOut(2)
+            .activation(Activation.IDENTITY).build())
+        .build();
+    MultiLayerNetwork network = new MultiLayerNetwork(conf);
+    network.init();
+    new Dl4jModelConverter().convert(network);
+  }
+
+  private static MultiLayerNetwork createNetwork() {
+    return createNetwork(false);
+  }
+
+  private static MultiLayerNetwork createNetwork(boolean useLogStd) {
+    double eps = useLogStd ? 0.5 : 1e-5;
+    MultiLayerConfiguration conf = new NeuralNetConfiguration.Builder().seed(123).list()
+        .layer(new DenseLayer.Builder().nIn(4).nOut(3).activation(Activation.IDENTITY).build())
+        .layer(new BatchNormalization.Builder().nOut(3).eps(eps).useLogStd(useLogStd)
+            .activation(Activation.RELU).build())
+        .layer(new OutputLayer.Builder(LossFunctions.LossFunction.MSE).nIn(3).nOut(2)
+            .activation(Activation.IDENTITY).build())
+        .build();
+    MultiLayerNetwork network = new MultiLayerNetwork(conf);
+    network.init();
+    // Use non-trivial statistics for the batch normalisation
+    network.getLayer(1).setParam("mean", Nd4j.create(new double[][] {{0.5, -0.25, 1.0}}));
+    double[] variance = {2.0, 0.5, 1.5};
+    if (useLogStd) {
+      // DL4J stores log10(sqrt(var + eps)) instead of the variance
+      double[] logStd = new double[variance.length];
+      for (int i = 0; i < variance.length; i++) {
+        logStd[i] = Math.log10(Math.sqrt(variance[i] + eps));
+      }
+      network.getLayer(1).setParam(BatchNormalizationParamInitializer.GLOBAL_LOG_STD,
+          Nd4j.create(new double[][] {logStd}));
+    } else {
+      network.getLayer(1).setParam("var", Nd4j.create(new double[][] {variance}));
+    }
+    network.getLayer(1).setParam("gamma", Nd4j.create(new double[][] {{1.5, 0.75, -1.0}}));
+    network.getLayer(1).setParam("beta", Nd4j.create(new double[][] {{0.1, 0.2, -0.3}}));
+    return network;
+  }
+
+  private static double[] evaluate(List<FullyConnectedLayerParameters<BigDecimal>> layers,
+      double[] x) {
+    LinearAlgebraUtils utils = new LinearAlgebraUtils();
+    for (FullyConnectedLayerParameters<BigDecimal> layer : layers) {
+      double[] y = utils.convert(layer.getWeights()).operate(x);
+      for (int i = 0; i < y.length; i++) {
+        y[i] += layer.getBias().getRow(i).get(0).doubleValue();
+        if (layer.getActivation() == Type.RELU) {
+          y[i] = Math.max(0.0, y[i]);
+        }
+      }
+      x = y;
+    }
+    return x;
+  }
+}
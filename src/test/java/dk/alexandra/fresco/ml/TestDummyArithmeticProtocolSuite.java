@@ -16,6 +16,76 @@ public class TestDummyArithmeticProtocolSuite extends AbstractDummyArithmeticTes
     runTest(new NNTests.TestNN2layer<>(), EvaluationStrategy.SEQUENTIAL, 2);
   }
 
+  @Test
+  public void test_NN_2_layers_batched() throws Exception {
+    runTest(new NNTests.TestNN2layerBatched<>(), EvaluationStrategy.SEQUENTIAL, 2);
+  }
+
+  @Test
+  public void test_NN_2_layers_pipelined() throws Exception {
+    runTest(new NNTests.TestNN2layerPipelined<>(), EvaluationStrategy.SEQUENTIAL, 2);
+  }
+
+  @Test
+  public void test_NN_1_layer_private_weights() throws Exception {
+    runTest(new NNTests.TestNN1layerPrivate<>(), EvaluationStrategy.SEQUENTIAL, 2);
+  }
+
+  @Test
+  public void test_NN_private_layer_triple() throws Exception {
+    runTest(new NNTests.TestPrivateLayerTriple<>(), EvaluationStrategy.SEQUENTIAL, 2);
+  }
+
+  @Test
+  public void test_NN_1_layer_argmax() throws Exception {
+    runTest(new NNTests.TestNN1layerArgmax<>(), EvaluationStrategy.SEQUENTIAL, 2);
+  }
+
+  @Test
+  public void test_NN_1_layer_sparse() throws Exception {
+    runTest(new NNTests.TestNN1layerSparse<>(), EvaluationStrategy.SEQUENTIAL, 2);
+  }
+
+  @Test
+  public void test_NN_training() throws Exception {
+    runTest(new NNTests.TestNNTraining<>(), EvaluationStrategy.SEQUENTIAL, 2);
+  }
+
+  @Test
+  public void test_NN_convolution() throws Exception {
+    runTest(new NNTests.TestConvolution<>(), EvaluationStrategy.SEQUENTIAL, 2);
+  }
+
+  @Test
+  public void test_NN_convolution_stride_padding() throws Exception {
+    runTest(new NNTests.TestConvolutionStridePadding<>(), EvaluationStrategy.SEQUENTIAL, 2);
+  }
+
+  @Test
+  public void test_NN_max_pooling() throws Exception {
+    runTest(new NNTests.TestMaxPooling<>(), EvaluationStrategy.SEQUENTIAL, 2);
+  }
+
+  @Test
+  public void test_NN_inference_plan() throws Exception {
+    runTest(new NNTests.TestInferencePlan<>(), EvaluationStrategy.SEQUENTIAL, 2);
+  }
+
+  @Test
+  public void test_NN_quantized() throws Exception {
+    runTest(new NNTests.TestQuantizedNN<>(), EvaluationStrategy.SEQUENTIAL, 2);
+  }
+
+  @Test
+  public void test_NN_calibrated_inference_plan() throws Exception {
+    runTest(new NNTests.TestCalibratedInferencePlan<>(), EvaluationStrategy.SEQUENTIAL, 2);
+  }
+
+  @Test
+  public void test_NN_inference_plan_local_input() throws Exception {
+    runTest(new NNTests.TestInferencePlanLocalInput<>(), EvaluationStrategy.SEQUENTIAL, 2);
+  }
+
   @Test
   public void test_Federated_Learning() throws Exception {
     runTest(new NNTests.TestFederatedLearning<>(), EvaluationStrategy.SEQUENTIAL,
@@ -27,6 +97,11 @@ public class TestDummyArithmeticProtocolSuite extends AbstractDummyArithmeticTes
     runTest(new LRTests.TestLogRegPrediction<>(), EvaluationStrategy.SEQUENTIAL, 2);
   }
 
+  @Test
+  public void test_logistic_regression_prediction_approximation() throws Exception {
+    runTest(new LRTests.TestLogRegPredictionApproximation<>(), EvaluationStrategy.SEQUENTIAL, 2);
+  }
+
   @Test
   public void test_logistic_regression_sgd_single_epoch() throws Exception {
     runTest(new LRTests.TestLogRegSGDSingleEpoch<>(), EvaluationStrategy.SEQUENTIAL, 2);
@@ -0,0 +1,150 @@
+package dk.alexandra.fresco.ml;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import dk.alexandra.fresco.lib.collections.Matrix;
+import dk.alexandra.fresco.ml.nn.ActivationFunctions.Type;
+import dk.alexandra.fresco.ml.nn.BatchNormParameters;
+import dk.alexandra.fresco.ml.nn.FullyConnectedLayerParameters;
+import dk.alexandra.fresco.ml.utils.LinearAlgebraUtils;
+import dk.alexandra.fresco.ml.utils.ModelOptimizer;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Test;
+
+public class TestModelOptimizer {
+
+  private final ModelOptimizer optimizer = new ModelOptimizer();
+
+  private final double[][] inputs = {{1.0, -2.0, 0.5}, {-0.25, 3.0, 1.0}, {0.0, 0.0, 0.0}};
+
+  @Test
+  public void testFoldBatchNorm() {
+    FullyConnectedLayerParameters<BigDecimal> layer =
+        layer(new double[][] {{1.0, -2.0, 0.5}, {0.25, 1.0, -1.0}}, new double[] {0.5, -0.25},
+            Type.RELU);
+    BatchNormParameters batchNorm = new BatchNormParameters(list(2.0, 0.5), list(0.1, -0.3),
+        list(0.2, -1.0), list(4.0, 0.25), 0.0);
+
+    FullyConnectedLayerParameters<BigDecimal> folded = optimizer.foldBatchNorm(layer, batchNorm);
+    for (double[] x : inputs) {
+      double[] y = affine(layer, x);
+      double[] expected = new double[y.length];
+      for (int i = 0; i < y.length; i++) {
+        expected[i] =
+            Math.max(0.0, batchNorm.getGamma().get(i).doubleValue()
+                * (y[i] - batchNorm.getMean().get(i).doubleValue())
+                / Math.sqrt(batchNorm.getVariance().get(i).doubleValue())
+                + batchNorm.getBeta().get(i).doubleValue());
+      }
+      assertArrayEquals(expected, evaluate(Collections.singletonList(folded), x), 1e-9);
+    }
+  }
+
+  @Test
+  public void testMergeLinearLayers() {
+    List<FullyConnectedLayerParameters<BigDecimal>> layers = Arrays.asList(
+        layer(new double[][] {{1.0, -2.0, 0.5}, {0.25, 1.0, -1.0}}, new double[] {0.5, -0.25},
+            Type.IDENTITY),
+        layer(new double[][] {{1.0, 2.0}, {-1.0, 0.5}}, new double[] {0.1, 0.2}, Type.RELU),
+        layer(new double[][] {{1.0, 1.0}}, new double[] {0.0}, Type.IDENTITY));
+
+    List<FullyConnectedLayerParameters<BigDecimal>> merged =
+        optimizer.mergeLinearLayers(layers);
+    assertEquals(2, merged.size());
+    assertEquals(3, merged.get(0).getInputs());
+    assertEquals(Type.RELU, merged.get(0).getActivation());
+    for (double[] x : inputs) {
+      assertArrayEquals(evaluate(layers, x), evaluate(merged, x), 1e-9);
+    }
+  }
+
+  @Test
+  public void testMergeKeepsNarrowLayer() {
+    // A 3 -> 1 -> 3 network is cheaper than the merged 3 -> 3 network
+    List<FullyConnectedLayerParameters<BigDecimal>> layers = Arrays.asList(
+        layer(new double[][] {{1.0, -2.0, 0.5}}, new double[] {0.5}, Type.IDENTITY),
+        layer(new double[][] {{1.0}, {2.0}, {3.0}}, new double[] {0.1, 0.2, 0.3},
+            Type.IDENTITY));
+    assertEquals(2, optimizer.mergeLinearLayers(layers).size());
+  }
+
+  @Test
+  public void testPrune() {
+    // The second hidden neuron has zero weights and the third is not used by the output layer
+    List<FullyConnectedLayerParameters<BigDecimal>> layers = Arrays.asList(
+        layer(new double[][] {{1.0, -2.0, 0.5}, {0.0, 0.0, 0.0}, {0.25, 1.0, -1.0}},
+            new double[] {0.5, 1.5, -0.25}, Type.RELU),
+        layer(new double[][] {{1.0, 2.0, 0.0}, {-1.0, 0.5, 0.0}}, new double[] {0.1, 0.2},
+            Type.IDENTITY));
+
+    List<FullyConnectedLayerParameters<BigDecimal>> pruned = optimizer.prune(layers);
+    assertEquals(1, pruned.get(0).getOutputs());
+    assertEquals(1, pruned.get(1).getInputs());
+    for (double[] x : inputs) {
+      assertArrayEquals(evaluate(layers, x), evaluate(pruned, x), 1e-9);
+    }
+  }
+
+  @Test
+  public void testOptimize() {
+    List<FullyConnectedLayerParameters<BigDecimal>> layers = Arrays.asList(
+        layer(new double[][] {{1.0, -2.0, 0.5}, {0.0, 0.0, 0.0}, {0.25, 1.0, -1.0}},
+            new double[] {0.5, 1.5, -0.25}, Type.IDENTITY),
+        layer(new double[][] {{1.0, 2.0, 0.0}, {-1.0, 0.5, 1.0}}, new double[] {0.1, 0.2},
+            Type.IDENTITY));
+
+    List<FullyConnectedLayerParameters<BigDecimal>> optimized = optimizer.optimize(layers);
+    assertEquals(1, optimized.size());
+    for (double[] x : inputs) {
+      assertArrayEquals(evaluate(layers, x), evaluate(optimized, x), 1e-9);
+    }
+  }
+
+  private static double[] evaluate(List<FullyConnectedLayerParameters<BigDecimal>> layers,
+      double[] x) {
+    for (FullyConnectedLayerParameters<BigDecimal> layer : layers) {
+      x = affine(layer, x);
+      if (layer.getActivation() == Type.RELU) {
+        for (int i = 0; i < x.length; i++) {
+          x[i] = Math.max(0.0, x[i]);
+        }
+      }
+    }
+    return x;
+  }
+
+  private static double[] affine(FullyConnectedLayerParameters<BigDecimal> layer, double[] x) {
+    LinearAlgebraUtils utils = new LinearAlgebraUtils();
+    double[] y = utils.convert(layer.getWeights()).operate(x);
+    for (int i = 0; i < y.length; i++) {
+      y[i] += layer.getBias().getRow(i).get(0).doubleValue();
+    }
+    return y;
+  }
+
+  private static FullyConnectedLayerParameters<BigDecimal> layer(double[][] weights,
+      double[] bias, Type activation) {
+    Matrix<BigDecimal> w = new Matrix<>(weights.length, weights[0].length, i -> {
+      ArrayList<BigDecimal> row = new ArrayList<>();
+      for (double d : weights[i]) {
+        row.add(BigDecimal.valueOf(d));
+      }
+      return row;
+    });
+    Matrix<BigDecimal> b = new LinearAlgebraUtils().createColumnVector(list(bias));
+    return new FullyConnectedLayerParameters<>(w, b, activation);
+  }
+
+  private static List<BigDecimal> list(double... values) {
+    List<BigDecimal> list = new ArrayList<>();
+    for (double d : values) {
+      list.add(BigDecimal.valueOf(d));
+    }
+    return list;
+  }
+}
@@ -8,10 +8,16 @@ import dk.alexandra.fresco.framework.builder.numeric.ProtocolBuilderNumeric;
 import dk.alexandra.fresco.framework.sce.resources.ResourcePool;
 import dk.alexandra.fresco.framework.util.ExceptionConverter;
 import dk.alexandra.fresco.framework.value.SInt;
+import dk.alexandra.fresco.lib.real.SReal;
+import dk.alexandra.fresco.ml.dtrees.utils.BoostedTreesParser;
 import dk.alexandra.fresco.ml.dtrees.utils.ModelLoader;
+import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.stream.Collectors;
 import org.junit.Assert;
 
 public class DecisionTreeComputationTests {
@@ -19,10 +25,51 @@ public class DecisionTreeComputationTests {
   private static Application<BigInteger, ProtocolBuilderNumeric> constructApp(
       DecisionTreeModel treeModel,
       List<BigInteger> featureVectorOpen) {
+    return constructApp(treeModel, featureVectorOpen, FeatureSelection.ONE_HOT);
+  }
+
+  private static Application<BigInteger, ProtocolBuilderNumeric> constructApp(
+      DecisionTreeModel treeModel,
+      List<BigInteger> featureVectorOpen,
+      FeatureSelection featureSelection) {
     int treeInputPartyId = 1;
     int featureInputPartyId = 2;
     int featureVectorSize = featureVectorOpen.size();
 
+    return root -> {
+      DRes<DecisionTreeModelClosed> closedModelD;
+      if (root.getBasicNumericContext().getMyId() == treeInputPartyId) {
+        InputDecisionTree f = new InputDecisionTree(treeModel, featureVectorSize, treeInputPartyId,
+            featureSelection);
+        closedModelD = root.par(f);
+      } else {
+        InputDecisionTreeAsReceiver f = featureSelection == FeatureSelection.PUBLIC
+            ? new InputDecisionTreeAsReceiver(treeModel.getDepth(),
+            treeModel.getFeatureIndexes().stream().flatMap(List::stream)
+                .map(BigInteger::intValueExact).collect(Collectors.toList()), treeInputPartyId)
+            : new InputDecisionTreeAsReceiver(treeModel.getDepth(), featureVectorSize,
+                treeInputPartyId, featureSelection);
+        closedModelD = root.par(f);
+      }
+
+      DRes<List<DRes<SInt>>> featureVectorD = root.collections().closeList(featureVectorOpen,
+          featureInputPartyId);
+      return root.seq(seq -> {
+        DecisionTreeModelClosed model = closedModelD.out();
+        List<DRes<SInt>> features = featureVectorD.out();
+        DRes<SInt> category = seq.seq(new EvaluateDecisionTree(model, features));
+        return seq.numeric().open(category);
+      });
+    };
+  }
+
+  private static Application<List<BigInteger>, ProtocolBuilderNumeric> constructBatchApp(
+      DecisionTreeModel treeModel,
+      List<List<BigInteger>> featureVectorsOpen) {
+    int treeInputPartyId = 1;
+    int featureInputPartyId = 2;
+    int featureVectorSize = featureVectorsOpen.get(0).size();
+
     return root -> {
       DRes<DecisionTreeModelClosed> closedModelD;
       if (root.getBasicNumericContext().getMyId() == treeInputPartyId) {
@@ -34,12 +81,111 @@ public class DecisionTreeComputationTests {
         closedModelD = root.par(f);
       }
 
+      List<DRes<List<DRes<SInt>>>> featureVectorsD = new ArrayList<>(featureVectorsOpen.size());
+      for (List<BigInteger> featureVectorOpen : featureVectorsOpen) {
+        featureVectorsD.add(root.collections().closeList(featureVectorOpen, featureInputPartyId));
+      }
+      return root.seq(seq -> {
+        DecisionTreeModelClosed model = closedModelD.out();
+        List<List<DRes<SInt>>> features = featureVectorsD.stream().map(DRes::out)
+            .collect(Collectors.toList());
+        DRes<List<DRes<SInt>>> categories =
+            seq.seq(new EvaluateDecisionTreeBatch(model, features));
+        return seq.collections().openList(categories);
+      }).seq((seq, opened) -> () -> opened.stream().map(DRes::out).collect(Collectors.toList()));
+    };
+  }
+
+  private static Application<BigInteger, ProtocolBuilderNumeric> constructForestApp(
+      List<DecisionTreeModel> treeModels,
+      List<BigInteger> featureVectorOpen,
+      EvaluateRandomForest.Aggregation aggregation,
+      List<BigInteger> classes) {
+    int treeInputPartyId = 1;
+    int featureInputPartyId = 2;
+    int featureVectorSize = featureVectorOpen.size();
+
+    return root -> {
+      List<DRes<DecisionTreeModelClosed>> closedModelsD = new ArrayList<>(treeModels.size());
+      for (DecisionTreeModel treeModel : treeModels) {
+        if (root.getBasicNumericContext().getMyId() == treeInputPartyId) {
+          closedModelsD.add(root.par(
+              new InputDecisionTree(treeModel, featureVectorSize, treeInputPartyId)));
+        } else {
+          closedModelsD.add(root.par(new InputDecisionTreeAsReceiver(treeModel.getDepth(),
+              featureVectorSize, treeInputPartyId)));
+        }
+      }
+
       DRes<List<DRes<SInt>>> featureVectorD = root.collections().closeList(featureVectorOpen,
           featureInputPartyId);
       return root.seq(seq -> {
-        DecisionTreeModelClosed model = closedModelD.out();
+        List<DecisionTreeModelClosed> models = closedModelsD.stream().map(DRes::out)
+            .collect(Collectors.toList());
         List<DRes<SInt>> features = featureVectorD.out();
-        DRes<SInt> category = seq.seq(new EvaluateDecisionTree(model, features));
+        DRes<SInt> category = seq.seq(new EvaluateRandomForest(models, features, aggregation,
+            classes));
+        return seq.numeric().open(category);
+      });
+    };
+  }
+
+  private static Application<BigDecimal, ProtocolBuilderNumeric> constructBoostedApp(
+      BoostedTreesModel model,
+      List<BigInteger> featureVectorOpen,
+      EvaluateBoostedTrees.Output output) {
+    int treeInputPartyId = 1;
+    int featureInputPartyId = 2;
+    int featureVectorSize = model.getNumFeatures();
+
+    return root -> {
+      List<DRes<DecisionTreeModelClosed>> closedModelsD = new ArrayList<>();
+      for (DecisionTreeModel treeModel : model.getTrees()) {
+        if (root.getBasicNumericContext().getMyId() == treeInputPartyId) {
+          closedModelsD.add(root.par(
+              new InputDecisionTree(treeModel, featureVectorSize, treeInputPartyId)));
+        } else {
+          closedModelsD.add(root.par(new InputDecisionTreeAsReceiver(treeModel.getDepth(),
+              featureVectorSize, treeInputPartyId)));
+        }
+      }
+
+      DRes<List<DRes<SInt>>> featureVectorD = root.collections().closeList(featureVectorOpen,
+          featureInputPartyId);
+      return root.seq(seq -> {
+        List<DecisionTreeModelClosed> trees = closedModelsD.stream().map(DRes::out)
+            .collect(Collectors.toList());
+        DRes<SReal> result = seq.seq(new EvaluateBoostedTrees(trees, featureVectorD.out(),
+            model.getPrecision(), output));
+        return seq.realNumeric().open(result);
+      });
+    };
+  }
+
+  private static Application<BigInteger, ProtocolBuilderNumeric> constructSparseApp(
+      SparseDecisionTreeModel treeModel,
+      List<BigInteger> featureVectorOpen) {
+    int treeInputPartyId = 1;
+    int featureInputPartyId = 2;
+    int featureVectorSize = featureVectorOpen.size();
+
+    return root -> {
+      DRes<SparseDecisionTreeModelClosed> closedModelD;
+      if (root.getBasicNumericContext().getMyId() == treeInputPartyId) {
+        closedModelD = root.par(
+            new InputSparseDecisionTree(treeModel, featureVectorSize, treeInputPartyId));
+      } else {
+        // The receiver only knows the public bounds of the tree
+        closedModelD = root.par(new InputSparseDecisionTreeAsReceiver(
+            treeModel.getNumberNodes(), treeModel.getNumberLeaves(), treeModel.getPathLength(),
+            featureVectorSize, treeInputPartyId));
+      }
+
+      DRes<List<DRes<SInt>>> featureVectorD = root.collections().closeList(featureVectorOpen,
+          featureInputPartyId);
+      return root.seq(seq -> {
+        DRes<SInt> category = seq.seq(
+            new EvaluateSparseDecisionTree(closedModelD.out(), featureVectorD.out()));
         return seq.numeric().open(category);
       });
     };
@@ -158,4 +304,230 @@ public class DecisionTreeComputationTests {
       };
     }
   }
+
+  public static class TestEvaluateDecisionTreeIndexBits<ResourcePoolT extends ResourcePool>
+      extends TestThreadFactory<ResourcePoolT, ProtocolBuilderNumeric> {
+
+    @Override
+    public TestThread<ResourcePoolT, ProtocolBuilderNumeric> next() {
+      return new TestThread<ResourcePoolT, ProtocolBuilderNumeric>() {
+        @Override
+        public void test() {
+          ModelLoader loader = new ModelLoader();
+          DecisionTreeModel treeModel = ExceptionConverter.safe(() -> loader.modelFromFile(loader
+              .getFile("dtrees/models/test-model-4.csv")), "Couldn't read model");
+          List<List<BigInteger>> featureVectorsOpen = Arrays.asList(
+              TestUtils.toBitIntegers(new int[]{0, 5, 4, 9, 12, 17, 11}),
+              TestUtils.toBitIntegers(new int[]{20, 1, 14, 3, 7, 2, 30}),
+              TestUtils.toBitIntegers(new int[]{0, 0, 0, 0, 0, 0, 0}));
+
+          // 7 features are selected using 3 index bits per node
+          Assert.assertEquals(3, FeatureSelection.INDEX_BITS.selectionLength(7));
+          for (List<BigInteger> currentFeatureVectorOpen : featureVectorsOpen) {
+            BigInteger actual = runApplication(constructApp(treeModel, currentFeatureVectorOpen,
+                FeatureSelection.INDEX_BITS));
+            PlainEvaluator evaluator = new PlainEvaluator(treeModel);
+            BigInteger expected = evaluator.evaluate(currentFeatureVectorOpen);
+            Assert.assertEquals(expected, actual);
+          }
+        }
+      };
+    }
+  }
+
+  public static class TestEvaluateDecisionTreePublicFeatures<ResourcePoolT extends ResourcePool>
+      extends TestThreadFactory<ResourcePoolT, ProtocolBuilderNumeric> {
+
+    @Override
+    public TestThread<ResourcePoolT, ProtocolBuilderNumeric> next() {
+      return new TestThread<ResourcePoolT, ProtocolBuilderNumeric>() {
+        @Override
+        public void test() {
+          ModelLoader loader = new ModelLoader();
+          DecisionTreeModel treeModel = ExceptionConverter.safe(() -> loader.modelFromFile(loader
+              .getFile("dtrees/models/test-model-4.csv")), "Couldn't read model");
+          List<List<BigInteger>> featureVectorsOpen = Arrays.asList(
+              TestUtils.toBitIntegers(new int[]{0, 5, 4, 9, 12, 17, 11}),
+              TestUtils.toBitIntegers(new int[]{20, 1, 14, 3, 7, 2, 30}),
+              TestUtils.toBitIntegers(new int[]{0, 0, 0, 0, 0, 0, 0}));
+
+          for (List<BigInteger> currentFeatureVectorOpen : featureVectorsOpen) {
+            BigInteger actual = runApplication(constructApp(treeModel, currentFeatureVectorOpen,
+                FeatureSelection.PUBLIC));
+            PlainEvaluator evaluator = new PlainEvaluator(treeModel);
+            BigInteger expected = evaluator.evaluate(currentFeatureVectorOpen);
+            Assert.assertEquals(expected, actual);
+          }
+        }
+      };
+    }
+  }
+
+  public static class TestEvaluateDecisionTreeBatch<ResourcePoolT extends ResourcePool>
+      extends TestThreadFactory<ResourcePoolT, ProtocolBuilderNumeric> {
+
+    @Override
+    public TestThread<ResourcePoolT, ProtocolBuilderNumeric> next() {
+      return new TestThread<ResourcePoolT, ProtocolBuilderNumeric>() {
+        @Override
+        public void test() {
+          ModelLoader loader = new ModelLoader();
+          DecisionTreeModel treeModel = ExceptionConverter
+              .safe(() -> loader.modelFromFile(loader.getFile("dtrees/models/test-model-2.csv")),
+                  "Couldn't read model");
+          List<List<BigInteger>> featureVectorsOpen = Arrays.asList(
+              TestUtils.toBitIntegers(new int[]{1, 1, 0, 1, 0, 0, 0}),
+              TestUtils.toBitIntegers(new int[]{1, 1, 0, 0, 0, 0, 0}),
+              TestUtils.toBitIntegers(new int[]{1, 0, 0, 0, 1, 0, 0}),
+              TestUtils.toBitIntegers(new int[]{1, 0, 0, 0, 0, 0, 0}),
+              TestUtils.toBitIntegers(new int[]{0, 0, 1, 0, 0, 1, 0}),
+              TestUtils.toBitIntegers(new int[]{0, 0, 1, 0, 0, 0, 0}),
+              TestUtils.toBitIntegers(new int[]{0, 0, 0, 0, 0, 0, 1}),
+              TestUtils.toBitIntegers(new int[]{0, 0, 0, 0, 0, 0, 0}));
+
+          List<BigInteger> actual = runApplication(constructBatchApp(treeModel,
+              featureVectorsOpen));
+          PlainEvaluator evaluator = new PlainEvaluator(treeModel);
+          Assert.assertEquals(featureVectorsOpen.size(), actual.size());
+          for (int i = 0; i < featureVectorsOpen.size(); i++) {
+            Assert.assertEquals(evaluator.evaluate(featureVectorsOpen.get(i)), actual.get(i));
+          }
+        }
+      };
+    }
+  }
+
+  public static class TestEvaluateRandomForest<ResourcePoolT extends ResourcePool>
+      extends TestThreadFactory<ResourcePoolT, ProtocolBuilderNumeric> {
+
+    @Override
+    public TestThread<ResourcePoolT, ProtocolBuilderNumeric> next() {
+      return new TestThread<ResourcePoolT, ProtocolBuilderNumeric>() {
+        @Override
+        public void test() {
+          ModelLoader loader = new ModelLoader();
+          List<DecisionTreeModel> treeModels = new ArrayList<>();
+          for (String name : Arrays.asList("test-model-2.csv", "test-model-3.csv",
+              "test-model-2.csv", "test-model-4.csv")) {
+            treeModels.add(ExceptionConverter.safe(
+                () -> loader.modelFromFile(loader.getFile("dtrees/models/" + name)),
+                "Couldn't read model"));
+          }
+          List<BigInteger> classes = new ArrayList<>();
+          for (int i = 1; i <= 32; i++) {
+            classes.add(BigInteger.valueOf(i));
+          }
+          List<List<BigInteger>> featureVectorsOpen = Arrays.asList(
+              TestUtils.toBitIntegers(new int[]{1, 1, 0, 1, 0, 0, 0}),
+              TestUtils.toBitIntegers(new int[]{0, 5, 4, 9, 12, 17, 11}));
+
+          for (List<BigInteger> currentFeatureVectorOpen : featureVectorsOpen) {
+            List<BigInteger> outputs = new ArrayList<>(treeModels.size());
+            for (DecisionTreeModel treeModel : treeModels) {
+              outputs.add(new PlainEvaluator(treeModel).evaluate(currentFeatureVectorOpen));
+            }
+            BigInteger expectedSum = outputs.stream().reduce(BigInteger.ZERO, BigInteger::add);
+            BigInteger expectedVote = classes.get(0);
+            for (BigInteger c : classes) {
+              if (Collections.frequency(outputs, c) > Collections.frequency(outputs,
+                  expectedVote)) {
+                expectedVote = c;
+              }
+            }
+
+            BigInteger sum = runApplication(constructForestApp(treeModels,
+                currentFeatureVectorOpen, EvaluateRandomForest.Aggregation.SUM, null));
+            Assert.assertEquals(expectedSum, sum);
+            BigInteger vote = runApplication(constructForestApp(treeModels,
+                currentFeatureVectorOpen, EvaluateRandomForest.Aggregation.MAJORITY_VOTE,
+                classes));
+            Assert.assertEquals(expectedVote, vote);
+          }
+        }
+      };
+    }
+  }
+
+  public static class TestEvaluateBoostedTrees<ResourcePoolT extends ResourcePool>
+      extends TestThreadFactory<ResourcePoolT, ProtocolBuilderNumeric> {
+
+    @Override
+    public TestThread<ResourcePoolT, ProtocolBuilderNumeric> next() {
+      return new TestThread<ResourcePoolT, ProtocolBuilderNumeric>() {
+        @Override
+        public void test() {
+          ModelLoader loader = new ModelLoader();
+          BoostedTreesModel model = ExceptionConverter.safe(
+              () -> new BoostedTreesParser(8).parseXgboost(
+                  loader.getFile("dtrees/models/xgboost-model.json"), 0.1),
+              "Couldn't read model");
+          double[][] samples = {{1.0, 0.75, -0.5}, {2.0, 0.0, 0.0}, {1.0, 0.5, 3.0}};
+          double[] margins = {0.45, 0.0, 0.2};
+
+          for (int i = 0; i < samples.length; i++) {
+            List<BigInteger> features = TestBoostedTreesParser.encode(samples[i]);
+            BigDecimal margin = runApplication(constructBoostedApp(model, features,
+                EvaluateBoostedTrees.Output.MARGIN));
+            Assert.assertEquals(margins[i], margin.doubleValue(), 0.01);
+            BigDecimal prediction = runApplication(constructBoostedApp(model, features,
+                EvaluateBoostedTrees.Output.CLASS));
+            Assert.assertEquals(margins[i] > 0 ? 1.0 : 0.0, prediction.doubleValue(), 0.0);
+          }
+          BigDecimal probability = runApplication(constructBoostedApp(model,
+              TestBoostedTreesParser.encode(samples[0]), EvaluateBoostedTrees.Output.PROBABILITY));
+          Assert.assertEquals(1.0 / (1.0 + Math.exp(-margins[0])), probability.doubleValue(),
+              0.01);
+        }
+      };
+    }
+  }
+
+  public static class TestEvaluateSparseDecisionTree<ResourcePoolT extends ResourcePool>
+      extends TestThreadFactory<ResourcePoolT, ProtocolBuilderNumeric> {
+
+    @Override
+    public TestThread<ResourcePoolT, ProtocolBuilderNumeric> next() {
+      return new TestThread<ResourcePoolT, ProtocolBuilderNumeric>() {
+        @Override
+        public void test() {
+          ModelLoader loader = new ModelLoader();
+          DecisionTreeModel completeModel = ExceptionConverter
+              .safe(() -> loader.modelFromFile(loader.getFile("dtrees/models/test-model-4.csv")),
+                  "Couldn't read model");
+          // The same tree where the right subtree of the root is a single leaf
+          List<BigInteger> categories = new ArrayList<>(completeModel.getCategories());
+          for (int i = 16; i < 32; i++) {
+            categories.set(i, BigInteger.valueOf(42));
+          }
+          DecisionTreeModel prunedModel = new DecisionTreeModel(completeModel.getDepth(),
+              completeModel.getNumOriginalFeatures(), completeModel.getFeatureIndexes(),
+              completeModel.getWeights(), categories);
+          List<List<BigInteger>> featureVectorsOpen = Arrays.asList(
+              TestUtils.toBitIntegers(new int[]{0, 5, 4, 9, 12, 17, 11}),
+              TestUtils.toBitIntegers(new int[]{9, 0, 4, 9, 0, 1, 0}),
+              TestUtils.toBitIntegers(new int[]{1, 1, 0, 1, 0, 0, 0}));
+
+          for (DecisionTreeModel treeModel : Arrays.asList(completeModel, prunedModel)) {
+            SparseDecisionTreeModel sparseModel =
+                SparseDecisionTreeModel.fromDecisionTreeModel(treeModel);
+            if (treeModel == prunedModel) {
+              Assert.assertEquals(16, sparseModel.getNumberNodes());
+              Assert.assertEquals(17, sparseModel.getNumberLeaves());
+            }
+            // Pad to a public bound
+            SparseDecisionTreeModel paddedModel = sparseModel.pad(sparseModel.getNumberNodes() + 2,
+                sparseModel.getNumberLeaves() + 3, sparseModel.getPathLength() + 1);
+            PlainEvaluator evaluator = new PlainEvaluator(treeModel);
+            for (List<BigInteger> currentFeatureVectorOpen : featureVectorsOpen) {
+              BigInteger expected = evaluator.evaluate(currentFeatureVectorOpen);
+              Assert.assertEquals(expected,
+                  runApplication(constructSparseApp(sparseModel, currentFeatureVectorOpen)));
+              Assert.assertEquals(expected,
+                  runApplication(constructSparseApp(paddedModel, currentFeatureVectorOpen)));
+            }
+          }
+        }
+      };
+    }
+  }
 }
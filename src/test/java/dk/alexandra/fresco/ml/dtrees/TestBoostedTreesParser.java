@@ -0,0 +1,106 @@
+package dk.alexandra.fresco.ml.dtrees;
+
+import static org.junit.Assert.assertEquals;
+
+import dk.alexandra.fresco.ml.dtrees.utils.BoostedTreesParser;
+import dk.alexandra.fresco.ml.dtrees.utils.ModelLoader;
+import dk.alexandra.fresco.ml.utils.FixedPointUtils;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+
+public class TestBoostedTreesParser {
+
+  private static final int PRECISION = 8;
+
+  static List<BigInteger> encode(double[] features) {
+    List<BigInteger> encoded = new ArrayList<>(features.length);
+    for (double feature : features) {
+      encoded.add(new FixedPointUtils().encode(BigDecimal.valueOf(feature), PRECISION));
+    }
+    return encoded;
+  }
+
+  private double plainMargin(BoostedTreesModel model, double[] features) {
+    BigInteger sum = BigInteger.ZERO;
+    for (DecisionTreeModel tree : model.getTrees()) {
+      sum = sum.add(new PlainEvaluator(tree).evaluate(encode(features)));
+    }
+    return sum.doubleValue() / (1 << model.getPrecision());
+  }
+
+  @Test
+  public void testXgboost() throws Exception {
+    BoostedTreesModel model = new BoostedTreesParser(PRECISION).parseXgboost(
+        new ModelLoader().getFile("dtrees/models/xgboost-model.json"), 0.1);
+    assertEquals(2, model.getTrees().size());
+    assertEquals(3, model.getNumFeatures());
+    DecisionTreeModel first = model.getTrees().get(0);
+    assertEquals(3, first.getDepth());
+    // The no branch (f0 >= 1.5) is to the left
+    assertEquals(Arrays.asList(BigInteger.valueOf(384)), first.getWeights().get(0));
+    // The leaf -0.3 at depth one is repeated, and the base margin is added to all leaves
+    assertEquals(Arrays.asList(BigInteger.valueOf(-51), BigInteger.valueOf(-51),
+        BigInteger.valueOf(0), BigInteger.valueOf(128)), first.getCategories());
+    DecisionTreeModel second = model.getTrees().get(1);
+    assertEquals(2, second.getDepth());
+    assertEquals(Arrays.asList(BigInteger.valueOf(-13), BigInteger.valueOf(51)),
+        second.getCategories());
+
+    assertEquals(0.45, plainMargin(model, new double[]{1.0, 0.75, -0.5}), 0.01);
+    assertEquals(0.0, plainMargin(model, new double[]{2.0, 0.0, 0.0}), 0.01);
+    assertEquals(0.2, plainMargin(model, new double[]{1.0, 0.5, 3.0}), 0.01);
+  }
+
+  @Test
+  public void testXgboostMulticlass() throws Exception {
+    // The two trees of the dump are read as a single round of a model with two classes
+    List<BoostedTreesModel> models = new BoostedTreesParser(PRECISION).parseXgboost(
+        new ModelLoader().getFile("dtrees/models/xgboost-model.json"), 2, 0.1);
+    assertEquals(2, models.size());
+    for (BoostedTreesModel model : models) {
+      assertEquals(1, model.getTrees().size());
+      assertEquals(3, model.getNumFeatures());
+    }
+    assertEquals(0.5, plainMargin(models.get(0), new double[]{1.0, 0.75, -0.5}), 0.01);
+    assertEquals(0.05, plainMargin(models.get(1), new double[]{1.0, 0.75, -0.5}), 0.01);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testXgboostUnevenClasses() throws Exception {
+    new BoostedTreesParser(PRECISION).parseXgboost(
+        new ModelLoader().getFile("dtrees/models/xgboost-model.json"), 3, 0.1);
+  }
+
+  @Test
+  public void testLightGbm() throws Exception {
+    BoostedTreesModel model = new BoostedTreesParser(PRECISION).parseLightGbm(
+        new ModelLoader().getFile("dtrees/models/lightgbm-model.json"));
+    assertEquals(2, model.getTrees().size());
+    assertEquals(3, model.getNumFeatures());
+    // The single leaf is turned into a tree with one internal node
+    assertEquals(2, model.getTrees().get(1).getDepth());
+
+    assertEquals(0.35, plainMargin(model, new double[]{0.0, 0.5, 1.0}), 0.01);
+    assertEquals(-0.15, plainMargin(model, new double[]{0.0, 1.0, 2.25}), 0.01);
+    assertEquals(0.15, plainMargin(model, new double[]{0.0, 1.0, 3.0}), 0.01);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testUnsupportedDecisionType() {
+    new BoostedTreesParser(PRECISION).parseLightGbm(new StringReader(
+        "{\"tree_info\": [{\"tree_structure\": {\"split_feature\": 0, \"threshold\": 1,"
+            + " \"decision_type\": \"==\", \"left_child\": {\"leaf_value\": 1},"
+            + " \"right_child\": {\"leaf_value\": 0}}}]}"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testLightGbmMulticlass() {
+    new BoostedTreesParser(PRECISION).parseLightGbm(new StringReader(
+        "{\"num_class\": 3, \"tree_info\": [{\"tree_structure\": {\"leaf_value\": 1}}]}"));
+  }
+}
@@ -7,6 +7,7 @@ import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.math.BigInteger;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.stream.Stream;
 
@@ -58,6 +59,9 @@ public class TestDTreeParser {
     Field depth = DTreeParser.class.getDeclaredField("depth");
     depth.setAccessible(true);
     intDepth = (int) depth.get(parser);
+    Method indexLines = DTreeParser.class.getDeclaredMethod("indexLines", List.class);
+    indexLines.setAccessible(true);
+    indexLines.invoke(parser, testFile);
   }
 
   private DecisionTreeModel makeTree() throws Exception {
@@ -76,19 +80,19 @@ public class TestDTreeParser {
 
   @Test
   public void testFindLine() throws Exception {
-    Method method = DTreeParser.class.getDeclaredMethod("findLine", int.class, List.class);
+    Method method = DTreeParser.class.getDeclaredMethod("findLine", int.class);
     method.setAccessible(true);
     assertEquals("   3) radius_3>=16.795 189  11 M (0.05820106 0.94179894) *", method.invoke(
-        parser, 3, testFile));
-    assertEquals(" 1) root 568 211 B (0.62852113 0.37147887)", method.invoke(parser, 1, testFile));
-    assertNull(method.invoke(parser, 8, testFile));
+        parser, 3));
+    assertEquals(" 1) root 568 211 B (0.62852113 0.37147887)", method.invoke(parser, 1));
+    assertNull(method.invoke(parser, 8));
   }
 
   @Test
   public void testFindNode() throws Exception {
-    Method method = DTreeParser.class.getDeclaredMethod("findNode", int.class, List.class);
+    Method method = DTreeParser.class.getDeclaredMethod("findNode", int.class);
     method.setAccessible(true);
-    Object res = method.invoke(parser, 2, testFile);
+    Object res = method.invoke(parser, 2);
     Field feature = res.getClass().getDeclaredField("feature");
     feature.setAccessible(true);
     assertEquals("radius_3", stringFeatures.get((int) feature.get(res)));
@@ -102,7 +106,7 @@ public class TestDTreeParser {
     switchAround.setAccessible(true);
     assertEquals(false, switchAround.get(res));
 
-    res = method.invoke(parser, 11, testFile);
+    res = method.invoke(parser, 11);
     feature = res.getClass().getDeclaredField("feature");
     feature.setAccessible(true);
     assertEquals("texture_3", stringFeatures.get((int) feature.get(res)));
@@ -126,4 +130,103 @@ public class TestDTreeParser {
     // Index 3 is node 11 since we are on the fourth layer (11 - 2^3)
     assertEquals(BigInteger.ZERO, model.getCategories().get(3));
   }
+
+  /**
+   * Evaluates a sparse tree in plaintext by finding the leaf where all steps are taken.
+   */
+  private static BigInteger evaluateSparse(SparseDecisionTreeModel model,
+      List<BigInteger> features) {
+    for (int i = 0; i < model.getNumberLeaves(); i++) {
+      boolean reached = true;
+      for (int j = 0; j < model.getPathLength(); j++) {
+        int node = model.getPathNodes().get(i).get(j);
+        boolean left = model.getDirections().get(i).get(j);
+        if (node >= 0) {
+          BigInteger feature = features.get(model.getFeatureIndexes().get(node).intValueExact());
+          left = left == feature.compareTo(model.getWeights().get(node)) >= 0;
+        }
+        reached &= left;
+      }
+      if (reached) {
+        return model.getCategories().get(i);
+      }
+    }
+    return null;
+  }
+
+  @Test
+  public void testMakeSparseTreeModel() throws Exception {
+    Method method = DTreeParser.class.getDeclaredMethod("makeSparseTreeModel", List.class);
+    method.setAccessible(true);
+    SparseDecisionTreeModel sparse = (SparseDecisionTreeModel) method.invoke(parser, testFile);
+    // Only the nodes of the tree are included, not the padding of the complete tree
+    assertEquals(3, sparse.getNumberNodes());
+    assertEquals(4, sparse.getNumberLeaves());
+    assertEquals(3, sparse.getPathLength());
+    PlainEvaluator evaluator = new PlainEvaluator(makeMirroredTree());
+    // Features concave_points_3, radius_3 and texture_3 multiplied by 10
+    for (int[] features : new int[][]{{0, 100, 300}, {1, 100, 300}, {2, 100, 200},
+        {0, 200, 0}}) {
+      List<BigInteger> featureVector = TestUtils.toBitIntegers(features);
+      assertEquals(evaluator.evaluate(featureVector), evaluateSparse(sparse, featureVector));
+    }
+  }
+
+  private DecisionTreeModel makeMirroredTree() throws Exception {
+    Method construct = DTreeParser.class.getDeclaredMethod("constructTree", List.class);
+    construct.setAccessible(true);
+    construct.invoke(parser, testFile);
+    Method mirror = DTreeParser.class.getDeclaredMethod("mirrorTree");
+    mirror.setAccessible(true);
+    mirror.invoke(parser);
+    Method make = DTreeParser.class.getDeclaredMethod("makeTreeModel");
+    make.setAccessible(true);
+    return (DecisionTreeModel) make.invoke(parser);
+  }
+
+  @Test
+  public void testNestedSwitches() throws Exception {
+    // Both the root and node 3 have the >= comparison on the left child, so the children of both
+    // must be switched, and the switch of node 3 must follow the node when the root is switched
+    List<String> file = Arrays.asList(
+        "3",
+        "n= 100",
+        "node), split, n, loss, yval, (yprob)",
+        "      * denotes terminal node",
+        " 1) root 100 50 A (0.50 0.50)",
+        "   2) a>=5 50 25 A (0.50 0.50)",
+        "     4) b< 3 25 0 A (1.00 0.00) *",
+        "     5) b>=3 25 0 B (0.00 1.00) *",
+        "   3) a< 5 50 25 B (0.50 0.50)",
+        "     6) c>=7 25 0 B (0.00 1.00) *",
+        "     7) c< 7 25 0 A (1.00 0.00) *");
+    parser = new DTreeParser(10);
+    for (String name : Arrays.asList("setFeatures", "setCategories")) {
+      Method method = DTreeParser.class.getDeclaredMethod(name, Stream.class);
+      method.setAccessible(true);
+      method.invoke(parser, file.stream());
+    }
+    for (String name : Arrays.asList("setDepth", "indexLines", "constructTree")) {
+      Method method = DTreeParser.class.getDeclaredMethod(name, List.class);
+      method.setAccessible(true);
+      method.invoke(parser, file);
+    }
+    Method mirror = DTreeParser.class.getDeclaredMethod("mirrorTree");
+    mirror.setAccessible(true);
+    mirror.invoke(parser);
+    Method make = DTreeParser.class.getDeclaredMethod("makeTreeModel");
+    make.setAccessible(true);
+    PlainEvaluator evaluator = new PlainEvaluator((DecisionTreeModel) make.invoke(parser));
+    Method sparse = DTreeParser.class.getDeclaredMethod("makeSparseTreeModel", List.class);
+    sparse.setAccessible(true);
+    SparseDecisionTreeModel sparseModel = (SparseDecisionTreeModel) sparse.invoke(parser, file);
+    // Features a, b and c multiplied by 10, and categories A and B are 0 and 1
+    int[][] features = {{60, 20, 0}, {60, 40, 0}, {40, 0, 80}, {40, 0, 60}};
+    BigInteger[] expected = {BigInteger.ZERO, BigInteger.ONE, BigInteger.ONE, BigInteger.ZERO};
+    for (int i = 0; i < features.length; i++) {
+      List<BigInteger> featureVector = TestUtils.toBitIntegers(features[i]);
+      assertEquals(expected[i], evaluator.evaluate(featureVector));
+      assertEquals(expected[i], evaluateSparse(sparseModel, featureVector));
+    }
+  }
 }
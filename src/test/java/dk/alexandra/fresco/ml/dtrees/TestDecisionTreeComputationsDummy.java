@@ -28,4 +28,40 @@ public class TestDecisionTreeComputationsDummy extends AbstractDummyArithmeticTe
     runTest(new DecisionTreeComputationTests.TestEvaluateDecisionTreeSix<>(), new TestParameters()
         .numParties(2));
   }
+
+  @Test
+  public void testEvaluateDecisionTreeBatch() {
+    runTest(new DecisionTreeComputationTests.TestEvaluateDecisionTreeBatch<>(), new TestParameters()
+        .numParties(2));
+  }
+
+  @Test
+  public void testEvaluateRandomForest() {
+    runTest(new DecisionTreeComputationTests.TestEvaluateRandomForest<>(), new TestParameters()
+        .numParties(2));
+  }
+
+  @Test
+  public void testEvaluateBoostedTrees() {
+    runTest(new DecisionTreeComputationTests.TestEvaluateBoostedTrees<>(), new TestParameters()
+        .numParties(2));
+  }
+
+  @Test
+  public void testEvaluateSparseDecisionTree() {
+    runTest(new DecisionTreeComputationTests.TestEvaluateSparseDecisionTree<>(), new TestParameters()
+        .numParties(2));
+  }
+
+  @Test
+  public void testEvaluateDecisionTreeIndexBits() {
+    runTest(new DecisionTreeComputationTests.TestEvaluateDecisionTreeIndexBits<>(),
+        new TestParameters().numParties(2));
+  }
+
+  @Test
+  public void testEvaluateDecisionTreePublicFeatures() {
+    runTest(new DecisionTreeComputationTests.TestEvaluateDecisionTreePublicFeatures<>(),
+        new TestParameters().numParties(2));
+  }
 }
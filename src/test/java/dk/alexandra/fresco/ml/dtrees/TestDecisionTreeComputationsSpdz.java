@@ -31,4 +31,39 @@ public class TestDecisionTreeComputationsSpdz extends AbstractSpdzTest {
         PreprocessingStrategy.DUMMY, 2);
   }
 
+  @Test
+  public void testEvaluateDecisionTreeBatch() {
+    runTest(new DecisionTreeComputationTests.TestEvaluateDecisionTreeBatch<>(),
+        PreprocessingStrategy.DUMMY, 2);
+  }
+
+  @Test
+  public void testEvaluateRandomForest() {
+    runTest(new DecisionTreeComputationTests.TestEvaluateRandomForest<>(), 
+        PreprocessingStrategy.DUMMY, 2);
+  }
+
+  @Test
+  public void testEvaluateBoostedTrees() {
+    runTest(new DecisionTreeComputationTests.TestEvaluateBoostedTrees<>(), 
+        PreprocessingStrategy.DUMMY, 2);
+  }
+
+  @Test
+  public void testEvaluateSparseDecisionTree() {
+    runTest(new DecisionTreeComputationTests.TestEvaluateSparseDecisionTree<>(), 
+        PreprocessingStrategy.DUMMY, 2);
+  }
+
+  @Test
+  public void testEvaluateDecisionTreeIndexBits() {
+    runTest(new DecisionTreeComputationTests.TestEvaluateDecisionTreeIndexBits<>(),
+        PreprocessingStrategy.DUMMY, 2);
+  }
+
+  @Test
+  public void testEvaluateDecisionTreePublicFeatures() {
+    runTest(new DecisionTreeComputationTests.TestEvaluateDecisionTreePublicFeatures<>(),
+        PreprocessingStrategy.DUMMY, 2);
+  }
 }
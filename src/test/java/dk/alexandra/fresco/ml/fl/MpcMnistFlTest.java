@@ -1,14 +1,19 @@
 package dk.alexandra.fresco.ml.fl;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 import dk.alexandra.fresco.framework.builder.numeric.NumericResourcePool;
 import dk.alexandra.fresco.framework.builder.numeric.ProtocolBuilderNumeric;
+import dk.alexandra.fresco.lib.collections.Matrix;
 import dk.alexandra.fresco.ml.fl.demo.MnistTestContext;
 import dk.alexandra.fresco.ml.fl.demo.TestSetup;
 import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Random;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
@@ -16,11 +21,19 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import org.deeplearning4j.datasets.iterator.impl.MnistDataSetIterator;
 import org.deeplearning4j.eval.Evaluation;
+import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.conf.layers.DenseLayer;
+import org.deeplearning4j.nn.conf.layers.OutputLayer;
 import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
+import org.nd4j.linalg.activations.Activation;
+import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.dataset.api.iterator.DataSetIterator;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.lossfunctions.LossFunctions;
 
 /**
  * An abstract functional test of MPC based federated training of a model for the MNIST data set.
@@ -69,6 +82,61 @@ public abstract class MpcMnistFlTest<ResourcePoolT extends NumericResourcePool>
     }
   }
 
+  @Test
+  public void testEvaluateAveragedModel() throws InterruptedException, ExecutionException {
+    MultiLayerConfiguration conf = new NeuralNetConfiguration.Builder().seed(42).list()
+        .layer(0, new DenseLayer.Builder().nIn(4).nOut(3).activation(Activation.RELU).build())
+        .layer(1, new OutputLayer.Builder(LossFunctions.LossFunction.MSE).nIn(3).nOut(2)
+            .activation(Activation.IDENTITY).build())
+        .build();
+    MultiLayerNetwork template = new MultiLayerNetwork(conf);
+    template.init();
+    int numParams = (int) template.numParams();
+    Random random = new Random(42);
+    Map<Integer, FlatModel> models = new HashMap<>(NUM_PARTIES);
+    INDArray average = Nd4j.zeros(1, numParams);
+    int totalExamples = 0;
+    for (int i = 1; i <= NUM_PARTIES; i++) {
+      double[] params = new double[numParams];
+      for (int j = 0; j < numParams; j++) {
+        params[j] = random.nextDouble() - 0.5;
+      }
+      int examples = 10 * i;
+      models.put(i, new FlatModel(Nd4j.create(params), examples));
+      average.addi(Nd4j.create(params).mul(examples));
+      totalExamples += examples;
+    }
+    average.divi(totalExamples);
+
+    // DL4J has a sample in each row, the secure network a sample in each column
+    double[][] samples = {{0.5, -1.0, 2.0, 0.25}, {-0.75, 1.5, 0.5, 1.0}};
+    template.setParams(average);
+    INDArray expected = template.output(Nd4j.create(samples));
+    Matrix<BigDecimal> input = new Matrix<>(4, samples.length, i -> {
+      ArrayList<BigDecimal> row = new ArrayList<>(samples.length);
+      for (double[] sample : samples) {
+        row.add(BigDecimal.valueOf(sample[i]));
+      }
+      return row;
+    });
+
+    Map<Integer, Future<Matrix<BigDecimal>>> futures = new HashMap<>(NUM_PARTIES);
+    for (int i = 1; i <= NUM_PARTIES; i++) {
+      TestSetup<ResourcePoolT, ProtocolBuilderNumeric> setup = setups.get(i);
+      DirectMpcFlHandler<ResourcePoolT> handler = new DirectMpcFlHandler<>(setup.getSce(),
+          setup.getRp(), setup.getNet());
+      futures.put(i, handler.evaluateAveragedModel(models.get(i), template, input, 1));
+    }
+    for (Future<Matrix<BigDecimal>> f : futures.values()) {
+      Matrix<BigDecimal> output = f.get();
+      for (int i = 0; i < 2; i++) {
+        for (int j = 0; j < samples.length; j++) {
+          assertEquals(expected.getDouble(j, i), output.getRow(i).get(j).doubleValue(), 0.01);
+        }
+      }
+    }
+  }
+
   /**
    * Callable representing a party in the test.
    *